@@ -0,0 +1,80 @@
+package com.lmoustak.cardcostapi;
+
+import com.lmoustak.cardcostapi.utils.Bulkhead;
+import com.lmoustak.cardcostapi.utils.CircuitBreaker;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.web.client.RestClient;
+
+@Configuration
+public class BinTableConfiguration {
+
+  public static final String BIN_TABLE_REST_CLIENT = "binTableRestClient";
+  public static final String BIN_TABLE_HTTP_CLIENT = "binTableHttpClient";
+
+  private static final Logger logger = LoggerFactory.getLogger(BinTableConfiguration.class);
+
+  @Bean(BIN_TABLE_HTTP_CLIENT)
+  public HttpClient binTableHttpClient(Environment environment,
+      @Value("${bintable.connect-timeout:2s}") Duration connectTimeout) {
+    HttpClient.Builder httpClientBuilder = HttpClient.newBuilder().connectTimeout(connectTimeout);
+    if (Threading.VIRTUAL.isActive(environment)) {
+      logger.info("Using virtual threads for the BINTable HTTP client");
+      var executor = new SimpleAsyncTaskExecutor("bintable-http-");
+      executor.setVirtualThreads(true);
+      httpClientBuilder.executor(executor);
+    }
+    return httpClientBuilder.build();
+  }
+
+  @Bean(BIN_TABLE_REST_CLIENT)
+  public RestClient binTableRestClient(
+      @Qualifier(BIN_TABLE_HTTP_CLIENT) HttpClient httpClient,
+      @Value("${bintable.base-url:https://api.bintable.com/v1}") String baseUrl,
+      @Value("${bintable.api-key}") String apiKey,
+      @Value("${bintable.timeout:5s}") Duration timeout) {
+    var requestFactory = new JdkClientHttpRequestFactory(httpClient);
+    requestFactory.setReadTimeout(timeout);
+    return RestClient.builder()
+        .requestFactory(requestFactory)
+        .baseUrl(baseUrl)
+        .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+        .defaultUriVariables(Map.of("apiKey", apiKey))
+        .build();
+  }
+
+  @Bean
+  public CircuitBreaker binTableCircuitBreaker(
+      @Value("${bintable.circuit-breaker.window-size:20}") int windowSize,
+      @Value("${bintable.circuit-breaker.minimum-calls:10}") int minimumCalls,
+      @Value("${bintable.circuit-breaker.failure-rate-threshold:0.5}") double failureRateThreshold,
+      @Value("${bintable.circuit-breaker.slow-call-duration:2s}") Duration slowCallDuration,
+      @Value("${bintable.circuit-breaker.slow-call-rate-threshold:0.8}")
+      double slowCallRateThreshold,
+      @Value("${bintable.circuit-breaker.open-duration:30s}") Duration openDuration,
+      @Value("${bintable.circuit-breaker.half-open-calls:3}") int halfOpenCalls) {
+    return new CircuitBreaker(windowSize, minimumCalls, failureRateThreshold, slowCallDuration,
+        slowCallRateThreshold, openDuration, halfOpenCalls, System::nanoTime);
+  }
+
+  @Bean
+  public Bulkhead binTableBulkhead(
+      @Value("${bintable.bulkhead.max-concurrent-calls:32}") int maxConcurrentCalls,
+      @Value("${bintable.bulkhead.max-wait:100ms}") Duration maxWait) {
+    return new Bulkhead(maxConcurrentCalls, maxWait);
+  }
+
+}
@@ -1,10 +1,133 @@
 package com.lmoustak.cardcostapi;
 
+import com.lmoustak.cardcostapi.caching.CacheKeyMigration;
+import com.lmoustak.cardcostapi.caching.CacheRefresher;
+import com.lmoustak.cardcostapi.caching.CacheValueCodec;
+import com.lmoustak.cardcostapi.caching.MultiGetRedisCacheManager;
+import com.lmoustak.cardcostapi.caching.RefreshAheadCache;
+import com.lmoustak.cardcostapi.caching.RefreshAheadCacheManager;
+import com.lmoustak.cardcostapi.caching.TwoTierCache;
+import com.lmoustak.cardcostapi.caching.TwoTierCacheManager;
+import com.lmoustak.cardcostapi.services.BinTableServiceImpl;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.cache.CacheProperties;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.cache.RedisCacheWriter;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.RedisSerializationContext.SerializationPair;
 
 @Configuration
 @EnableCaching
+@EnableConfigurationProperties(CacheProperties.class)
 public class CachingConfiguration {
 
+  private static final Duration DEFAULT_TIME_TO_LIVE = Duration.ofMinutes(10);
+
+  @Bean
+  @ConditionalOnProperty(prefix = "spring.cache", name = "type", havingValue = "redis")
+  public TwoTierCacheManager cacheManager(RedisConnectionFactory connectionFactory,
+      StringRedisTemplate redisTemplate, CacheProperties cacheProperties,
+      @Value("${cache.near.maximum-size:10000}") long maximumSize,
+      @Value("${cache.near.time-to-live:30s}") Duration timeToLive,
+      @Value("${cache.refresh-ahead.cache-names:bins}") Set<String> refreshAheadCacheNames,
+      @Value("${cache.refresh-ahead.refresh-after:0.8}") double refreshAfter,
+      @Value("${cache.refresh-ahead.jitter:0.1}") double jitter,
+      @Value("${cache.refresh-ahead.max-concurrent-refreshes:8}") int maxConcurrentRefreshes,
+      ObjectProvider<BinTableServiceImpl> binTableService, MeterRegistry meterRegistry) {
+    CacheProperties.Redis redisProperties = cacheProperties.getRedis();
+    RedisCacheConfiguration redisCacheConfiguration = redisCacheConfiguration(cacheProperties);
+
+    Duration remoteTimeToLive = redisProperties.getTimeToLive() != null
+        ? redisProperties.getTimeToLive() : DEFAULT_TIME_TO_LIVE;
+    Clock clock = Clock.systemUTC();
+    RedisCacheWriter.TtlFunction jitteredTimeToLive = (key, value) ->
+        value instanceof RefreshAheadCache.Entry entry
+            ? entry.remainingTimeToLive(clock) : remoteTimeToLive;
+
+    // Looked up on the first refresh, as the BINTable service itself depends on this manager
+    Map<String, CacheRefresher> refreshers = new HashMap<>();
+    Map<String, RedisCacheConfiguration> cacheConfigurations = new HashMap<>();
+    for (String cacheName : refreshAheadCacheNames) {
+      if (!BinTableServiceImpl.CACHE_NAME.equals(cacheName)) {
+        throw new IllegalArgumentException(
+            "Cache '%s' cannot be refreshed ahead of its expiry".formatted(cacheName));
+      }
+      refreshers.put(cacheName,
+          key -> binTableService.getObject().refreshCountry(String.valueOf(key)));
+      cacheConfigurations.put(cacheName, redisCacheConfiguration.entryTtl(jitteredTimeToLive));
+    }
+    var redisCacheManager = new MultiGetRedisCacheManager(connectionFactory,
+        redisCacheConfiguration, cacheConfigurations);
+    redisCacheManager.initializeCaches();
+
+    var refreshAheadCacheManager = new RefreshAheadCacheManager(redisCacheManager, refreshers,
+        remoteTimeToLive, refreshAfter, jitter, maxConcurrentRefreshes, clock);
+    return new TwoTierCacheManager(refreshAheadCacheManager, redisTemplate, maximumSize,
+        timeToLive, meterRegistry);
+  }
+
+  @Bean
+  @ConditionalOnProperty(prefix = "spring.cache", name = "type", havingValue = "redis")
+  @ConditionalOnProperty(name = "bintable.cache.migrate-legacy-keys", havingValue = "true",
+      matchIfMissing = true)
+  public CacheKeyMigration binsCacheKeyMigration(TwoTierCacheManager cacheManager,
+      StringRedisTemplate redisTemplate, CacheProperties cacheProperties,
+      BinTableServiceImpl binTableService) {
+    var cache = (TwoTierCache) cacheManager.getCache(BinTableServiceImpl.CACHE_NAME);
+    return new CacheKeyMigration(cache.getRemoteCache(), redisTemplate,
+        redisCacheConfiguration(cacheProperties).getKeyPrefixFor(BinTableServiceImpl.CACHE_NAME),
+        key -> key.length() > BinTableServiceImpl.LONG_BIN_LENGTH
+            ? binTableService.cacheKey(key) : null);
+  }
+
+  @Bean
+  @ConditionalOnProperty(prefix = "spring.cache", name = "type", havingValue = "redis")
+  public RedisMessageListenerContainer cacheInvalidationListenerContainer(
+      RedisConnectionFactory connectionFactory, TwoTierCacheManager cacheManager) {
+    var container = new RedisMessageListenerContainer();
+    container.setConnectionFactory(connectionFactory);
+    container.addMessageListener(
+        (message, pattern) -> cacheManager.handleInvalidation(
+            new String(message.getBody(), StandardCharsets.UTF_8)),
+        new ChannelTopic(TwoTierCacheManager.INVALIDATION_CHANNEL));
+    return container;
+  }
+
+  private static RedisCacheConfiguration redisCacheConfiguration(
+      CacheProperties cacheProperties) {
+    CacheProperties.Redis redisProperties = cacheProperties.getRedis();
+    RedisCacheConfiguration redisCacheConfiguration = RedisCacheConfiguration.defaultCacheConfig()
+        .serializeValuesWith(SerializationPair.fromSerializer(new CacheValueCodec()));
+    if (redisProperties.getTimeToLive() != null) {
+      redisCacheConfiguration = redisCacheConfiguration.entryTtl(redisProperties.getTimeToLive());
+    }
+    if (redisProperties.getKeyPrefix() != null) {
+      redisCacheConfiguration = redisCacheConfiguration.prefixCacheNameWith(
+          redisProperties.getKeyPrefix());
+    }
+    if (!redisProperties.isCacheNullValues()) {
+      redisCacheConfiguration = redisCacheConfiguration.disableCachingNullValues();
+    }
+    if (!redisProperties.isUseKeyPrefix()) {
+      redisCacheConfiguration = redisCacheConfiguration.disableKeyPrefix();
+    }
+    return redisCacheConfiguration;
+  }
+
 }
@@ -2,8 +2,10 @@ package com.lmoustak.cardcostapi;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class CardCostApiApplication {
 
 	public static void main(String[] args) {
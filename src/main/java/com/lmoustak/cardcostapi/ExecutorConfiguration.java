@@ -0,0 +1,54 @@
+package com.lmoustak.cardcostapi;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.system.JavaVersion;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+public class ExecutorConfiguration {
+
+  public static final String BIN_LOOKUP_EXECUTOR = "binLookupExecutor";
+
+  private static final Logger logger = LoggerFactory.getLogger(ExecutorConfiguration.class);
+
+  @Bean(BIN_LOOKUP_EXECUTOR)
+  @ConditionalOnThreading(Threading.PLATFORM)
+  public ThreadPoolTaskExecutor binLookupExecutor(
+      @Value("${card-cost.batch.parallelism:16}") int parallelism) {
+    var executor = new ThreadPoolTaskExecutor();
+    executor.setCorePoolSize(parallelism);
+    executor.setMaxPoolSize(parallelism);
+    executor.setThreadNamePrefix("bin-lookup-");
+    return executor;
+  }
+
+  @Bean(BIN_LOOKUP_EXECUTOR)
+  @ConditionalOnThreading(Threading.VIRTUAL)
+  public SimpleAsyncTaskExecutor virtualBinLookupExecutor(
+      @Value("${card-cost.batch.parallelism:16}") int parallelism) {
+    var executor = new SimpleAsyncTaskExecutor("bin-lookup-");
+    executor.setVirtualThreads(true);
+    executor.setConcurrencyLimit(parallelism);
+    return executor;
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void warnIfVirtualThreadsAreUnavailable(ApplicationReadyEvent event) {
+    boolean requested = event.getApplicationContext().getEnvironment()
+        .getProperty("spring.threads.virtual.enabled", Boolean.class, false);
+    if (requested && !JavaVersion.getJavaVersion().isEqualOrNewerThan(JavaVersion.TWENTY_ONE)) {
+      logger.warn("Virtual threads were requested but Java {} does not support them. "
+          + "Falling back to platform threads", JavaVersion.getJavaVersion());
+    }
+  }
+
+}
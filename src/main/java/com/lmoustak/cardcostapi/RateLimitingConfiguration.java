@@ -0,0 +1,41 @@
+package com.lmoustak.cardcostapi;
+
+import com.lmoustak.cardcostapi.ratelimiting.LocalRateLimiter;
+import com.lmoustak.cardcostapi.ratelimiting.RateLimiter;
+import com.lmoustak.cardcostapi.ratelimiting.RedisRateLimiter;
+import java.time.Duration;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+@Configuration
+public class RateLimitingConfiguration {
+
+  @Bean
+  @ConditionalOnProperty(name = "rate-limit.mode", havingValue = "local", matchIfMissing = true)
+  public RateLimiter localRateLimiter(
+      @Value("${rate-limit.permits-per-second:20}") double permitsPerSecond,
+      @Value("${rate-limit.burst:20}") int burst,
+      @Value("${rate-limit.max-clients:100000}") long maxClients,
+      @Value("${rate-limit.idle-timeout:1m}") Duration idleTimeout) {
+    return new LocalRateLimiter(permitsPerSecond, burst, maxClients, idleTimeout);
+  }
+
+  @Bean
+  @ConditionalOnProperty(name = "rate-limit.mode", havingValue = "redis")
+  public RateLimiter redisRateLimiter(StringRedisTemplate redisTemplate,
+      @Value("${rate-limit.permits-per-second:20}") double permitsPerSecond,
+      @Value("${rate-limit.burst:20}") int burst,
+      @Value("${rate-limit.max-clients:100000}") long maxClients,
+      @Value("${rate-limit.idle-timeout:1m}") Duration idleTimeout,
+      @Value("${rate-limit.redis.lease-size:5}") int leaseSize,
+      @Value("${rate-limit.redis.lease-time:1s}") Duration leaseTime,
+      @Value("${rate-limit.redis.retry-interval:5s}") Duration retryInterval) {
+    return new RedisRateLimiter(redisTemplate,
+        new LocalRateLimiter(permitsPerSecond, burst, maxClients, idleTimeout), maxClients,
+        leaseSize, leaseTime, retryInterval);
+  }
+
+}
@@ -0,0 +1,4 @@
+package com.lmoustak.cardcostapi.caching;
+
+public record CacheInvalidationMessage(String origin, String cacheName, String key) {
+}
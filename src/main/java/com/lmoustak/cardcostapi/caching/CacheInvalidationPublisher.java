@@ -0,0 +1,14 @@
+package com.lmoustak.cardcostapi.caching;
+
+import java.util.Collection;
+
+@FunctionalInterface
+public interface CacheInvalidationPublisher {
+
+  void publish(String cacheName, String key);
+
+  default void publishAll(String cacheName, Collection<String> keys) {
+    keys.forEach(key -> publish(cacheName, key));
+  }
+
+}
@@ -0,0 +1,85 @@
+package com.lmoustak.cardcostapi.caching;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.UnaryOperator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.cache.Cache;
+import org.springframework.cache.Cache.ValueWrapper;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+public class CacheKeyMigration {
+
+  private static final Logger logger = LoggerFactory.getLogger(CacheKeyMigration.class);
+
+  private static final int BATCH_SIZE = 1000;
+
+  private final Cache cache;
+  private final StringRedisTemplate redisTemplate;
+  private final String keyPrefix;
+  private final UnaryOperator<String> keyMapper;
+
+  public CacheKeyMigration(Cache cache, StringRedisTemplate redisTemplate, String keyPrefix,
+      UnaryOperator<String> keyMapper) {
+    this.cache = cache;
+    this.redisTemplate = redisTemplate;
+    this.keyPrefix = keyPrefix;
+    this.keyMapper = keyMapper;
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void onApplicationReady() {
+    try {
+      int migrated = migrate();
+      if (migrated > 0) {
+        logger.info("Migrated {} legacy keys of cache '{}'", migrated, cache.getName());
+      }
+    } catch (DataAccessException e) {
+      logger.warn("Could not migrate legacy keys of cache '{}'", cache.getName(), e);
+    }
+  }
+
+  public int migrate() {
+    int migrated = 0;
+    List<String> legacyKeys = new ArrayList<>(BATCH_SIZE);
+    ScanOptions scanOptions = ScanOptions.scanOptions()
+        .match(keyPrefix + "*")
+        .count(BATCH_SIZE)
+        .build();
+    try (Cursor<String> cursor = redisTemplate.scan(scanOptions)) {
+      while (cursor.hasNext()) {
+        String redisKey = cursor.next();
+        String key = redisKey.substring(keyPrefix.length());
+        String migratedKey = keyMapper.apply(key);
+        if (migratedKey == null || migratedKey.equals(key)) {
+          continue;
+        }
+
+        ValueWrapper valueWrapper = cache.get(key);
+        if (valueWrapper != null && valueWrapper.get() != null) {
+          cache.putIfAbsent(migratedKey, valueWrapper.get());
+        }
+        legacyKeys.add(redisKey);
+        if (legacyKeys.size() == BATCH_SIZE) {
+          migrated += delete(legacyKeys);
+        }
+      }
+    }
+    return migrated + delete(legacyKeys);
+  }
+
+  private int delete(List<String> legacyKeys) {
+    int deleted = legacyKeys.size();
+    if (deleted > 0) {
+      redisTemplate.delete(List.copyOf(legacyKeys));
+      legacyKeys.clear();
+    }
+    return deleted;
+  }
+}
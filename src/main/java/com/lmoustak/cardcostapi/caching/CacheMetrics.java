@@ -0,0 +1,73 @@
+package com.lmoustak.cardcostapi.caching;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+public class CacheMetrics {
+
+  private final Counter localHits;
+  private final Counter remoteHits;
+  private final Counter misses;
+  private final Timer successfulLoads;
+  private final Timer failedLoads;
+
+  public CacheMetrics(String cacheName, MeterRegistry meterRegistry) {
+    this.localHits = lookups(cacheName, "hit", "local", meterRegistry);
+    this.remoteHits = lookups(cacheName, "hit", "remote", meterRegistry);
+    this.misses = lookups(cacheName, "miss", "none", meterRegistry);
+    this.successfulLoads = loads(cacheName, "success", meterRegistry);
+    this.failedLoads = loads(cacheName, "failure", meterRegistry);
+  }
+
+  private static Counter lookups(String cacheName, String result, String tier,
+      MeterRegistry meterRegistry) {
+    return Counter.builder("cache.lookups")
+        .description("Cache lookups, by result and the tier that answered them")
+        .tags("cache", cacheName, "result", result, "tier", tier)
+        .register(meterRegistry);
+  }
+
+  private static Timer loads(String cacheName, String result, MeterRegistry meterRegistry) {
+    return Timer.builder("cache.loads")
+        .description("Time spent loading values missing from the cache")
+        .tags("cache", cacheName, "result", result)
+        .register(meterRegistry);
+  }
+
+  public void localHits(int count) {
+    localHits.increment(count);
+  }
+
+  public void remoteHits(int count) {
+    remoteHits.increment(count);
+  }
+
+  public void misses(int count) {
+    misses.increment(count);
+  }
+
+  public <T> T load(Callable<T> valueLoader) throws Exception {
+    long start = System.nanoTime();
+    try {
+      T value = valueLoader.call();
+      successfulLoads.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+      return value;
+    } catch (Exception e) {
+      failedLoads.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+      throw e;
+    }
+  }
+
+  public <T> CompletableFuture<T> load(Supplier<CompletableFuture<T>> valueLoader) {
+    long start = System.nanoTime();
+    CompletableFuture<T> value = valueLoader.get();
+    value.whenComplete((loaded, error) -> (error == null ? successfulLoads : failedLoads)
+        .record(System.nanoTime() - start, TimeUnit.NANOSECONDS));
+    return value;
+  }
+}
@@ -0,0 +1,11 @@
+package com.lmoustak.cardcostapi.caching;
+
+import java.util.concurrent.CompletableFuture;
+
+// Looks up a fresh value for a cached key, the way the owner of the cache would on a miss
+@FunctionalInterface
+public interface CacheRefresher {
+
+  CompletableFuture<?> refresh(Object key);
+
+}
@@ -0,0 +1,272 @@
+package com.lmoustak.cardcostapi.caching;
+
+import com.lmoustak.cardcostapi.entities.ClearingCosts;
+import com.lmoustak.cardcostapi.utils.CountryCodes;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+public class CacheValueCodec implements RedisSerializer<Object> {
+
+  public static final int VERSION = 1;
+
+  // The first byte holds the format version in its upper and the value type in its lower nibble.
+  // JDK serialized values start with 0xACED instead, and are still read for older cache entries
+  private static final byte COUNTRY = 1;
+  private static final byte STRING = 2;
+  private static final byte REFRESH_AHEAD_ENTRY = 3;
+  private static final byte CLEARING_COSTS = 4;
+
+  private static final short UPPER_CASE = 0x400;
+  private static final short NO_COUNTRY = -1;
+
+  private static final byte HAS_ID = 1;
+  private static final byte HAS_PRICE = 2;
+  private static final byte BIG_UNSCALED_PRICE = 4;
+  private static final byte HAS_VERSION = 8;
+
+  private static final int UNSUPPORTED = -1;
+
+  private static final String[] UPPER_CASE_COUNTRIES = new String[CountryCodes.COUNT];
+
+  static {
+    for (short i = 0; i < CountryCodes.COUNT; i++) {
+      UPPER_CASE_COUNTRIES[i] = CountryCodes.unpack(i).toUpperCase();
+    }
+  }
+
+  private final JdkSerializationRedisSerializer fallback;
+
+  public CacheValueCodec() {
+    this(new JdkSerializationRedisSerializer());
+  }
+
+  public CacheValueCodec(JdkSerializationRedisSerializer fallback) {
+    this.fallback = fallback;
+  }
+
+  @Override
+  public byte[] serialize(Object value) {
+    if (value == null) {
+      return new byte[0];
+    }
+
+    int size = encodedSize(value);
+    if (size == UNSUPPORTED) {
+      return fallback.serialize(value);
+    }
+
+    ByteBuffer buffer = ByteBuffer.allocate(size);
+    write(buffer, value);
+    return buffer.array();
+  }
+
+  @Override
+  public Object deserialize(byte[] bytes) {
+    if (bytes == null || bytes.length == 0) {
+      return null;
+    }
+    if (bytes.length > 1 && bytes[0] == (byte) 0xAC && bytes[1] == (byte) 0xED) {
+      return fallback.deserialize(bytes);
+    }
+
+    try {
+      ByteBuffer buffer = ByteBuffer.wrap(bytes);
+      Object value = read(buffer);
+      if (buffer.hasRemaining()) {
+        throw new SerializationException(
+            "%d trailing bytes in cache value".formatted(buffer.remaining()));
+      }
+      return value;
+    } catch (RuntimeException e) {
+      if (e instanceof SerializationException serializationException) {
+        throw serializationException;
+      }
+      throw new SerializationException("Could not read cache value", e);
+    }
+  }
+
+  private static int encodedSize(Object value) {
+    if (value instanceof String string) {
+      return packCountry(string) != NO_COUNTRY
+          ? 1 + Short.BYTES : 1 + string.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    if (value instanceof RefreshAheadCache.Entry entry) {
+      long refreshLead = entry.expiresAt() - entry.refreshAt();
+      int valueSize = entry.value() == null ? UNSUPPORTED : encodedSize(entry.value());
+      if (refreshLead < 0 || refreshLead > Integer.MAX_VALUE || valueSize == UNSUPPORTED) {
+        return UNSUPPORTED;
+      }
+      return 1 + Long.BYTES + Integer.BYTES + valueSize;
+    }
+
+    if (value instanceof ClearingCosts clearingCosts) {
+      String country = clearingCosts.getCountry();
+      BigDecimal price = clearingCosts.getPrice();
+      boolean packableCountry = country == null || packCountry(country) != NO_COUNTRY;
+      boolean packableScale = price == null
+          || price.scale() >= Byte.MIN_VALUE && price.scale() <= Byte.MAX_VALUE;
+      if (!packableCountry || !packableScale) {
+        return UNSUPPORTED;
+      }
+
+      int size = 1 + 1 + Short.BYTES;
+      if (clearingCosts.getId() != null) {
+        size += Long.BYTES;
+      }
+      if (clearingCosts.getVersion() != null) {
+        size += Long.BYTES;
+      }
+      if (price != null) {
+        BigInteger unscaled = price.unscaledValue();
+        size += 1 + (unscaled.bitLength() < Long.SIZE
+            ? Long.BYTES : Short.BYTES + unscaled.toByteArray().length);
+      }
+      return size;
+    }
+
+    return UNSUPPORTED;
+  }
+
+  private static void write(ByteBuffer buffer, Object value) {
+    if (value instanceof String string) {
+      short country = packCountry(string);
+      if (country != NO_COUNTRY) {
+        buffer.put(header(COUNTRY)).putShort(country);
+      } else {
+        buffer.put(header(STRING)).put(string.getBytes(StandardCharsets.UTF_8));
+      }
+    } else if (value instanceof RefreshAheadCache.Entry entry) {
+      buffer.put(header(REFRESH_AHEAD_ENTRY))
+          .putLong(entry.expiresAt())
+          .putInt((int) (entry.expiresAt() - entry.refreshAt()));
+      write(buffer, entry.value());
+    } else if (value instanceof ClearingCosts clearingCosts) {
+      writeClearingCosts(buffer, clearingCosts);
+    }
+  }
+
+  private static void writeClearingCosts(ByteBuffer buffer, ClearingCosts clearingCosts) {
+    BigDecimal price = clearingCosts.getPrice();
+    BigInteger unscaled = price == null ? null : price.unscaledValue();
+    boolean bigUnscaled = unscaled != null && unscaled.bitLength() >= Long.SIZE;
+
+    byte flags = 0;
+    if (clearingCosts.getId() != null) {
+      flags |= HAS_ID;
+    }
+    if (price != null) {
+      flags |= HAS_PRICE;
+    }
+    if (bigUnscaled) {
+      flags |= BIG_UNSCALED_PRICE;
+    }
+    if (clearingCosts.getVersion() != null) {
+      flags |= HAS_VERSION;
+    }
+
+    buffer.put(header(CLEARING_COSTS)).put(flags);
+    if (clearingCosts.getId() != null) {
+      buffer.putLong(clearingCosts.getId());
+    }
+    String country = clearingCosts.getCountry();
+    buffer.putShort(country == null ? NO_COUNTRY : packCountry(country));
+    if (price != null) {
+      buffer.put((byte) price.scale());
+      if (bigUnscaled) {
+        byte[] bytes = unscaled.toByteArray();
+        buffer.putShort((short) bytes.length).put(bytes);
+      } else {
+        buffer.putLong(unscaled.longValue());
+      }
+    }
+    if (clearingCosts.getVersion() != null) {
+      buffer.putLong(clearingCosts.getVersion());
+    }
+  }
+
+  private static Object read(ByteBuffer buffer) {
+    byte header = buffer.get();
+    int version = (header >>> 4) & 0xF;
+    if (version != VERSION) {
+      throw new SerializationException("Unsupported cache value format version " + version);
+    }
+
+    return switch ((byte) (header & 0xF)) {
+      case COUNTRY -> unpackCountry(buffer.getShort());
+      case STRING -> {
+        String string = new String(buffer.array(), buffer.position(), buffer.remaining(),
+            StandardCharsets.UTF_8);
+        buffer.position(buffer.limit());
+        yield string;
+      }
+      case REFRESH_AHEAD_ENTRY -> {
+        long expiresAt = buffer.getLong();
+        long refreshAt = expiresAt - buffer.getInt();
+        yield new RefreshAheadCache.Entry(read(buffer), refreshAt, expiresAt);
+      }
+      case CLEARING_COSTS -> readClearingCosts(buffer);
+      default -> throw new SerializationException("Unknown cache value type " + (header & 0xF));
+    };
+  }
+
+  private static ClearingCosts readClearingCosts(ByteBuffer buffer) {
+    byte flags = buffer.get();
+    var clearingCosts = new ClearingCosts();
+    if ((flags & HAS_ID) != 0) {
+      clearingCosts.setId(buffer.getLong());
+    }
+    short country = buffer.getShort();
+    clearingCosts.setCountry(country == NO_COUNTRY ? null : unpackCountry(country));
+    if ((flags & HAS_PRICE) != 0) {
+      int scale = buffer.get();
+      BigInteger unscaled;
+      if ((flags & BIG_UNSCALED_PRICE) != 0) {
+        byte[] bytes = new byte[buffer.getShort()];
+        buffer.get(bytes);
+        unscaled = new BigInteger(bytes);
+      } else {
+        unscaled = BigInteger.valueOf(buffer.getLong());
+      }
+      clearingCosts.setPrice(new BigDecimal(unscaled, scale));
+    }
+    // Entries cached before rows were versioned have no version
+    if ((flags & HAS_VERSION) != 0) {
+      clearingCosts.setVersion(buffer.getLong());
+    }
+    return clearingCosts;
+  }
+
+  private static byte header(byte type) {
+    return (byte) (VERSION << 4 | type);
+  }
+
+  private static short packCountry(String country) {
+    short packed = CountryCodes.pack(country);
+    if (packed == CountryCodes.UNKNOWN) {
+      return NO_COUNTRY;
+    }
+
+    if (CountryCodes.unpack(packed).equals(country)) {
+      return packed;
+    }
+    if (UPPER_CASE_COUNTRIES[packed].equals(country)) {
+      return (short) (packed | UPPER_CASE);
+    }
+    return NO_COUNTRY;
+  }
+
+  private static String unpackCountry(short packed) {
+    short code = (short) (packed & ~UPPER_CASE);
+    String country = CountryCodes.unpack(code);
+    if (country == null) {
+      throw new SerializationException("Unknown country code " + packed);
+    }
+    return (packed & UPPER_CASE) != 0 ? UPPER_CASE_COUNTRIES[code] : country;
+  }
+}
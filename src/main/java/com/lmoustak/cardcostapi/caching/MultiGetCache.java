@@ -0,0 +1,37 @@
+package com.lmoustak.cardcostapi.caching;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.springframework.cache.Cache;
+
+public interface MultiGetCache extends Cache {
+
+  Map<Object, ValueWrapper> getAll(Collection<?> keys);
+
+  void putAll(Map<?, ?> entries);
+
+  static Map<Object, ValueWrapper> getAll(Cache cache, Collection<?> keys) {
+    if (cache instanceof MultiGetCache multiGetCache) {
+      return multiGetCache.getAll(keys);
+    }
+
+    Map<Object, ValueWrapper> found = new LinkedHashMap<>();
+    for (Object key : keys) {
+      ValueWrapper valueWrapper = cache.get(key);
+      if (valueWrapper != null) {
+        found.put(key, valueWrapper);
+      }
+    }
+    return found;
+  }
+
+  static void putAll(Cache cache, Map<?, ?> entries) {
+    if (cache instanceof MultiGetCache multiGetCache) {
+      multiGetCache.putAll(entries);
+    } else {
+      entries.forEach(cache::put);
+    }
+  }
+
+}
@@ -0,0 +1,85 @@
+package com.lmoustak.cardcostapi.caching;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.springframework.data.redis.cache.RedisCache;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.cache.RedisCacheWriter;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisStringCommands.SetOption;
+import org.springframework.data.redis.core.types.Expiration;
+
+public class MultiGetRedisCache extends RedisCache implements MultiGetCache {
+
+  private final RedisConnectionFactory connectionFactory;
+
+  public MultiGetRedisCache(String name, RedisCacheWriter cacheWriter,
+      RedisCacheConfiguration cacheConfiguration, RedisConnectionFactory connectionFactory) {
+    super(name, cacheWriter, cacheConfiguration);
+    this.connectionFactory = connectionFactory;
+  }
+
+  @Override
+  public Map<Object, ValueWrapper> getAll(Collection<?> keys) {
+    List<Object> distinctKeys = keys.stream().distinct().map(Object.class::cast).toList();
+    if (distinctKeys.isEmpty()) {
+      return Map.of();
+    }
+
+    byte[][] cacheKeys = new byte[distinctKeys.size()][];
+    for (int i = 0; i < cacheKeys.length; i++) {
+      cacheKeys[i] = serializeCacheKey(createCacheKey(distinctKeys.get(i)));
+    }
+
+    List<byte[]> values;
+    try (RedisConnection connection = connectionFactory.getConnection()) {
+      values = connection.stringCommands().mGet(cacheKeys);
+    }
+
+    Map<Object, ValueWrapper> found = new LinkedHashMap<>();
+    for (int i = 0; values != null && i < values.size(); i++) {
+      byte[] value = values.get(i);
+      if (value != null) {
+        found.put(distinctKeys.get(i), toValueWrapper(deserializeCacheValue(value)));
+      }
+    }
+    return found;
+  }
+
+  @Override
+  public void putAll(Map<?, ?> entries) {
+    List<byte[][]> keyValues = new ArrayList<>(entries.size());
+    List<Expiration> expirations = new ArrayList<>(entries.size());
+    entries.forEach((key, value) -> {
+      if (value == null && !isAllowNullValues()) {
+        return;
+      }
+      keyValues.add(new byte[][] {serializeCacheKey(createCacheKey(key)),
+          serializeCacheValue(toStoreValue(value))});
+      expirations.add(expiration(
+          getCacheConfiguration().getTtlFunction().getTimeToLive(key, value)));
+    });
+    if (keyValues.isEmpty()) {
+      return;
+    }
+
+    try (RedisConnection connection = connectionFactory.getConnection()) {
+      connection.openPipeline();
+      for (int i = 0; i < keyValues.size(); i++) {
+        connection.stringCommands().set(keyValues.get(i)[0], keyValues.get(i)[1],
+            expirations.get(i), SetOption.upsert());
+      }
+      connection.closePipeline();
+    }
+  }
+
+  private static Expiration expiration(Duration timeToLive) {
+    return timeToLive == null || timeToLive.isZero() || timeToLive.isNegative()
+        ? Expiration.persistent() : Expiration.from(timeToLive);
+  }
+}
@@ -0,0 +1,28 @@
+package com.lmoustak.cardcostapi.caching;
+
+import java.util.Map;
+import org.springframework.data.redis.cache.RedisCache;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.cache.RedisCacheWriter;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+
+public class MultiGetRedisCacheManager extends RedisCacheManager {
+
+  private final RedisConnectionFactory connectionFactory;
+
+  public MultiGetRedisCacheManager(RedisConnectionFactory connectionFactory,
+      RedisCacheConfiguration defaultCacheConfiguration,
+      Map<String, RedisCacheConfiguration> initialCacheConfigurations) {
+    super(RedisCacheWriter.nonLockingRedisCacheWriter(connectionFactory),
+        defaultCacheConfiguration, initialCacheConfigurations);
+    this.connectionFactory = connectionFactory;
+  }
+
+  @Override
+  protected RedisCache createRedisCache(String name, RedisCacheConfiguration cacheConfiguration) {
+    return new MultiGetRedisCache(name, getCacheWriter(),
+        cacheConfiguration != null ? cacheConfiguration : getDefaultCacheConfiguration(),
+        connectionFactory);
+  }
+}
@@ -0,0 +1,340 @@
+package com.lmoustak.cardcostapi.caching;
+
+import com.lmoustak.cardcostapi.utils.Bulkhead;
+import java.io.Serializable;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+
+public class RefreshAheadCache implements MultiGetCache {
+
+  private static final Logger logger = LoggerFactory.getLogger(RefreshAheadCache.class);
+
+  public record Entry(Object value, long refreshAt, long expiresAt) implements Serializable {
+
+    public Duration remainingTimeToLive(Clock clock) {
+      return Duration.ofMillis(Math.max(1, expiresAt - clock.millis()));
+    }
+  }
+
+  // Hands the refresh point of an entry out along with its value, so that a near cache in front
+  // of this one can still refresh the hot keys it keeps serving itself
+  public static class EntryValueWrapper extends SimpleValueWrapper {
+
+    private final Entry entry;
+
+    public EntryValueWrapper(Entry entry) {
+      super(entry.value());
+      this.entry = entry;
+    }
+
+    public Entry getEntry() {
+      return entry;
+    }
+  }
+
+  private final Cache delegate;
+  private final long timeToLiveMillis;
+  private final double refreshAfter;
+  private final double jitter;
+  private final Bulkhead refreshBulkhead;
+  private final CacheRefresher refresher;
+  private final Clock clock;
+  private volatile BiConsumer<Object, ValueWrapper> refreshListener = (key, valueWrapper) -> {
+  };
+
+  private final Set<Object> refreshing = ConcurrentHashMap.newKeySet();
+  private final LongAdder refreshed = new LongAdder();
+  private final LongAdder skipped = new LongAdder();
+
+  public RefreshAheadCache(Cache delegate, Duration timeToLive, double refreshAfter,
+      double jitter, Bulkhead refreshBulkhead, CacheRefresher refresher, Clock clock) {
+    if (refreshAfter <= 0 || refreshAfter > 1 || jitter < 0 || jitter >= 1) {
+      throw new IllegalArgumentException("Invalid refresh-ahead settings");
+    }
+    this.delegate = delegate;
+    this.timeToLiveMillis = timeToLive.toMillis();
+    this.refreshAfter = refreshAfter;
+    this.jitter = jitter;
+    this.refreshBulkhead = refreshBulkhead;
+    this.refresher = refresher;
+    this.clock = clock;
+  }
+
+  @Override
+  public String getName() {
+    return delegate.getName();
+  }
+
+  @Override
+  public Object getNativeCache() {
+    return delegate.getNativeCache();
+  }
+
+  public long refreshedCount() {
+    return refreshed.sum();
+  }
+
+  public long skippedRefreshCount() {
+    return skipped.sum();
+  }
+
+  public void setRefreshListener(BiConsumer<Object, ValueWrapper> refreshListener) {
+    this.refreshListener = refreshListener;
+  }
+
+  @Override
+  public ValueWrapper get(Object key) {
+    ValueWrapper valueWrapper = delegate.get(key);
+    if (valueWrapper == null) {
+      return null;
+    }
+
+    Object value = valueWrapper.get();
+    if (value instanceof Entry entry) {
+      return isExpired(entry, clock.millis()) ? null : new EntryValueWrapper(entry);
+    }
+    return valueWrapper;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T> T get(Object key, Class<T> type) {
+    ValueWrapper valueWrapper = get(key);
+    if (valueWrapper == null) {
+      return null;
+    }
+
+    Object value = valueWrapper.get();
+    if (value != null && type != null && !type.isInstance(value)) {
+      throw new IllegalStateException(
+          "Cached value is not of required type [%s]: %s".formatted(type.getName(), value));
+    }
+    return (T) value;
+  }
+
+  @Override
+  public Map<Object, ValueWrapper> getAll(Collection<?> keys) {
+    long now = clock.millis();
+    Map<Object, ValueWrapper> found = new LinkedHashMap<>();
+    MultiGetCache.getAll(delegate, keys).forEach((key, valueWrapper) -> {
+      Object value = valueWrapper.get();
+      if (!(value instanceof Entry entry)) {
+        found.put(key, valueWrapper);
+      } else if (!isExpired(entry, now)) {
+        found.put(key, new EntryValueWrapper(entry));
+      }
+    });
+    return found;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T> T get(Object key, Callable<T> valueLoader) {
+    return (T) getWrapper(key, valueLoader).get();
+  }
+
+  // Misses are loaded through the wrapped cache, so that its own locking of synchronized
+  // lookups still applies
+  public ValueWrapper getWrapper(Object key, Callable<?> valueLoader) {
+    Object cached = delegate.get(key, () -> {
+      Object value = valueLoader.call();
+      return value == null ? null : entry(value);
+    });
+    if (!(cached instanceof Entry entry)) {
+      return new SimpleValueWrapper(cached);
+    }
+
+    long now = clock.millis();
+    if (!isExpired(entry, now)) {
+      if (now >= entry.refreshAt()) {
+        refresh(key);
+      }
+      return new EntryValueWrapper(entry);
+    }
+
+    return store(key, load(key, valueLoader));
+  }
+
+  @Override
+  public CompletableFuture<?> retrieve(Object key) {
+    CompletableFuture<?> cached = delegate.retrieve(key);
+    if (cached == null) {
+      return null;
+    }
+
+    return cached.thenApply(value -> {
+      Object stored = value instanceof ValueWrapper valueWrapper ? valueWrapper.get() : value;
+      if (!(stored instanceof Entry entry)) {
+        return value;
+      }
+      if (isExpired(entry, clock.millis())) {
+        return null;
+      }
+      return value instanceof ValueWrapper ? new EntryValueWrapper(entry) : entry.value();
+    });
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T> CompletableFuture<T> retrieve(Object key,
+      Supplier<CompletableFuture<T>> valueLoader) {
+    return retrieveWrapper(key, valueLoader).thenApply(valueWrapper -> (T) valueWrapper.get());
+  }
+
+  public CompletableFuture<ValueWrapper> retrieveWrapper(Object key,
+      Supplier<? extends CompletableFuture<?>> valueLoader) {
+    CompletableFuture<?> cached = delegate.retrieve(key);
+    if (cached == null) {
+      cached = CompletableFuture.completedFuture(delegate.get(key));
+    }
+
+    return cached.thenCompose(value -> {
+      Object stored = value instanceof ValueWrapper valueWrapper ? valueWrapper.get() : value;
+      if (stored instanceof Entry entry) {
+        long now = clock.millis();
+        if (!isExpired(entry, now)) {
+          if (now >= entry.refreshAt()) {
+            refresh(key);
+          }
+          return CompletableFuture.completedFuture(new EntryValueWrapper(entry));
+        }
+      } else if (stored != null) {
+        return CompletableFuture.completedFuture(new SimpleValueWrapper(stored));
+      }
+
+      return valueLoader.get().thenApply(loaded -> store(key, loaded));
+    });
+  }
+
+  @Override
+  public void put(Object key, Object value) {
+    delegate.put(key, value == null ? null : entry(value));
+  }
+
+  @Override
+  public void putAll(Map<?, ?> entries) {
+    Map<Object, Object> entryByKey = new LinkedHashMap<>();
+    entries.forEach((key, value) -> entryByKey.put(key, value == null ? null : entry(value)));
+    MultiGetCache.putAll(delegate, entryByKey);
+  }
+
+  @Override
+  public ValueWrapper putIfAbsent(Object key, Object value) {
+    ValueWrapper existing = delegate.putIfAbsent(key, value == null ? null : entry(value));
+    if (existing != null && existing.get() instanceof Entry entry) {
+      return new SimpleValueWrapper(entry.value());
+    }
+    return existing;
+  }
+
+  @Override
+  public void evict(Object key) {
+    delegate.evict(key);
+  }
+
+  @Override
+  public boolean evictIfPresent(Object key) {
+    return delegate.evictIfPresent(key);
+  }
+
+  @Override
+  public void clear() {
+    delegate.clear();
+  }
+
+  @Override
+  public boolean invalidate() {
+    return delegate.invalidate();
+  }
+
+  private ValueWrapper store(Object key, Object value) {
+    if (value == null) {
+      delegate.put(key, null);
+      return new SimpleValueWrapper(null);
+    }
+
+    Entry entry = entry(value);
+    delegate.put(key, entry);
+    return new EntryValueWrapper(entry);
+  }
+
+  private Entry entry(Object value) {
+    long now = clock.millis();
+    long timeToLive = (long) (timeToLiveMillis
+        * (1 - jitter * ThreadLocalRandom.current().nextDouble()));
+    return new Entry(value, now + (long) (timeToLive * refreshAfter), now + timeToLive);
+  }
+
+  private static boolean isExpired(Entry entry, long now) {
+    return now >= entry.expiresAt();
+  }
+
+  // Lets a near cache in front of this one refresh a value it served itself
+  public void refreshIfDue(Object key, ValueWrapper valueWrapper) {
+    if (valueWrapper instanceof EntryValueWrapper entryValueWrapper
+        && clock.millis() >= entryValueWrapper.getEntry().refreshAt()) {
+      refresh(key);
+    }
+  }
+
+  // Refreshes go through the cache's refresher rather than the loader of the lookup that found
+  // the entry due, which belongs to a call that has already returned
+  private void refresh(Object key) {
+    if (!refreshing.add(key)) {
+      return;
+    }
+    if (!refreshBulkhead.tryAcquire()) {
+      refreshing.remove(key);
+      skipped.increment();
+      logger.debug("Skipping refresh of key '{}' in cache '{}': too many refreshes in flight",
+          key, getName());
+      return;
+    }
+
+    logger.debug("Refreshing key '{}' in cache '{}' ahead of its expiry", key, getName());
+    CompletableFuture<?> refreshedValue;
+    try {
+      refreshedValue = refresher.refresh(key);
+    } catch (RuntimeException e) {
+      refreshedValue = CompletableFuture.failedFuture(e);
+    }
+    refreshedValue.whenComplete((value, error) -> {
+      try {
+        if (error == null && value != null) {
+          ValueWrapper valueWrapper = store(key, value);
+          refreshed.increment();
+          refreshListener.accept(key, valueWrapper);
+        } else if (error != null) {
+          logger.warn("Could not refresh key '{}' in cache '{}': {}", key, getName(),
+              error.toString());
+        }
+      } finally {
+        refreshBulkhead.release();
+        refreshing.remove(key);
+      }
+    });
+  }
+
+  private static <T> T load(Object key, Callable<T> valueLoader) {
+    try {
+      return valueLoader.call();
+    } catch (Exception e) {
+      throw new ValueRetrievalException(key, valueLoader, e);
+    }
+  }
+}
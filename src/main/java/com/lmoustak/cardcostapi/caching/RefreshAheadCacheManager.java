@@ -0,0 +1,67 @@
+package com.lmoustak.cardcostapi.caching;
+
+import com.lmoustak.cardcostapi.utils.Bulkhead;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+
+public class RefreshAheadCacheManager implements CacheManager {
+
+  private static final Logger logger = LoggerFactory.getLogger(RefreshAheadCacheManager.class);
+
+  private final ConcurrentMap<String, Cache> caches = new ConcurrentHashMap<>();
+
+  private final CacheManager delegate;
+  private final Map<String, CacheRefresher> refreshers;
+  private final Duration timeToLive;
+  private final double refreshAfter;
+  private final double jitter;
+  private final Bulkhead refreshBulkhead;
+  private final Clock clock;
+
+  public RefreshAheadCacheManager(CacheManager delegate, Map<String, CacheRefresher> refreshers,
+      Duration timeToLive, double refreshAfter, double jitter, int maxConcurrentRefreshes,
+      Clock clock) {
+    this.delegate = delegate;
+    this.refreshers = refreshers;
+    this.timeToLive = timeToLive;
+    this.refreshAfter = refreshAfter;
+    this.jitter = jitter;
+    this.refreshBulkhead = new Bulkhead(maxConcurrentRefreshes, Duration.ZERO);
+    this.clock = clock;
+  }
+
+  @Override
+  public Cache getCache(String name) {
+    return caches.computeIfAbsent(name, this::createCache);
+  }
+
+  @Override
+  public Collection<String> getCacheNames() {
+    return delegate.getCacheNames();
+  }
+
+  public int activeRefreshes() {
+    return refreshBulkhead.activeCalls();
+  }
+
+  private Cache createCache(String name) {
+    Cache cache = delegate.getCache(name);
+    CacheRefresher refresher = refreshers.get(name);
+    if (cache == null || refresher == null) {
+      return cache;
+    }
+
+    logger.debug("Refreshing entries of cache '{}' after {} of timeToLive={}, jitter={}", name,
+        refreshAfter, timeToLive, jitter);
+    return new RefreshAheadCache(cache, timeToLive, refreshAfter, jitter, refreshBulkhead,
+        refresher, clock);
+  }
+}
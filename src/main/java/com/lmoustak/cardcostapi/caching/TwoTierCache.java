@@ -0,0 +1,287 @@
+package com.lmoustak.cardcostapi.caching;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+
+public class TwoTierCache implements MultiGetCache {
+
+  private final String name;
+  private final com.google.common.cache.Cache<String, ValueWrapper> localCache;
+  private final Cache remoteCache;
+  private final CacheInvalidationPublisher invalidationPublisher;
+  private final CacheMetrics metrics;
+
+  public TwoTierCache(String name, com.google.common.cache.Cache<String, ValueWrapper> localCache,
+      Cache remoteCache, CacheInvalidationPublisher invalidationPublisher, CacheMetrics metrics) {
+    this.name = name;
+    this.localCache = localCache;
+    this.remoteCache = remoteCache;
+    this.invalidationPublisher = invalidationPublisher;
+    this.metrics = metrics;
+    if (remoteCache instanceof RefreshAheadCache refreshAheadCache) {
+      refreshAheadCache.setRefreshListener(this::refreshed);
+    }
+  }
+
+  @Override
+  public String getName() {
+    return name;
+  }
+
+  @Override
+  public Object getNativeCache() {
+    return remoteCache.getNativeCache();
+  }
+
+  public com.google.common.cache.Cache<String, ValueWrapper> getLocalCache() {
+    return localCache;
+  }
+
+  public Cache getRemoteCache() {
+    return remoteCache;
+  }
+
+  @Override
+  public ValueWrapper get(Object key) {
+    String localKey = localKey(key);
+    ValueWrapper valueWrapper = localCache.getIfPresent(localKey);
+    if (valueWrapper != null) {
+      metrics.localHits(1);
+      return valueWrapper;
+    }
+
+    valueWrapper = remoteCache.get(key);
+    if (valueWrapper != null) {
+      metrics.remoteHits(1);
+      localCache.put(localKey, valueWrapper);
+    } else {
+      metrics.misses(1);
+    }
+    return valueWrapper;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T> T get(Object key, Class<T> type) {
+    ValueWrapper valueWrapper = get(key);
+    if (valueWrapper == null) {
+      return null;
+    }
+
+    Object value = valueWrapper.get();
+    if (value != null && type != null && !type.isInstance(value)) {
+      throw new IllegalStateException(
+          "Cached value is not of required type [%s]: %s".formatted(type.getName(), value));
+    }
+    return (T) value;
+  }
+
+  @Override
+  public Map<Object, ValueWrapper> getAll(Collection<?> keys) {
+    Map<Object, ValueWrapper> found = new LinkedHashMap<>();
+    List<Object> remoteKeys = new ArrayList<>();
+    for (Object key : keys) {
+      ValueWrapper valueWrapper = localCache.getIfPresent(localKey(key));
+      if (valueWrapper != null) {
+        found.put(key, valueWrapper);
+      } else {
+        remoteKeys.add(key);
+      }
+    }
+    metrics.localHits(found.size());
+
+    if (!remoteKeys.isEmpty()) {
+      Map<Object, ValueWrapper> remoteValues = MultiGetCache.getAll(remoteCache, remoteKeys);
+      remoteValues.forEach((key, valueWrapper) -> {
+        localCache.put(localKey(key), valueWrapper);
+        found.put(key, valueWrapper);
+      });
+      metrics.remoteHits(remoteValues.size());
+      metrics.misses(remoteKeys.size() - remoteValues.size());
+    }
+    return found;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T> T get(Object key, Callable<T> valueLoader) {
+    String localKey = localKey(key);
+    ValueWrapper valueWrapper = localCache.getIfPresent(localKey);
+    if (valueWrapper != null) {
+      metrics.localHits(1);
+      refreshIfDue(key, valueWrapper);
+      return (T) valueWrapper.get();
+    }
+
+    var loaded = new AtomicBoolean();
+    Callable<T> remoteLoader = () -> {
+      loaded.set(true);
+      return metrics.load(valueLoader);
+    };
+    valueWrapper = remoteCache instanceof RefreshAheadCache refreshAheadCache
+        ? refreshAheadCache.getWrapper(key, remoteLoader)
+        : new SimpleValueWrapper(remoteCache.get(key, remoteLoader));
+    countRemoteLookup(loaded.get());
+    localCache.put(localKey, valueWrapper);
+    return (T) valueWrapper.get();
+  }
+
+  @Override
+  public CompletableFuture<?> retrieve(Object key) {
+    String localKey = localKey(key);
+    ValueWrapper valueWrapper = localCache.getIfPresent(localKey);
+    if (valueWrapper != null) {
+      metrics.localHits(1);
+      return CompletableFuture.completedFuture(valueWrapper);
+    }
+
+    CompletableFuture<?> remoteValue = remoteCache.retrieve(key);
+    if (remoteValue == null) {
+      return null;
+    }
+    return remoteValue.thenApply(value -> {
+      countRemoteLookup(value == null);
+      if (value == null) {
+        return null;
+      }
+      ValueWrapper wrapper = value instanceof ValueWrapper existing
+          ? existing : new SimpleValueWrapper(value);
+      localCache.put(localKey, wrapper);
+      return value;
+    });
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T> CompletableFuture<T> retrieve(Object key,
+      Supplier<CompletableFuture<T>> valueLoader) {
+    String localKey = localKey(key);
+    ValueWrapper valueWrapper = localCache.getIfPresent(localKey);
+    if (valueWrapper != null) {
+      metrics.localHits(1);
+      refreshIfDue(key, valueWrapper);
+      return CompletableFuture.completedFuture((T) valueWrapper.get());
+    }
+
+    var loaded = new AtomicBoolean();
+    Supplier<CompletableFuture<T>> remoteLoader = () -> {
+      loaded.set(true);
+      return metrics.load(valueLoader);
+    };
+    CompletableFuture<ValueWrapper> remoteValue =
+        remoteCache instanceof RefreshAheadCache refreshAheadCache
+            ? refreshAheadCache.retrieveWrapper(key, remoteLoader)
+            : remoteCache.retrieve(key, remoteLoader).thenApply(SimpleValueWrapper::new);
+    return remoteValue.thenApply(remoteValueWrapper -> {
+      countRemoteLookup(loaded.get());
+      localCache.put(localKey, remoteValueWrapper);
+      return (T) remoteValueWrapper.get();
+    });
+  }
+
+  @Override
+  public void put(Object key, Object value) {
+    remoteCache.put(key, value);
+    String localKey = localKey(key);
+    localCache.put(localKey, new SimpleValueWrapper(value));
+    invalidationPublisher.publish(name, localKey);
+  }
+
+  @Override
+  public void putAll(Map<?, ?> entries) {
+    MultiGetCache.putAll(remoteCache, entries);
+    List<String> localKeys = new ArrayList<>(entries.size());
+    entries.forEach((key, value) -> {
+      String localKey = localKey(key);
+      localCache.put(localKey, new SimpleValueWrapper(value));
+      localKeys.add(localKey);
+    });
+    invalidationPublisher.publishAll(name, localKeys);
+  }
+
+  @Override
+  public ValueWrapper putIfAbsent(Object key, Object value) {
+    ValueWrapper existing = remoteCache.putIfAbsent(key, value);
+    String localKey = localKey(key);
+    localCache.put(localKey, existing != null ? existing : new SimpleValueWrapper(value));
+    if (existing == null) {
+      invalidationPublisher.publish(name, localKey);
+    }
+    return existing;
+  }
+
+  @Override
+  public void evict(Object key) {
+    remoteCache.evict(key);
+    String localKey = localKey(key);
+    localCache.invalidate(localKey);
+    invalidationPublisher.publish(name, localKey);
+  }
+
+  @Override
+  public boolean evictIfPresent(Object key) {
+    boolean evicted = remoteCache.evictIfPresent(key);
+    String localKey = localKey(key);
+    localCache.invalidate(localKey);
+    invalidationPublisher.publish(name, localKey);
+    return evicted;
+  }
+
+  @Override
+  public void clear() {
+    remoteCache.clear();
+    localCache.invalidateAll();
+    invalidationPublisher.publish(name, null);
+  }
+
+  @Override
+  public boolean invalidate() {
+    boolean invalidated = remoteCache.invalidate();
+    localCache.invalidateAll();
+    invalidationPublisher.publish(name, null);
+    return invalidated;
+  }
+
+  // Hot keys are served from the local tier until it expires them, so their refresh point has to
+  // be looked at here too, or they would expire remotely before ever being refreshed ahead
+  private void refreshIfDue(Object key, ValueWrapper valueWrapper) {
+    if (remoteCache instanceof RefreshAheadCache refreshAheadCache) {
+      refreshAheadCache.refreshIfDue(key, valueWrapper);
+    }
+  }
+
+  private void refreshed(Object key, ValueWrapper valueWrapper) {
+    String localKey = localKey(key);
+    localCache.put(localKey, valueWrapper);
+    invalidationPublisher.publish(name, localKey);
+  }
+
+  private void countRemoteLookup(boolean missed) {
+    if (missed) {
+      metrics.misses(1);
+    } else {
+      metrics.remoteHits(1);
+    }
+  }
+
+  public void evictLocal(String localKey) {
+    if (localKey == null) {
+      localCache.invalidateAll();
+    } else {
+      localCache.invalidate(localKey);
+    }
+  }
+
+  private static String localKey(Object key) {
+    return String.valueOf(key);
+  }
+}
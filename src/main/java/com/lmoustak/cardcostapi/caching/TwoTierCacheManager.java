@@ -0,0 +1,132 @@
+package com.lmoustak.cardcostapi.caching;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.CacheBuilder;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+public class TwoTierCacheManager implements CacheManager, CacheInvalidationPublisher {
+
+  public static final String INVALIDATION_CHANNEL = "card-cost-api:cache-invalidation";
+
+  private static final Logger logger = LoggerFactory.getLogger(TwoTierCacheManager.class);
+
+  private static final ObjectMapper objectMapper = new ObjectMapper();
+
+  private final String instanceId = UUID.randomUUID().toString();
+  private final ConcurrentMap<String, TwoTierCache> caches = new ConcurrentHashMap<>();
+
+  private final CacheManager remoteCacheManager;
+  private final StringRedisTemplate redisTemplate;
+  private final long maximumSize;
+  private final Duration timeToLive;
+  private final MeterRegistry meterRegistry;
+
+  public TwoTierCacheManager(CacheManager remoteCacheManager, StringRedisTemplate redisTemplate,
+      long maximumSize, Duration timeToLive, MeterRegistry meterRegistry) {
+    this.remoteCacheManager = remoteCacheManager;
+    this.redisTemplate = redisTemplate;
+    this.maximumSize = maximumSize;
+    this.timeToLive = timeToLive;
+    this.meterRegistry = meterRegistry;
+  }
+
+  @Override
+  public Cache getCache(String name) {
+    return caches.computeIfAbsent(name, this::createCache);
+  }
+
+  @Override
+  public Collection<String> getCacheNames() {
+    return Collections.unmodifiableSet(caches.keySet());
+  }
+
+  private TwoTierCache createCache(String name) {
+    Cache remoteCache = remoteCacheManager.getCache(name);
+    if (remoteCache == null) {
+      return null;
+    }
+
+    logger.debug("Creating near cache '{}' with maximumSize={}, timeToLive={}", name, maximumSize,
+        timeToLive);
+    return new TwoTierCache(name,
+        CacheBuilder.newBuilder()
+            .maximumSize(maximumSize)
+            .expireAfterWrite(timeToLive)
+            .recordStats()
+            .build(),
+        remoteCache,
+        this,
+        new CacheMetrics(name, meterRegistry));
+  }
+
+  @Override
+  public void publish(String cacheName, String key) {
+    try {
+      redisTemplate.convertAndSend(INVALIDATION_CHANNEL, objectMapper.writeValueAsString(
+          new CacheInvalidationMessage(instanceId, cacheName, key)));
+    } catch (JsonProcessingException | RuntimeException e) {
+      logger.warn("Could not publish invalidation of key '{}' in cache '{}'", key, cacheName, e);
+    }
+  }
+
+  @Override
+  public void publishAll(String cacheName, Collection<String> keys) {
+    if (keys.isEmpty()) {
+      return;
+    }
+
+    try {
+      List<String> messages = new ArrayList<>(keys.size());
+      for (String key : keys) {
+        messages.add(objectMapper.writeValueAsString(
+            new CacheInvalidationMessage(instanceId, cacheName, key)));
+      }
+      RedisSerializer<String> serializer = redisTemplate.getStringSerializer();
+      byte[] channel = serializer.serialize(INVALIDATION_CHANNEL);
+      redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+        messages.forEach(message -> connection.publish(channel, serializer.serialize(message)));
+        return null;
+      });
+    } catch (JsonProcessingException | RuntimeException e) {
+      logger.warn("Could not publish invalidation of {} keys in cache '{}'", keys.size(),
+          cacheName, e);
+    }
+  }
+
+  public void handleInvalidation(String message) {
+    CacheInvalidationMessage invalidation;
+    try {
+      invalidation = objectMapper.readValue(message, CacheInvalidationMessage.class);
+    } catch (JsonProcessingException e) {
+      logger.warn("Ignoring malformed cache invalidation message '{}'", message, e);
+      return;
+    }
+
+    if (instanceId.equals(invalidation.origin())) {
+      return;
+    }
+
+    TwoTierCache cache = caches.get(invalidation.cacheName());
+    if (cache != null) {
+      logger.debug("Evicting key '{}' from near cache '{}' on request of {}", invalidation.key(),
+          invalidation.cacheName(), invalidation.origin());
+      cache.evictLocal(invalidation.key());
+    }
+  }
+}
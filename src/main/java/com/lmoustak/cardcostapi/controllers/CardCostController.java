@@ -1,23 +1,49 @@
 package com.lmoustak.cardcostapi.controllers;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.lmoustak.cardcostapi.controllers.requests.CardCostRequest;
+import com.lmoustak.cardcostapi.dtos.CardCostBatchEntryDto;
 import com.lmoustak.cardcostapi.dtos.CardCostDto;
+import com.lmoustak.cardcostapi.dtos.CardCostResult;
 import com.lmoustak.cardcostapi.services.CardCostService;
+import com.lmoustak.cardcostapi.utils.CompletableFutures;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.ExampleObject;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.MediaType;
 import org.springframework.http.ProblemDetail;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
 
 @RestController
 @RequestMapping(
@@ -29,10 +55,18 @@ public class CardCostController {
 
   private static final Logger logger = LoggerFactory.getLogger(CardCostController.class);
 
+  public static final String DEGRADED_HEADER = "X-Degraded";
+  public static final String STALE_BIN_COUNTRY = "stale-bin-country";
+
   private final CardCostService cardCostService;
+  private final ObjectMapper objectMapper;
+  private final Duration timeout;
 
-  public CardCostController(CardCostService cardCostService) {
+  public CardCostController(CardCostService cardCostService, ObjectMapper objectMapper,
+      @Value("${card-cost.timeout:10s}") Duration timeout) {
     this.cardCostService = cardCostService;
+    this.objectMapper = objectMapper;
+    this.timeout = timeout;
   }
 
   @Operation(summary = "Get the clearing cost of a card")
@@ -140,8 +174,18 @@ public class CardCostController {
               """)
       )
   )
+  @ApiResponse(
+      responseCode = "503",
+      description = "BINTable API is unavailable and no previously resolved country is known",
+      content = @Content(schema = @Schema(implementation = ProblemDetail.class))
+  )
+  @ApiResponse(
+      responseCode = "504",
+      description = "The card cost could not be calculated in time",
+      content = @Content(schema = @Schema(implementation = ProblemDetail.class))
+  )
   @PostMapping
-  public CardCostDto getCardCost(
+  public DeferredResult<ResponseEntity<CardCostDto>> getCardCost(
       @io.swagger.v3.oas.annotations.parameters.RequestBody(
           description = "A request containing the card number, or Primary Account Number (PAN)",
           required = true
@@ -151,6 +195,197 @@ public class CardCostController {
       CardCostRequest request
   ) {
     logger.debug("Calling POST /payment-cards-cost with request body: {}", request);
-    return cardCostService.findCardCostFromIssuerIdentificationNumber(request.getCard_number());
+    CompletableFuture<CardCostDto> cardCost =
+        cardCostService.findCardCostFromIssuerIdentificationNumberAsync(request.getCard_number());
+
+    var deferredResult = new DeferredResult<ResponseEntity<CardCostDto>>(timeout.toMillis());
+    deferredResult.onTimeout(() -> {
+      cardCost.cancel(true);
+      deferredResult.setErrorResult(new TimeoutException(
+          "No card cost was calculated within " + timeout.toMillis() + "ms"));
+    });
+    deferredResult.onError(error -> cardCost.cancel(true));
+    deferredResult.onCompletion(() -> cardCost.cancel(true));
+
+    cardCost.whenComplete((result, error) -> {
+      if (error == null) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (result.degraded()) {
+          response.header(DEGRADED_HEADER, STALE_BIN_COUNTRY);
+        }
+        deferredResult.setResult(response.body(result));
+      } else {
+        deferredResult.setErrorResult(CompletableFutures.unwrap(error));
+      }
+    });
+    return deferredResult;
+  }
+
+  @Operation(summary = "Get the clearing costs of many cards at once")
+  @ApiResponse(
+      responseCode = "200",
+      description = "Clearing costs, or the error that occurred, for each card in request order",
+      content = @Content(
+          array = @ArraySchema(schema = @Schema(implementation = CardCostBatchEntryDto.class)),
+          examples = @ExampleObject("""
+              [
+                  {
+                      "country": "gr",
+                      "cost": 4.5
+                  },
+                  {
+                      "country": "us",
+                      "cost": 5,
+                      "degraded": true
+                  },
+                  {
+                      "error": {
+                          "title": "Bad request",
+                          "status": 400,
+                          "detail": "`card_number` should contain 8-19 numeric digits"
+                      }
+                  }
+              ]
+              """)
+      )
+  )
+  @ApiResponse(
+      responseCode = "400",
+      description = "The batch was missing or too large",
+      content = @Content(schema = @Schema(implementation = ProblemDetail.class))
+  )
+  @PostMapping("/batch")
+  public List<CardCostBatchEntryDto> getCardCosts(
+      @io.swagger.v3.oas.annotations.parameters.RequestBody(
+          description = "An array of card numbers, or Primary Account Numbers (PAN)",
+          required = true
+      )
+      @RequestBody
+      List<String> cardNumbers
+  ) {
+    logger.debug("Calling POST /payment-cards-cost/batch with {} card numbers",
+        cardNumbers.size());
+    List<CardCostResult> results = cardCostService.findCardCostsFromIssuerIdentificationNumbers(
+        cardNumbers);
+
+    List<CardCostBatchEntryDto> entries = new ArrayList<>(results.size());
+    for (CardCostResult result : results) {
+      entries.add(toBatchEntry(result));
+    }
+    return entries;
+  }
+
+  @Operation(summary = "Stream the clearing costs of an unbounded number of cards")
+  @ApiResponse(
+      responseCode = "200",
+      description = "One line with the clearing cost, or the error that occurred, per input line",
+      content = @Content(
+          mediaType = MediaType.APPLICATION_NDJSON_VALUE,
+          schema = @Schema(implementation = CardCostBatchEntryDto.class),
+          examples = @ExampleObject("""
+              {"country":"gr","cost":4.5}
+              {"error":{"title":"Bad request","status":400,"detail":"`card_number` should contain 8-19 numeric digits"}}
+              """)
+      )
+  )
+  @PostMapping(
+      value = "/stream",
+      consumes = MediaType.APPLICATION_NDJSON_VALUE,
+      produces = MediaType.APPLICATION_NDJSON_VALUE
+  )
+  public void streamCardCosts(
+      @io.swagger.v3.oas.annotations.parameters.RequestBody(
+          description = """
+              Newline-delimited JSON card numbers, either as strings or as objects with a
+              `card_number` field.
+              """,
+          required = true
+      )
+      InputStream requestBody,
+      HttpServletResponse response
+  ) throws IOException {
+    logger.debug("Calling POST /payment-cards-cost/stream");
+    response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+
+    var reader = new BufferedReader(new InputStreamReader(requestBody, StandardCharsets.UTF_8));
+    OutputStream out = new BufferedOutputStream(response.getOutputStream());
+    try {
+      cardCostService.streamCardCostsFromIssuerIdentificationNumbers(
+          new CardNumberLineIterator(reader, objectMapper),
+          result -> {
+            try {
+              out.write(objectMapper.writeValueAsBytes(toBatchEntry(result)));
+              out.write('\n');
+            } catch (IOException e) {
+              throw new UncheckedIOException(e);
+            }
+          },
+          () -> {
+            try {
+              out.flush();
+            } catch (IOException e) {
+              throw new UncheckedIOException(e);
+            }
+          });
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  private static CardCostBatchEntryDto toBatchEntry(CardCostResult result) {
+    return result.error() == null
+        ? CardCostBatchEntryDto.success(result.cardCost())
+        : CardCostBatchEntryDto.failure(
+            ControllerExceptionHandler.problemDetailFor(result.error()));
+  }
+
+  private static class CardNumberLineIterator implements Iterator<String> {
+
+    private final BufferedReader reader;
+    private final ObjectMapper objectMapper;
+    private String nextLine;
+
+    CardNumberLineIterator(BufferedReader reader, ObjectMapper objectMapper) {
+      this.reader = reader;
+      this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public boolean hasNext() {
+      try {
+        while (nextLine == null) {
+          String line = reader.readLine();
+          if (line == null) {
+            return false;
+          }
+          if (!line.isBlank()) {
+            nextLine = line;
+          }
+        }
+        return true;
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    @Override
+    public String next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+
+      String line = nextLine;
+      nextLine = null;
+      try {
+        JsonNode node = objectMapper.readTree(line);
+        if (node.isTextual()) {
+          return node.textValue();
+        }
+        JsonNode cardNumber = node.get("card_number");
+        return cardNumber != null && cardNumber.isTextual() ? cardNumber.textValue() : null;
+      } catch (JsonProcessingException e) {
+        return line;
+      }
+    }
   }
 }
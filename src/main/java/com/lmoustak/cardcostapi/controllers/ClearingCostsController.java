@@ -1,6 +1,14 @@
 package com.lmoustak.cardcostapi.controllers;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.RuntimeJsonMappingException;
 import com.lmoustak.cardcostapi.controllers.requests.ClearingCostsRequest;
+import com.lmoustak.cardcostapi.dtos.ClearingCostsImportResult;
+import com.lmoustak.cardcostapi.dtos.ClearingCostsPage;
+import com.lmoustak.cardcostapi.dtos.ClearingCostsVersion;
 import com.lmoustak.cardcostapi.entities.ClearingCosts;
 import com.lmoustak.cardcostapi.services.ClearingCostsService;
 import io.swagger.v3.oas.annotations.Operation;
@@ -11,10 +19,28 @@ import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.persistence.EntityNotFoundException;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ProblemDetail;
 import org.springframework.http.ResponseEntity;
@@ -24,9 +50,11 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 @RestController
@@ -39,10 +67,18 @@ public class ClearingCostsController {
 
   private static final Logger logger = LoggerFactory.getLogger(ClearingCostsController.class);
 
+  public static final String TEXT_CSV_VALUE = "text/csv";
+  private static final String CSV_HEADER = "country,price";
+
   private final ClearingCostsService clearingCostsService;
+  private final ObjectMapper objectMapper;
+  private final int maxPageSize;
 
-  public ClearingCostsController(ClearingCostsService clearingCostsService) {
+  public ClearingCostsController(ClearingCostsService clearingCostsService,
+      ObjectMapper objectMapper, @Value("${clearing-costs.page.max-size:1000}") int maxPageSize) {
     this.clearingCostsService = clearingCostsService;
+    this.objectMapper = objectMapper;
+    this.maxPageSize = maxPageSize;
   }
 
   @Operation(summary = "Create a new clearing costs entry")
@@ -113,13 +149,17 @@ public class ClearingCostsController {
                 .path("/{id}")
                 .build(clearingCosts.getId())
         )
+        .eTag(eTagOf(clearingCosts))
         .body(clearingCosts);
   }
 
   @Operation(summary = "Get all clearing costs entries")
   @ApiResponse(
       responseCode = "200",
-      description = "Clearing costs entries retrieved",
+      description = """
+          Clearing costs entries retrieved, ordered by id. The `ETag` header holds the version of
+          the whole clearing cost matrix.
+          """,
       content = @Content(
           mediaType = MediaType.APPLICATION_JSON_VALUE,
           array = @ArraySchema(
@@ -127,10 +167,103 @@ public class ClearingCostsController {
           )
       )
   )
-  @GetMapping
-  public List<ClearingCosts> getAllClearingCosts() {
+  @ApiResponse(
+      responseCode = "304",
+      description = "The clearing cost matrix still has the version given in `If-None-Match`"
+  )
+  // The lookups below are mutually exclusive, so that combining them is rejected with 400 rather
+  // than matching more than one handler
+  @GetMapping(params = {"!limit", "!ids", "!countries"})
+  public void getAllClearingCosts(WebRequest webRequest, HttpServletResponse response)
+      throws IOException {
     logger.debug("Calling GET /clearing-costs");
-    return clearingCostsService.readAllClearingCosts();
+    // Read from the database before the entries, so that a concurrent change never leaves a
+    // client on a stale tag, and a node that missed a change does not confirm the old one
+    String eTag = "\"%x\"".formatted(clearingCostsService.readClearingCostsMatrixVersion());
+    if (webRequest.checkNotModified(eTag)) {
+      return;
+    }
+    writeJsonArray(response, clearingCostsService::streamAllClearingCosts);
+  }
+
+  @Operation(summary = "Get a page of clearing costs entries")
+  @ApiResponse(
+      responseCode = "200",
+      description = """
+          Clearing costs entries retrieved, ordered by `sort`. `next` is the `after` value of the
+          next page, or null on the last page.
+          """,
+      content = @Content(
+          mediaType = MediaType.APPLICATION_JSON_VALUE,
+          schema = @Schema(implementation = ClearingCostsPage.class),
+          examples = @ExampleObject("""
+              {
+                  "items": [
+                      {"id": 1, "country": null, "price": 10},
+                      {"id": 2, "country": "gr", "price": 3}
+                  ],
+                  "next": "2"
+              }
+              """)
+      )
+  )
+  @ApiResponse(
+      responseCode = "400",
+      description = "limit, after or sort was invalid",
+      content = @Content(schema = @Schema(implementation = ProblemDetail.class))
+  )
+  @GetMapping(params = {"limit", "!ids", "!countries"})
+  public ClearingCostsPage getClearingCostsPage(
+      @RequestParam int limit,
+      @RequestParam(required = false) String after,
+      @RequestParam(defaultValue = "id") String sort
+  ) {
+    logger.debug("Calling GET /clearing-costs?limit={}&after={}&sort={}", limit, after, sort);
+    checkPageSize(limit);
+    return switch (sort) {
+      case "id" -> clearingCostsService.readClearingCostsPageById(parseId(after), limit);
+      case "country" -> clearingCostsService.readClearingCostsPageByCountry(after, limit);
+      default -> throw new IllegalArgumentException(
+          "`sort` should be either `id` or `country`, but was '%s'".formatted(sort));
+    };
+  }
+
+  @Operation(summary = "Get the clearing costs entries with the given ids")
+  @ApiResponse(
+      responseCode = "200",
+      description = "Clearing costs entries retrieved, in the order of the given ids",
+      content = @Content(
+          mediaType = MediaType.APPLICATION_JSON_VALUE,
+          array = @ArraySchema(
+              schema = @Schema(implementation = ClearingCosts.class)
+          )
+      )
+  )
+  @GetMapping(params = {"ids", "!limit", "!countries"})
+  public List<ClearingCosts> getClearingCostsByIds(@RequestParam List<Long> ids) {
+    logger.debug("Calling GET /clearing-costs?ids={}", ids);
+    return clearingCostsService.readClearingCostsByIds(ids);
+  }
+
+  @Operation(summary = "Get the clearing costs that apply to each of the given countries")
+  @ApiResponse(
+      responseCode = "200",
+      description = "Clearing costs entries retrieved, keyed by country",
+      content = @Content(
+          mediaType = MediaType.APPLICATION_JSON_VALUE,
+          examples = @ExampleObject("""
+              {
+                  "gr": {"id": 2, "country": "gr", "price": 3},
+                  "de": {"id": 1, "country": null, "price": 10}
+              }
+              """)
+      )
+  )
+  @GetMapping(params = {"countries", "!limit", "!ids"})
+  public Map<String, ClearingCosts> getClearingCostsByCountries(
+      @RequestParam List<String> countries) {
+    logger.debug("Calling GET /clearing-costs?countries={}", countries);
+    return clearingCostsService.readClearingCostsByCountries(countries);
   }
 
   @Operation(summary = "Get clearing costs entry by its id")
@@ -174,13 +307,19 @@ public class ClearingCostsController {
               """)
       )
   )
+  @ApiResponse(
+      responseCode = "304",
+      description = "The clearing costs entry still has the version given in `If-None-Match`"
+  )
   @GetMapping("/country/{country}")
-  public ClearingCosts getClearingCostsByCountry(@PathVariable String country) {
+  public ClearingCosts getClearingCostsByCountry(@PathVariable String country,
+      WebRequest webRequest) {
     logger.debug("Calling GET /clearing-costs/country/{}", country);
-    return clearingCostsService.readClearingCostsByCountry(country)
+    ClearingCosts clearingCosts = clearingCostsService.readClearingCostsByCountry(country)
         .orElseThrow(
             () -> new EntityNotFoundException(
                 "No clearing costs for country=%s found".formatted(country)));
+    return webRequest.checkNotModified(eTagOf(clearingCosts)) ? null : clearingCosts;
   }
 
   @Operation(summary = "Get clearing costs entries by the given price range")
@@ -195,13 +334,63 @@ public class ClearingCostsController {
       )
   )
   @GetMapping("/priceRange")
-  public List<ClearingCosts> getClearingCostsInPriceRange(
+  public void getClearingCostsInPriceRange(
       @RequestParam(required = false) BigDecimal minPrice,
-      @RequestParam(required = false) BigDecimal maxPrice
-  ) {
+      @RequestParam(required = false) BigDecimal maxPrice,
+      HttpServletResponse response
+  ) throws IOException {
     logger.debug("Calling GET /clearing-costs/priceRange?minPrice={}&maxPrice={}", minPrice,
         maxPrice);
-    return clearingCostsService.readClearingCostsByPriceRange(minPrice, maxPrice);
+    writeJsonArray(response,
+        consumer -> clearingCostsService.streamClearingCostsByPriceRange(minPrice, maxPrice,
+            consumer));
+  }
+
+  @Operation(summary = "Get a page of clearing costs entries in the given price range")
+  @ApiResponse(
+      responseCode = "200",
+      description = """
+          Clearing costs entries retrieved, ordered by id. `next` is the `after` value of the next
+          page, or null on the last page.
+          """,
+      content = @Content(
+          mediaType = MediaType.APPLICATION_JSON_VALUE,
+          schema = @Schema(implementation = ClearingCostsPage.class)
+      )
+  )
+  @GetMapping(value = "/priceRange", params = "limit")
+  public ClearingCostsPage getClearingCostsPageInPriceRange(
+      @RequestParam(required = false) BigDecimal minPrice,
+      @RequestParam(required = false) BigDecimal maxPrice,
+      @RequestParam int limit,
+      @RequestParam(required = false) String after
+  ) {
+    logger.debug(
+        "Calling GET /clearing-costs/priceRange?minPrice={}&maxPrice={}&limit={}&after={}",
+        minPrice, maxPrice, limit, after);
+    checkPageSize(limit);
+    return clearingCostsService.readClearingCostsPageByPriceRange(minPrice, maxPrice,
+        parseId(after), limit);
+  }
+
+  private void checkPageSize(int limit) {
+    if (limit < 1 || limit > maxPageSize) {
+      throw new IllegalArgumentException(
+          "`limit` should be between 1 and %d, but was %d".formatted(maxPageSize, limit));
+    }
+  }
+
+  private static Long parseId(String after) {
+    if (after == null || after.isEmpty()) {
+      return null;
+    }
+
+    try {
+      return Long.valueOf(after);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException(
+          "`after` should be the id of the last entry, but was '%s'".formatted(after));
+    }
   }
 
   @Operation(summary = "Update a new clearing costs entry")
@@ -245,10 +434,67 @@ public class ClearingCostsController {
           }
       )
   )
+  @ApiResponse(
+      responseCode = "412",
+      description = """
+          The clearing costs entry no longer matches `If-Match`, or was updated concurrently
+          """,
+      content = @Content(
+          schema = @Schema(implementation = ProblemDetail.class),
+          examples = @ExampleObject("""
+              {
+                  "title": "Resource was modified",
+                  "status": 412,
+                  "description": "Clearing costs for country='gr' were changed since they were read",
+                  "instance": "http://localhost:8080/clearing-costs"
+              }
+              """)
+      )
+  )
   @PutMapping
-  public ClearingCosts updateClearingCosts(@RequestBody ClearingCostsRequest request) {
-    logger.debug("Calling PUT /clearing-costs with request body {}", request);
-    return clearingCostsService.updateClearingCosts(request.getCountry(), request.getPrice());
+  public ResponseEntity<ClearingCosts> updateClearingCosts(
+      @RequestBody ClearingCostsRequest request,
+      @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) List<String> ifMatch
+  ) {
+    logger.debug("Calling PUT /clearing-costs with request body {} and If-Match {}", request,
+        ifMatch);
+    ClearingCosts clearingCosts = clearingCostsService.updateClearingCosts(request.getCountry(),
+        request.getPrice(), parseIfMatch(ifMatch));
+    return ResponseEntity.ok()
+        .eTag(eTagOf(clearingCosts))
+        .body(clearingCosts);
+  }
+
+  private static String eTagOf(ClearingCosts clearingCosts) {
+    return "\"%d-%d\"".formatted(clearingCosts.getId(), clearingCosts.getVersion());
+  }
+
+  private static List<ClearingCostsVersion> parseIfMatch(List<String> ifMatch) {
+    if (ifMatch == null || ifMatch.isEmpty()) {
+      return null;
+    }
+
+    // Weak and unknown tags never match, so that they fail the precondition
+    List<ClearingCostsVersion> versions = new ArrayList<>(ifMatch.size());
+    for (String eTag : ifMatch) {
+      String tag = eTag.strip();
+      if (tag.equals("*")) {
+        return null;
+      }
+      if (tag.length() < 2 || !tag.startsWith("\"") || !tag.endsWith("\"")) {
+        continue;
+      }
+
+      String[] parts = tag.substring(1, tag.length() - 1).split("-", -1);
+      try {
+        if (parts.length == 2) {
+          versions.add(new ClearingCostsVersion(Long.valueOf(parts[0]), Long.valueOf(parts[1])));
+        }
+      } catch (NumberFormatException e) {
+        logger.debug("Ignoring unknown entity tag {} in If-Match", tag);
+      }
+    }
+    return versions;
   }
 
   @Operation(summary = "Delete clearing costs entry by its id")
@@ -323,4 +569,304 @@ public class ClearingCostsController {
 
     return ResponseEntity.noContent().build();
   }
+
+  @Operation(summary = "Create or update many clearing costs entries at once, from CSV")
+  @ApiResponse(
+      responseCode = "200",
+      description = "All rows were applied in a single transaction",
+      content = @Content(
+          mediaType = MediaType.APPLICATION_JSON_VALUE,
+          schema = @Schema(implementation = ClearingCostsImportResult.class)
+      )
+  )
+  @ApiResponse(
+      responseCode = "400",
+      description = "One or more rows were invalid, and nothing was imported",
+      content = @Content(
+          schema = @Schema(implementation = ProblemDetail.class),
+          examples = @ExampleObject("""
+              {
+                  "title": "Validation error",
+                  "status": 400,
+                  "description": "2 clearing costs rows were invalid. Nothing was imported. Please check the `errors` field.",
+                  "instance": "http://localhost:8080/clearing-costs/bulk",
+                  "errors": {
+                      "[3].price": "`price` should not be negative",
+                      "[7].country": "`country` should not appear more than once, but 'gr' did"
+                  }
+              }
+              """)
+      )
+  )
+  @ApiResponse(
+      responseCode = "409",
+      description = "A clearing costs entry for a new country was created concurrently",
+      content = @Content(schema = @Schema(implementation = ProblemDetail.class))
+  )
+  @PutMapping(value = "/bulk", consumes = TEXT_CSV_VALUE)
+  public ClearingCostsImportResult importClearingCostsFromCsv(
+      @io.swagger.v3.oas.annotations.parameters.RequestBody(
+          description = """
+              `country,price` lines, with an optional header line. An empty country stands for
+              the default entry.
+              """,
+          required = true
+      )
+      InputStream requestBody,
+      @RequestParam(defaultValue = "false") boolean replace
+  ) {
+    logger.debug("Calling PUT /clearing-costs/bulk?replace={} with CSV", replace);
+    var reader = new BufferedReader(new InputStreamReader(requestBody, StandardCharsets.UTF_8));
+    return importClearingCosts(new CsvClearingCostsIterator(reader), replace);
+  }
+
+  @Operation(summary = "Create or update many clearing costs entries at once, from JSON")
+  @ApiResponse(
+      responseCode = "200",
+      description = "All rows were applied in a single transaction",
+      content = @Content(
+          mediaType = MediaType.APPLICATION_JSON_VALUE,
+          schema = @Schema(implementation = ClearingCostsImportResult.class)
+      )
+  )
+  @ApiResponse(
+      responseCode = "400",
+      description = "One or more rows were invalid, and nothing was imported",
+      content = @Content(schema = @Schema(implementation = ProblemDetail.class))
+  )
+  @ApiResponse(
+      responseCode = "409",
+      description = "A clearing costs entry for a new country was created concurrently",
+      content = @Content(schema = @Schema(implementation = ProblemDetail.class))
+  )
+  @PutMapping(
+      value = "/bulk",
+      consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE}
+  )
+  public ClearingCostsImportResult importClearingCostsFromJson(
+      @io.swagger.v3.oas.annotations.parameters.RequestBody(
+          description = "An array, or newline-delimited JSON, of clearing costs requests",
+          required = true
+      )
+      InputStream requestBody,
+      @RequestParam(defaultValue = "false") boolean replace
+  ) throws IOException {
+    logger.debug("Calling PUT /clearing-costs/bulk?replace={} with JSON", replace);
+    MappingIterator<ClearingCostsRequest> requests = objectMapper
+        .readerFor(ClearingCostsRequest.class)
+        .readValues(requestBody);
+    return importClearingCosts(new JsonClearingCostsIterator(requests), replace);
+  }
+
+  private ClearingCostsImportResult importClearingCosts(Iterator<ClearingCosts> rows,
+      boolean replace) {
+    try {
+      return clearingCostsService.importClearingCosts(rows, replace);
+    } catch (UncheckedIOException e) {
+      throw new IllegalArgumentException("Could not read the request body: " + e.getMessage(), e);
+    }
+  }
+
+  @Operation(summary = "Download all clearing costs entries as CSV")
+  @ApiResponse(
+      responseCode = "200",
+      description = "Clearing costs entries, ordered by id",
+      content = @Content(
+          mediaType = TEXT_CSV_VALUE,
+          examples = @ExampleObject("""
+              country,price
+              ,10
+              gr,3
+              """)
+      )
+  )
+  @GetMapping(value = "/bulk", produces = TEXT_CSV_VALUE)
+  public void exportClearingCostsAsCsv(HttpServletResponse response) throws IOException {
+    logger.debug("Calling GET /clearing-costs/bulk as CSV");
+    response.setContentType(TEXT_CSV_VALUE);
+    response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+
+    Writer writer = new BufferedWriter(
+        new OutputStreamWriter(response.getOutputStream(), StandardCharsets.UTF_8));
+    writer.write(CSV_HEADER);
+    writer.write('\n');
+    writeEach(clearingCostsService::exportClearingCosts, clearingCosts -> {
+      if (clearingCosts.getCountry() != null) {
+        writer.write(clearingCosts.getCountry());
+      }
+      writer.write(',');
+      writer.write(clearingCosts.getPrice().toPlainString());
+      writer.write('\n');
+    });
+    writer.flush();
+  }
+
+  @Operation(summary = "Download all clearing costs entries as JSON")
+  @ApiResponse(
+      responseCode = "200",
+      description = "Clearing costs entries, ordered by id",
+      content = @Content(
+          mediaType = MediaType.APPLICATION_JSON_VALUE,
+          array = @ArraySchema(
+              schema = @Schema(implementation = ClearingCosts.class)
+          )
+      )
+  )
+  @GetMapping(value = "/bulk", produces = MediaType.APPLICATION_JSON_VALUE)
+  public void exportClearingCostsAsJson(HttpServletResponse response) throws IOException {
+    logger.debug("Calling GET /clearing-costs/bulk as JSON");
+    writeJsonArray(response, clearingCostsService::exportClearingCosts);
+  }
+
+  private void writeJsonArray(HttpServletResponse response,
+      Consumer<Consumer<ClearingCosts>> source) throws IOException {
+    response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+
+    OutputStream out = response.getOutputStream();
+    try (JsonGenerator generator = objectMapper.createGenerator(out)) {
+      generator.writeStartArray();
+      writeEach(source, generator::writeObject);
+      generator.writeEndArray();
+    }
+  }
+
+  private static void writeEach(Consumer<Consumer<ClearingCosts>> source,
+      ClearingCostsWriter writer) throws IOException {
+    try {
+      source.accept(clearingCosts -> {
+        try {
+          writer.write(clearingCosts);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      });
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  @FunctionalInterface
+  private interface ClearingCostsWriter {
+
+    void write(ClearingCosts clearingCosts) throws IOException;
+  }
+
+  private static class CsvClearingCostsIterator implements Iterator<ClearingCosts> {
+
+    private final BufferedReader reader;
+    private int lineNumber;
+    private String nextLine;
+
+    CsvClearingCostsIterator(BufferedReader reader) {
+      this.reader = reader;
+    }
+
+    @Override
+    public boolean hasNext() {
+      try {
+        while (nextLine == null) {
+          String line = reader.readLine();
+          if (line == null) {
+            return false;
+          }
+          lineNumber++;
+          if (!line.isBlank() && !(lineNumber == 1 && isHeader(line))) {
+            nextLine = line;
+          }
+        }
+        return true;
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    private static boolean isHeader(String line) {
+      return line.replace(" ", "").replace("\"", "").equalsIgnoreCase(CSV_HEADER);
+    }
+
+    @Override
+    public ClearingCosts next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+
+      String line = nextLine;
+      nextLine = null;
+      String[] fields = line.split(",", -1);
+      if (fields.length != 2) {
+        throw new IllegalArgumentException(
+            "Line %d should contain a country and a price".formatted(lineNumber));
+      }
+
+      String country = unquote(fields[0]);
+      String price = unquote(fields[1]);
+      var clearingCosts = new ClearingCosts();
+      clearingCosts.setCountry(country.isEmpty() ? null : country);
+      try {
+        clearingCosts.setPrice(price.isEmpty() ? null : new BigDecimal(price));
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException(
+            "Line %d should contain a numeric price, but was '%s'".formatted(lineNumber, price));
+      }
+      return clearingCosts;
+    }
+
+    private static String unquote(String field) {
+      String trimmed = field.strip();
+      if (trimmed.length() >= 2 && trimmed.startsWith("\"") && trimmed.endsWith("\"")) {
+        return trimmed.substring(1, trimmed.length() - 1).strip();
+      }
+      return trimmed;
+    }
+  }
+
+  private static class JsonClearingCostsIterator implements Iterator<ClearingCosts> {
+
+    private final MappingIterator<ClearingCostsRequest> requests;
+
+    JsonClearingCostsIterator(MappingIterator<ClearingCostsRequest> requests) {
+      this.requests = requests;
+    }
+
+    @Override
+    public boolean hasNext() {
+      try {
+        return requests.hasNext();
+      } catch (RuntimeException e) {
+        throw translate(e);
+      }
+    }
+
+    @Override
+    public ClearingCosts next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+
+      ClearingCostsRequest request;
+      try {
+        request = requests.next();
+      } catch (RuntimeException e) {
+        throw translate(e);
+      }
+
+      var clearingCosts = new ClearingCosts();
+      clearingCosts.setCountry(request.getCountry());
+      clearingCosts.setPrice(request.getPrice());
+      return clearingCosts;
+    }
+
+    // MappingIterator wraps the checked exceptions of the underlying parser
+    private static RuntimeException translate(RuntimeException e) {
+      if (e instanceof RuntimeJsonMappingException
+          || e.getCause() instanceof JsonProcessingException) {
+        return new IllegalArgumentException(
+            "Malformed clearing costs row: " + e.getCause().getMessage(), e);
+      }
+      if (e.getCause() instanceof IOException ioException) {
+        return new UncheckedIOException(ioException);
+      }
+      return e;
+    }
+  }
 }
@@ -1,12 +1,18 @@
 package com.lmoustak.cardcostapi.controllers;
 
 import com.lmoustak.cardcostapi.exceptions.BinTableException;
+import com.lmoustak.cardcostapi.exceptions.ClearingCostsImportException;
 import jakarta.persistence.EntityExistsException;
 import jakarta.persistence.EntityNotFoundException;
+import jakarta.persistence.OptimisticLockException;
 import java.net.URI;
+import java.net.http.HttpTimeoutException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeoutException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.HttpStatusCode;
@@ -25,13 +31,30 @@ import org.springframework.web.servlet.mvc.method.annotation.ResponseEntityExcep
 @RestControllerAdvice
 public class ControllerExceptionHandler extends ResponseEntityExceptionHandler {
 
+  public static ProblemDetail problemDetailFor(RuntimeException e) {
+    ProblemDetail problemDetail;
+    if (e instanceof BinTableException binTableException) {
+      problemDetail = ProblemDetail.forStatusAndDetail(binTableException.getCode(),
+          e.getMessage());
+      problemDetail.setTitle("An error occurred while calling the BINTable API");
+    } else if (e instanceof EntityNotFoundException) {
+      problemDetail = ProblemDetail.forStatusAndDetail(HttpStatus.NOT_FOUND, e.getMessage());
+      problemDetail.setTitle("Resource not found");
+    } else if (e instanceof NullPointerException || e instanceof IllegalArgumentException) {
+      problemDetail = ProblemDetail.forStatusAndDetail(HttpStatus.BAD_REQUEST, e.getMessage());
+      problemDetail.setTitle("Bad request");
+    } else {
+      problemDetail = ProblemDetail.forStatusAndDetail(HttpStatus.INTERNAL_SERVER_ERROR,
+          "Something happened on the server: " + e.getLocalizedMessage());
+      problemDetail.setTitle("Internal server error");
+    }
+    return problemDetail;
+  }
+
   @ExceptionHandler(BinTableException.class)
   public ResponseEntity<ProblemDetail> handleBinTableException(BinTableException e,
       WebRequest request) {
-    ProblemDetail problemDetail = ProblemDetail.forStatusAndDetail(e.getCode(),
-        e.getMessage());
-
-    problemDetail.setTitle("An error occurred while calling the BINTable API");
+    ProblemDetail problemDetail = problemDetailFor(e);
     problemDetail.setInstance(URI.create(request.getContextPath()));
 
     return ResponseEntity.status(e.getCode().value())
@@ -42,10 +65,7 @@ public class ControllerExceptionHandler extends ResponseEntityExceptionHandler {
   @ExceptionHandler(EntityNotFoundException.class)
   public ResponseEntity<ProblemDetail> handleResourceNotFound(EntityNotFoundException e,
       WebRequest request) {
-    ProblemDetail problemDetail = ProblemDetail.forStatusAndDetail(HttpStatus.NOT_FOUND,
-        e.getMessage());
-
-    problemDetail.setTitle("Resource not found");
+    ProblemDetail problemDetail = problemDetailFor(e);
     problemDetail.setInstance(URI.create(request.getContextPath()));
 
     return ResponseEntity.status(HttpStatus.NOT_FOUND.value())
@@ -67,12 +87,52 @@ public class ControllerExceptionHandler extends ResponseEntityExceptionHandler {
         .body(problemDetail);
   }
 
-  @ExceptionHandler({NullPointerException.class, IllegalArgumentException.class})
-  public ResponseEntity<ProblemDetail> handleBadRequest(RuntimeException e, WebRequest request) {
+  // Two writers can both find a country missing before either inserts it, in which case the
+  // unique index rejects the second one
+  @ExceptionHandler(DataIntegrityViolationException.class)
+  public ResponseEntity<ProblemDetail> handleConcurrentConflict(DataIntegrityViolationException e,
+      WebRequest request) {
+    ProblemDetail problemDetail = ProblemDetail.forStatusAndDetail(HttpStatus.CONFLICT,
+        "The resource was created or changed concurrently. Please try again.");
+    problemDetail.setTitle("Conflicting write");
+    problemDetail.setInstance(URI.create(request.getContextPath()));
+
+    return ResponseEntity.status(HttpStatus.CONFLICT.value())
+        .contentType(MediaType.APPLICATION_PROBLEM_JSON)
+        .body(problemDetail);
+  }
+
+  @ExceptionHandler({OptimisticLockException.class, OptimisticLockingFailureException.class})
+  public ResponseEntity<ProblemDetail> handlePreconditionFailed(RuntimeException e,
+      WebRequest request) {
+    ProblemDetail problemDetail = ProblemDetail.forStatusAndDetail(HttpStatus.PRECONDITION_FAILED,
+        e instanceof OptimisticLockException
+            ? e.getMessage() : "The resource was changed concurrently. Please read it again.");
+    problemDetail.setTitle("Resource was modified");
+    problemDetail.setInstance(URI.create(request.getContextPath()));
+
+    return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED)
+        .contentType(MediaType.APPLICATION_PROBLEM_JSON)
+        .body(problemDetail);
+  }
+
+  @ExceptionHandler(ClearingCostsImportException.class)
+  public ResponseEntity<ProblemDetail> handleInvalidImport(ClearingCostsImportException e,
+      WebRequest request) {
     ProblemDetail problemDetail = ProblemDetail.forStatusAndDetail(HttpStatus.BAD_REQUEST,
-        e.getMessage());
+        e.getMessage() + " Please check the `errors` field.");
+    problemDetail.setTitle("Validation error");
+    problemDetail.setInstance(URI.create(request.getContextPath()));
+    problemDetail.setProperty("errors", e.getErrors());
 
-    problemDetail.setTitle("Bad request");
+    return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+        .contentType(MediaType.APPLICATION_PROBLEM_JSON)
+        .body(problemDetail);
+  }
+
+  @ExceptionHandler({NullPointerException.class, IllegalArgumentException.class})
+  public ResponseEntity<ProblemDetail> handleBadRequest(RuntimeException e, WebRequest request) {
+    ProblemDetail problemDetail = problemDetailFor(e);
     problemDetail.setInstance(URI.create(request.getContextPath()));
 
     return ResponseEntity.status(HttpStatus.BAD_REQUEST.value())
@@ -80,6 +140,18 @@ public class ControllerExceptionHandler extends ResponseEntityExceptionHandler {
         .body(problemDetail);
   }
 
+  @ExceptionHandler({TimeoutException.class, HttpTimeoutException.class})
+  public ResponseEntity<ProblemDetail> handleTimeout(Exception e, WebRequest request) {
+    ProblemDetail problemDetail = ProblemDetail.forStatusAndDetail(HttpStatus.GATEWAY_TIMEOUT,
+        e.getMessage());
+    problemDetail.setTitle("Request timed out");
+    problemDetail.setInstance(URI.create(request.getContextPath()));
+
+    return ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT.value())
+        .contentType(MediaType.APPLICATION_PROBLEM_JSON)
+        .body(problemDetail);
+  }
+
   @Override
   protected ResponseEntity<Object> handleMethodArgumentNotValid(MethodArgumentNotValidException ex,
       HttpHeaders headers, HttpStatusCode status, WebRequest request) {
@@ -1,13 +1,17 @@
 package com.lmoustak.cardcostapi.controllers;
 
-import com.google.common.util.concurrent.RateLimiter;
+import com.lmoustak.cardcostapi.ratelimiting.RateLimitDecision;
+import com.lmoustak.cardcostapi.ratelimiting.RateLimiter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
@@ -15,21 +19,45 @@ import org.springframework.web.filter.OncePerRequestFilter;
 @Component
 public class RateLimiterFilter extends OncePerRequestFilter {
 
-  private final Map<String, RateLimiter> rateLimiterByIp = new HashMap<>();
+  public static final String LIMIT_HEADER = "X-RateLimit-Limit";
+  public static final String REMAINING_HEADER = "X-RateLimit-Remaining";
+
+  private final RateLimiter rateLimiter;
+  private final String limit;
+  private final Counter grantedRequests;
+  private final Meter.MeterProvider<Counter> rejectedRequests;
+
+  public RateLimiterFilter(RateLimiter rateLimiter, MeterRegistry meterRegistry) {
+    this.rateLimiter = rateLimiter;
+    this.limit = String.valueOf(rateLimiter.limit());
+    this.grantedRequests = Counter.builder("ratelimit.requests")
+        .description("Requests checked by the rate limiter, by result and rejection reason")
+        .tags("result", "granted", "reason", "none")
+        .register(meterRegistry);
+    this.rejectedRequests = Counter.builder("ratelimit.requests")
+        .description("Requests checked by the rate limiter, by result and rejection reason")
+        .tag("result", "rejected")
+        .withRegistry(meterRegistry);
+  }
 
   @Override
   protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
       FilterChain filterChain) throws ServletException, IOException {
 
-    String ip = request.getRemoteAddr();
-
-    RateLimiter rateLimiter = rateLimiterByIp.computeIfAbsent(ip, k -> RateLimiter.create(20));
-    if (!rateLimiter.tryAcquire()) {
+    RateLimitDecision decision = rateLimiter.tryAcquire(request.getRemoteAddr());
+    response.setHeader(LIMIT_HEADER, limit);
+    response.setHeader(REMAINING_HEADER, String.valueOf(decision.remaining()));
+    if (!decision.granted()) {
+      rejectedRequests.withTag("reason", decision.rejectedBy()).increment();
+      long retryAfterSeconds = Math.max(
+          TimeUnit.NANOSECONDS.toSeconds(decision.nanosUntilAvailable() + 999_999_999L), 1);
+      response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
       response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
       response.getWriter().write("Too many requests. Please try again later");
       return;
     }
 
+    grantedRequests.increment();
     filterChain.doFilter(request, response);
   }
 }
@@ -3,7 +3,6 @@ package com.lmoustak.cardcostapi.controllers.requests;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Schema;
 import jakarta.validation.constraints.NotNull;
-import jakarta.validation.constraints.Pattern;
 import java.io.Serializable;
 import java.util.Objects;
 import java.util.StringJoiner;
@@ -19,7 +18,8 @@ public class CardCostRequest implements Serializable {
       required = true
   )
   @NotNull(message = "`card_number` should not be null")
-  @Pattern(regexp = "[0-9]{8,19}", message = "`card_number` should contain 8-19 numeric digits")
+  @CardNumber
+  @Schema(pattern = "[0-9]{8,19}")
   private String card_number;
 
   public String getCard_number() {
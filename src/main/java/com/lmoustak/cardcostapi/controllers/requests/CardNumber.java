@@ -0,0 +1,24 @@
+package com.lmoustak.cardcostapi.controllers.requests;
+
+import static java.lang.annotation.ElementType.FIELD;
+import static java.lang.annotation.ElementType.PARAMETER;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+import jakarta.validation.Constraint;
+import jakarta.validation.Payload;
+import java.lang.annotation.Documented;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+@Documented
+@Constraint(validatedBy = CardNumberValidator.class)
+@Target({FIELD, PARAMETER})
+@Retention(RUNTIME)
+public @interface CardNumber {
+
+  String message() default "`card_number` should contain 8-19 numeric digits";
+
+  Class<?>[] groups() default {};
+
+  Class<? extends Payload>[] payload() default {};
+}
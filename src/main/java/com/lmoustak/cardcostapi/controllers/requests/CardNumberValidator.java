@@ -0,0 +1,14 @@
+package com.lmoustak.cardcostapi.controllers.requests;
+
+import com.lmoustak.cardcostapi.utils.CardNumbers;
+import jakarta.validation.ConstraintValidator;
+import jakarta.validation.ConstraintValidatorContext;
+
+public class CardNumberValidator implements ConstraintValidator<CardNumber, CharSequence> {
+
+  @Override
+  public boolean isValid(CharSequence cardNumber, ConstraintValidatorContext context) {
+    // Null values are left to @NotNull, as with @Pattern
+    return cardNumber == null || CardNumbers.isValid(cardNumber);
+  }
+}
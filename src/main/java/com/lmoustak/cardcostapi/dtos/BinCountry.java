@@ -0,0 +1,13 @@
+package com.lmoustak.cardcostapi.dtos;
+
+public record BinCountry(String country, boolean stale) {
+
+  public static BinCountry fresh(String country) {
+    return new BinCountry(country, false);
+  }
+
+  public static BinCountry stale(String country) {
+    return new BinCountry(country, true);
+  }
+
+}
@@ -0,0 +1,20 @@
+package com.lmoustak.cardcostapi.dtos;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import java.math.BigDecimal;
+import org.springframework.http.ProblemDetail;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record CardCostBatchEntryDto(String country, BigDecimal cost, Boolean degraded,
+    ProblemDetail error) {
+
+  public static CardCostBatchEntryDto success(CardCostDto cardCost) {
+    return new CardCostBatchEntryDto(cardCost.country(), cardCost.cost(),
+        cardCost.degraded() ? Boolean.TRUE : null, null);
+  }
+
+  public static CardCostBatchEntryDto failure(ProblemDetail error) {
+    return new CardCostBatchEntryDto(null, null, null, error);
+  }
+
+}
@@ -1,6 +1,11 @@
 package com.lmoustak.cardcostapi.dtos;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import java.math.BigDecimal;
 
-public record CardCostDto(String country, BigDecimal cost) {
+public record CardCostDto(String country, BigDecimal cost, @JsonIgnore boolean degraded) {
+
+  public CardCostDto(String country, BigDecimal cost) {
+    this(country, cost, false);
+  }
 }
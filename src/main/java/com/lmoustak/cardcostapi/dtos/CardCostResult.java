@@ -0,0 +1,13 @@
+package com.lmoustak.cardcostapi.dtos;
+
+public record CardCostResult(CardCostDto cardCost, RuntimeException error) {
+
+  public static CardCostResult success(CardCostDto cardCost) {
+    return new CardCostResult(cardCost, null);
+  }
+
+  public static CardCostResult failure(RuntimeException error) {
+    return new CardCostResult(null, error);
+  }
+
+}
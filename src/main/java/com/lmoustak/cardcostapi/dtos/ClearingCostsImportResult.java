@@ -0,0 +1,5 @@
+package com.lmoustak.cardcostapi.dtos;
+
+public record ClearingCostsImportResult(int created, int updated, int deleted) {
+
+}
@@ -0,0 +1,8 @@
+package com.lmoustak.cardcostapi.dtos;
+
+import com.lmoustak.cardcostapi.entities.ClearingCosts;
+import java.util.List;
+
+public record ClearingCostsPage(List<ClearingCosts> items, String next) {
+
+}
@@ -0,0 +1,5 @@
+package com.lmoustak.cardcostapi.dtos;
+
+public record ClearingCostsVersion(Long id, Long version) {
+
+}
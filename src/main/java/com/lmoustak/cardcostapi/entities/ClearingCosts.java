@@ -7,11 +7,13 @@ import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.Index;
 import jakarta.persistence.Table;
+import jakarta.persistence.Version;
 import java.io.Serializable;
 import java.math.BigDecimal;
 import java.util.Objects;
 import java.util.StringJoiner;
 import org.hibernate.annotations.Check;
+import org.hibernate.annotations.ColumnDefault;
 
 @Entity
 @Table(
@@ -32,6 +34,11 @@ public class ClearingCosts implements Serializable {
   @Check(name = "price_should_be_non_negative", constraints = "price >= 0")
   private BigDecimal price;
 
+  @Version
+  @ColumnDefault("0")
+  @Column(name = "VERSION", nullable = false)
+  private Long version;
+
   public Long getId() {
     return id;
   }
@@ -56,6 +63,14 @@ public class ClearingCosts implements Serializable {
     this.price = price;
   }
 
+  public Long getVersion() {
+    return version;
+  }
+
+  public void setVersion(Long version) {
+    this.version = version;
+  }
+
   @Override
   public boolean equals(Object o) {
     if (o == null || getClass() != o.getClass()) {
@@ -63,12 +78,12 @@ public class ClearingCosts implements Serializable {
     }
     ClearingCosts that = (ClearingCosts) o;
     return Objects.equals(id, that.id) && Objects.equals(country, that.country)
-        && Objects.equals(price, that.price);
+        && Objects.equals(price, that.price) && Objects.equals(version, that.version);
   }
 
   @Override
   public int hashCode() {
-    return Objects.hash(id, country, price);
+    return Objects.hash(id, country, price, version);
   }
 
   @Override
@@ -77,6 +92,7 @@ public class ClearingCosts implements Serializable {
         .add("id=" + id)
         .add("country='" + country + "'")
         .add("price=" + price)
+        .add("version=" + version)
         .toString();
   }
 }
@@ -1,5 +1,6 @@
 package com.lmoustak.cardcostapi.exceptions;
 
+import org.springframework.http.HttpStatus;
 import org.springframework.http.HttpStatusCode;
 
 public class BinTableException extends RuntimeException {
@@ -14,4 +15,8 @@ public class BinTableException extends RuntimeException {
   public HttpStatusCode getCode() {
     return code;
   }
+
+  public boolean isTransient() {
+    return code.is5xxServerError() || code.value() == HttpStatus.TOO_MANY_REQUESTS.value();
+  }
 }
@@ -0,0 +1,10 @@
+package com.lmoustak.cardcostapi.exceptions;
+
+import org.springframework.http.HttpStatus;
+
+public class BinTableUnavailableException extends BinTableException {
+
+  public BinTableUnavailableException(HttpStatus code, String message) {
+    super(code, message);
+  }
+}
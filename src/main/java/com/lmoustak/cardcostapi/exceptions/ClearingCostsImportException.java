@@ -0,0 +1,19 @@
+package com.lmoustak.cardcostapi.exceptions;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class ClearingCostsImportException extends IllegalArgumentException {
+
+  private final Map<String, String> errors;
+
+  public ClearingCostsImportException(Map<String, String> errors) {
+    super("%d clearing costs rows were invalid. Nothing was imported.".formatted(errors.size()));
+    this.errors = Collections.unmodifiableMap(new LinkedHashMap<>(errors));
+  }
+
+  public Map<String, String> getErrors() {
+    return errors;
+  }
+}
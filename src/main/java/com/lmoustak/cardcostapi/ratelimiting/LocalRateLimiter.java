@@ -0,0 +1,54 @@
+package com.lmoustak.cardcostapi.ratelimiting;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.lmoustak.cardcostapi.utils.TokenBucket;
+import java.time.Duration;
+
+public class LocalRateLimiter implements RateLimiter {
+
+  private static final int CONCURRENCY_LEVEL = 64;
+
+  private final Cache<String, TokenBucket> bucketByClient;
+  private final double permitsPerSecond;
+  private final int burst;
+
+  public LocalRateLimiter(double permitsPerSecond, int burst, long maxClients,
+      Duration idleTimeout) {
+    this.permitsPerSecond = permitsPerSecond;
+    this.burst = burst;
+    this.bucketByClient = CacheBuilder.newBuilder()
+        .concurrencyLevel(CONCURRENCY_LEVEL)
+        .maximumSize(maxClients)
+        .expireAfterAccess(idleTimeout)
+        .build();
+  }
+
+  @Override
+  public RateLimitDecision tryAcquire(String client) {
+    long now = System.nanoTime();
+
+    TokenBucket bucket = bucketByClient.getIfPresent(client);
+    if (bucket == null) {
+      bucket = bucketByClient.asMap()
+          .computeIfAbsent(client, k -> new TokenBucket(permitsPerSecond, burst, now));
+    }
+
+    return bucket.tryAcquire(now)
+        ? RateLimitDecision.granted(bucket.remaining(now))
+        : RateLimitDecision.rejected(bucket.nanosUntilAvailable(now));
+  }
+
+  @Override
+  public long limit() {
+    return burst;
+  }
+
+  public double getPermitsPerSecond() {
+    return permitsPerSecond;
+  }
+
+  public long trackedClients() {
+    return bucketByClient.size();
+  }
+}
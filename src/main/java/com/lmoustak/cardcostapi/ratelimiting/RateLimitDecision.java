@@ -0,0 +1,21 @@
+package com.lmoustak.cardcostapi.ratelimiting;
+
+public record RateLimitDecision(boolean granted, long remaining, long nanosUntilAvailable,
+    String rejectedBy) {
+
+  public static final String LOCAL_LIMIT = "local";
+  public static final String GLOBAL_LIMIT = "global";
+
+  public static RateLimitDecision granted(long remaining) {
+    return new RateLimitDecision(true, remaining, 0, null);
+  }
+
+  public static RateLimitDecision rejected(long nanosUntilAvailable) {
+    return rejected(nanosUntilAvailable, LOCAL_LIMIT);
+  }
+
+  public static RateLimitDecision rejected(long nanosUntilAvailable, String rejectedBy) {
+    return new RateLimitDecision(false, 0, nanosUntilAvailable, rejectedBy);
+  }
+
+}
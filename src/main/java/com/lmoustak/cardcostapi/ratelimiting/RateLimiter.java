@@ -0,0 +1,9 @@
+package com.lmoustak.cardcostapi.ratelimiting;
+
+public interface RateLimiter {
+
+  RateLimitDecision tryAcquire(String client);
+
+  long limit();
+
+}
@@ -0,0 +1,146 @@
+package com.lmoustak.cardcostapi.ratelimiting;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+
+public class RedisRateLimiter implements RateLimiter {
+
+  private static final Logger logger = LoggerFactory.getLogger(RedisRateLimiter.class);
+
+  public static final String KEY_PREFIX = "card-cost-api:rate-limit:";
+
+  @SuppressWarnings("rawtypes")
+  private static final RedisScript<List> SCRIPT = RedisScript.of(
+      new ClassPathResource("scripts/rate-limit.lua"), List.class);
+
+  private final StringRedisTemplate redisTemplate;
+  private final LocalRateLimiter localRateLimiter;
+  private final Cache<String, Lease> leaseByClient;
+  private final String intervalMicros;
+  private final String burstMicros;
+  private final String leaseSize;
+  private final long leaseNanos;
+  private final long retryNanos;
+  private final AtomicLong scriptCalls = new AtomicLong();
+  private volatile long redisRetryAt = System.nanoTime();
+
+  public RedisRateLimiter(StringRedisTemplate redisTemplate, LocalRateLimiter localRateLimiter,
+      long maxClients, int leaseSize, Duration leaseTime, Duration retryInterval) {
+    this.redisTemplate = redisTemplate;
+    this.localRateLimiter = localRateLimiter;
+    this.leaseByClient = CacheBuilder.newBuilder()
+        .concurrencyLevel(64)
+        .maximumSize(maxClients)
+        .expireAfterAccess(leaseTime)
+        .build();
+
+    long interval = (long) (TimeUnit.SECONDS.toMicros(1) / localRateLimiter.getPermitsPerSecond());
+    this.intervalMicros = String.valueOf(interval);
+    this.burstMicros = String.valueOf(interval * localRateLimiter.limit());
+    this.leaseSize = String.valueOf(leaseSize);
+    this.leaseNanos = leaseTime.toNanos();
+    this.retryNanos = retryInterval.toNanos();
+  }
+
+  @Override
+  public RateLimitDecision tryAcquire(String client) {
+    // Every replica also enforces the limit locally, so a client over its limit is turned away
+    // before reaching Redis, and the local buckets keep working while Redis is unavailable
+    RateLimitDecision localDecision = localRateLimiter.tryAcquire(client);
+    if (!localDecision.granted()) {
+      return localDecision;
+    }
+
+    long now = System.nanoTime();
+    Lease lease = leaseByClient.getIfPresent(client);
+    if (lease == null) {
+      lease = leaseByClient.asMap().computeIfAbsent(client, k -> new Lease());
+    }
+    if (lease.tryTake(now)) {
+      return RateLimitDecision.granted(
+          Math.min(lease.remaining(), localDecision.remaining()));
+    }
+
+    if (now - redisRetryAt < 0) {
+      return localDecision;
+    }
+
+    List<?> reply;
+    try {
+      scriptCalls.incrementAndGet();
+      reply = redisTemplate.execute(SCRIPT, List.of(KEY_PREFIX + client), intervalMicros,
+          burstMicros, leaseSize);
+    } catch (DataAccessException e) {
+      redisRetryAt = now + retryNanos;
+      logger.warn("Redis is unavailable, rate limiting with local buckets for the next {}ms: {}",
+          TimeUnit.NANOSECONDS.toMillis(retryNanos), e.getMessage());
+      return localDecision;
+    }
+
+    long granted = ((Number) reply.get(0)).longValue();
+    long available = ((Number) reply.get(1)).longValue();
+    if (granted < 1) {
+      return RateLimitDecision.rejected(
+          TimeUnit.MICROSECONDS.toNanos(((Number) reply.get(2)).longValue()),
+          RateLimitDecision.GLOBAL_LIMIT);
+    }
+
+    lease.grant(granted - 1, available, now + leaseNanos);
+    return RateLimitDecision.granted(Math.min(granted - 1 + available, localDecision.remaining()));
+  }
+
+  @Override
+  public long limit() {
+    return localRateLimiter.limit();
+  }
+
+  public long scriptCalls() {
+    return scriptCalls.get();
+  }
+
+  private static final class Lease {
+
+    private final AtomicLong permits = new AtomicLong();
+    private volatile long expiresAt = System.nanoTime();
+    private volatile long available;
+
+    private boolean tryTake(long now) {
+      if (now - expiresAt >= 0) {
+        return false;
+      }
+      while (true) {
+        long current = permits.get();
+        if (current < 1) {
+          return false;
+        }
+        if (permits.compareAndSet(current, current - 1)) {
+          return true;
+        }
+      }
+    }
+
+    private long remaining() {
+      return permits.get() + available;
+    }
+
+    private void grant(long permits, long available, long expiresAt) {
+      if (System.nanoTime() - this.expiresAt >= 0) {
+        this.permits.set(permits);
+      } else {
+        this.permits.addAndGet(permits);
+      }
+      this.available = available;
+      this.expiresAt = expiresAt;
+    }
+  }
+}
@@ -0,0 +1,87 @@
+package com.lmoustak.cardcostapi.repositories;
+
+import com.lmoustak.cardcostapi.entities.ClearingCosts;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public class ClearingCostsBulkRepository {
+
+  private static final String SELECT_IDS_FOR_UPDATE =
+      "SELECT ID, COUNTRY FROM CLEARING_COSTS FOR UPDATE";
+  private static final String SELECT_ALL =
+      "SELECT ID, COUNTRY, PRICE, VERSION FROM CLEARING_COSTS ORDER BY ID";
+  private static final String INSERT =
+      "INSERT INTO CLEARING_COSTS (COUNTRY, PRICE, VERSION) VALUES (?, ?, 0)";
+  private static final String UPDATE =
+      "UPDATE CLEARING_COSTS SET PRICE = ?, VERSION = VERSION + 1 WHERE ID = ?";
+  private static final String DELETE = "DELETE FROM CLEARING_COSTS WHERE ID = ?";
+
+  // Hibernate cannot batch inserts of IDENTITY entities, so bulk writes use JDBC batches instead
+  private final JdbcTemplate jdbcTemplate;
+  private final int fetchSize;
+
+  public ClearingCostsBulkRepository(JdbcTemplate jdbcTemplate,
+      @Value("${clearing-costs.bulk.fetch-size:500}") int fetchSize) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.fetchSize = fetchSize;
+  }
+
+  // Locks the existing rows until the transaction ends, so that they are neither updated nor
+  // deleted behind an import. New rows can still be inserted and are caught by the unique index
+  public Map<String, Long> findIdsByCountryForUpdate() {
+    Map<String, Long> ids = new HashMap<>();
+    jdbcTemplate.query(SELECT_IDS_FOR_UPDATE, resultSet -> {
+      String country = resultSet.getString("COUNTRY");
+      ids.put(country == null ? null : country.toLowerCase(), resultSet.getLong("ID"));
+    });
+    return ids;
+  }
+
+  public void insertAll(Collection<ClearingCosts> clearingCosts) {
+    jdbcTemplate.batchUpdate(INSERT, clearingCosts, clearingCosts.size(),
+        (statement, entity) -> {
+          statement.setString(1, entity.getCountry());
+          statement.setBigDecimal(2, entity.getPrice());
+        });
+  }
+
+  public void updatePrices(Collection<ClearingCosts> clearingCosts) {
+    jdbcTemplate.batchUpdate(UPDATE, clearingCosts, clearingCosts.size(),
+        (statement, entity) -> {
+          statement.setBigDecimal(1, entity.getPrice());
+          statement.setLong(2, entity.getId());
+        });
+  }
+
+  public void deleteAllById(Collection<Long> ids) {
+    jdbcTemplate.batchUpdate(DELETE, ids, ids.size(),
+        (statement, id) -> statement.setLong(1, id));
+  }
+
+  public void forEach(Consumer<ClearingCosts> consumer) {
+    // PostgreSQL only honours the fetch size, and reads through a cursor, inside a transaction
+    jdbcTemplate.query(
+        connection -> {
+          PreparedStatement statement = connection.prepareStatement(SELECT_ALL,
+              ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+          statement.setFetchSize(fetchSize);
+          return statement;
+        },
+        resultSet -> {
+          var clearingCosts = new ClearingCosts();
+          clearingCosts.setId(resultSet.getLong("ID"));
+          clearingCosts.setCountry(resultSet.getString("COUNTRY"));
+          clearingCosts.setPrice(resultSet.getBigDecimal("PRICE"));
+          clearingCosts.setVersion(resultSet.getLong("VERSION"));
+          consumer.accept(clearingCosts);
+        });
+  }
+}
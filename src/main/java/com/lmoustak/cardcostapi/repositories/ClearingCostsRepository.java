@@ -1,16 +1,23 @@
 package com.lmoustak.cardcostapi.repositories;
 
 import com.lmoustak.cardcostapi.entities.ClearingCosts;
+import jakarta.persistence.QueryHint;
 import java.math.BigDecimal;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
 @Repository
 public interface ClearingCostsRepository extends JpaRepository<ClearingCosts, Long> {
 
+  String STREAM_FETCH_SIZE = "500";
+
   @Query("""
       FROM ClearingCosts
       WHERE LOWER(country) = LOWER(:country)
@@ -26,4 +33,56 @@ public interface ClearingCostsRepository extends JpaRepository<ClearingCosts, Lo
       """)
   List<ClearingCosts> findByPriceRange(BigDecimal minPrice, BigDecimal maxPrice);
 
+  @Query("""
+      FROM ClearingCosts
+      WHERE id > :afterId
+      ORDER BY id
+      """)
+  List<ClearingCosts> findPageAfterId(long afterId, Limit limit);
+
+  @Query("""
+      FROM ClearingCosts
+      ORDER BY country NULLS FIRST
+      """)
+  List<ClearingCosts> findFirstPageByCountry(Limit limit);
+
+  @Query("""
+      FROM ClearingCosts
+      WHERE country > :afterCountry
+      ORDER BY country
+      """)
+  List<ClearingCosts> findPageAfterCountry(String afterCountry, Limit limit);
+
+  @Query("""
+      FROM ClearingCosts
+      WHERE (:minPrice IS NULL OR :minPrice <= price)
+        AND (:maxPrice IS NULL OR :maxPrice >= price)
+        AND id > :afterId
+      ORDER BY id
+      """)
+  List<ClearingCosts> findByPriceRangeAfterId(BigDecimal minPrice, BigDecimal maxPrice,
+      long afterId, Limit limit);
+
+  @Query("""
+      FROM ClearingCosts
+      ORDER BY id
+      """)
+  @QueryHints({
+      @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE),
+      @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+  })
+  Stream<ClearingCosts> streamAll();
+
+  @Query("""
+      FROM ClearingCosts
+      WHERE (:minPrice IS NULL OR :minPrice <= price)
+        AND (:maxPrice IS NULL OR :maxPrice >= price)
+      ORDER BY id
+      """)
+  @QueryHints({
+      @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE),
+      @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+  })
+  Stream<ClearingCosts> streamByPriceRange(BigDecimal minPrice, BigDecimal maxPrice);
+
 }
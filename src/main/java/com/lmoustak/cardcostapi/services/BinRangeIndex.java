@@ -0,0 +1,118 @@
+package com.lmoustak.cardcostapi.services;
+
+import com.lmoustak.cardcostapi.utils.CountryCodes;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+public final class BinRangeIndex {
+
+  private static final BinRangeIndex EMPTY = new BinRangeIndex(new int[0], new int[0],
+      new short[0]);
+
+  private final int[] starts;
+  private final int[] ends;
+  private final short[] countries;
+
+  private BinRangeIndex(int[] starts, int[] ends, short[] countries) {
+    this.starts = starts;
+    this.ends = ends;
+    this.countries = countries;
+  }
+
+  public static BinRangeIndex empty() {
+    return EMPTY;
+  }
+
+  public static BinRangeIndex parse(Reader reader) throws IOException {
+    List<int[]> ranges = new ArrayList<>();
+    BufferedReader bufferedReader = new BufferedReader(reader);
+
+    String line;
+    int lineNumber = 0;
+    while ((line = bufferedReader.readLine()) != null) {
+      lineNumber++;
+      line = line.strip();
+      if (line.isEmpty() || line.startsWith("#")) {
+        continue;
+      }
+
+      String[] fields = line.split(",");
+      if (fields.length != 3) {
+        throw new IllegalArgumentException(
+            "Line %d should have exactly 3 fields (start,end,country)".formatted(lineNumber));
+      }
+
+      String start = fields[0].strip();
+      if (lineNumber == 1 && !start.isEmpty() && !Character.isDigit(start.charAt(0))) {
+        continue;
+      }
+
+      short country = CountryCodes.pack(fields[2].strip());
+      if (country == CountryCodes.UNKNOWN) {
+        throw new IllegalArgumentException(
+            "Line %d has an invalid country code '%s'".formatted(lineNumber, fields[2].strip()));
+      }
+
+      try {
+        ranges.add(new int[]{Integer.parseInt(start), Integer.parseInt(fields[1].strip()),
+            country});
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException(
+            "Line %d has a non-numeric BIN range".formatted(lineNumber), e);
+      }
+    }
+
+    return of(ranges);
+  }
+
+  static BinRangeIndex of(List<int[]> ranges) {
+    if (ranges.isEmpty()) {
+      return EMPTY;
+    }
+
+    ranges.sort(Comparator.comparingInt(range -> range[0]));
+
+    int size = ranges.size();
+    int[] starts = new int[size];
+    int[] ends = new int[size];
+    short[] countries = new short[size];
+    for (int i = 0; i < size; i++) {
+      int[] range = ranges.get(i);
+      if (range[0] < 0 || range[1] < range[0]) {
+        throw new IllegalArgumentException(
+            "Invalid BIN range %d-%d".formatted(range[0], range[1]));
+      }
+      if (i > 0 && range[0] <= ends[i - 1]) {
+        throw new IllegalArgumentException(
+            "BIN range %d-%d overlaps with %d-%d".formatted(range[0], range[1], starts[i - 1],
+                ends[i - 1]));
+      }
+
+      starts[i] = range[0];
+      ends[i] = range[1];
+      countries[i] = (short) range[2];
+    }
+
+    return new BinRangeIndex(starts, ends, countries);
+  }
+
+  public String findCountry(int bin) {
+    int i = Arrays.binarySearch(starts, bin);
+    if (i < 0) {
+      i = -i - 2;
+      if (i < 0 || bin > ends[i]) {
+        return null;
+      }
+    }
+    return CountryCodes.unpack(countries[i]);
+  }
+
+  public int size() {
+    return starts.length;
+  }
+}
@@ -0,0 +1,75 @@
+package com.lmoustak.cardcostapi.services;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+public class BinRangeIndexLoader {
+
+  private static final Logger logger = LoggerFactory.getLogger(BinRangeIndexLoader.class);
+
+  private final Path file;
+
+  private volatile BinRangeIndex index = BinRangeIndex.empty();
+  private volatile FileTime lastModified;
+
+  public BinRangeIndexLoader(@Value("${bintable.ranges.file:}") String file) {
+    this.file = file.isBlank() ? null : Path.of(file);
+  }
+
+  public BinRangeIndex getIndex() {
+    return index;
+  }
+
+  public void swap(BinRangeIndex newIndex) {
+    logger.info("Swapping BIN range index ({} ranges) with a new one ({} ranges)", index.size(),
+        newIndex.size());
+    index = newIndex;
+  }
+
+  public void load(Reader reader) throws IOException {
+    swap(BinRangeIndex.parse(reader));
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  @Scheduled(
+      initialDelayString = "${bintable.ranges.reload-interval:1m}",
+      fixedDelayString = "${bintable.ranges.reload-interval:1m}"
+  )
+  public void reloadIfModified() {
+    if (file == null) {
+      return;
+    }
+
+    try {
+      if (!Files.isReadable(file)) {
+        logger.warn("BIN range file '{}' is not readable. Keeping the current index", file);
+        return;
+      }
+
+      FileTime modified = Files.getLastModifiedTime(file);
+      if (modified.equals(lastModified)) {
+        return;
+      }
+
+      logger.debug("BIN range file '{}' was modified at {}. Reloading...", file, modified);
+      lastModified = modified;
+      try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+        load(reader);
+      }
+    } catch (IOException | IllegalArgumentException e) {
+      logger.error("Could not load BIN range file '{}'. Keeping the current index", file, e);
+    }
+  }
+}
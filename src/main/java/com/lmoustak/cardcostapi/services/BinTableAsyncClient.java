@@ -0,0 +1,86 @@
+package com.lmoustak.cardcostapi.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lmoustak.cardcostapi.BinTableConfiguration;
+import com.lmoustak.cardcostapi.dtos.BinTableResponse;
+import com.lmoustak.cardcostapi.exceptions.BinTableException;
+import com.lmoustak.cardcostapi.utils.CompletableFutures;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+@Component
+public class BinTableAsyncClient {
+
+  private static final Logger logger = LoggerFactory.getLogger(BinTableAsyncClient.class);
+
+  private final HttpClient httpClient;
+  private final ObjectMapper objectMapper;
+  private final String baseUrl;
+  private final String encodedApiKey;
+  private final Duration timeout;
+
+  public BinTableAsyncClient(
+      @Qualifier(BinTableConfiguration.BIN_TABLE_HTTP_CLIENT) HttpClient httpClient,
+      ObjectMapper objectMapper,
+      @Value("${bintable.base-url:https://api.bintable.com/v1}") String baseUrl,
+      @Value("${bintable.api-key}") String apiKey,
+      @Value("${bintable.timeout:5s}") Duration timeout) {
+    this.httpClient = httpClient;
+    this.objectMapper = objectMapper;
+    this.baseUrl = baseUrl;
+    this.encodedApiKey = URLEncoder.encode(apiKey, StandardCharsets.UTF_8);
+    this.timeout = timeout;
+  }
+
+  public CompletableFuture<BinTableResponse> fetch(String bin) {
+    logger.debug("Using bin='{}'", bin);
+
+    HttpRequest request = HttpRequest.newBuilder(
+            URI.create(baseUrl + "/" + bin + "?api_key=" + encodedApiKey))
+        .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+        .timeout(timeout)
+        .GET()
+        .build();
+
+    CompletableFuture<HttpResponse<byte[]>> exchange = httpClient.sendAsync(request,
+        HttpResponse.BodyHandlers.ofByteArray());
+    return CompletableFutures.propagateCancellation(exchange.thenApply(this::readResponse),
+        exchange);
+  }
+
+  private BinTableResponse readResponse(HttpResponse<byte[]> httpResponse) {
+    BinTableResponse response;
+    try {
+      response = objectMapper.readValue(httpResponse.body(), BinTableResponse.class);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+
+    HttpStatusCode statusCode = HttpStatusCode.valueOf(httpResponse.statusCode());
+    if (statusCode.isError()) {
+      String message = response.getMessage();
+      logger.error("BINTable API returned with error status code {} {} and message '{}'",
+          statusCode.value(), statusCode, message);
+      throw new BinTableException(statusCode, message);
+    }
+
+    logger.debug("BINTable API returned with success: {}", response);
+    return response;
+  }
+}
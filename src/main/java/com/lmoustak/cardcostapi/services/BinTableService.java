@@ -1,7 +1,39 @@
 package com.lmoustak.cardcostapi.services;
 
+import com.lmoustak.cardcostapi.dtos.BinCountry;
+import com.lmoustak.cardcostapi.utils.CompletableFutures;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
 public interface BinTableService {
 
   String getCountryFromIssuerIdentificationNumber(String issuerIdentificationNumber);
 
+  default BinCountry findCountry(String issuerIdentificationNumber) {
+    return BinCountry.fresh(getCountryFromIssuerIdentificationNumber(issuerIdentificationNumber));
+  }
+
+  default CompletableFuture<String> getCountryFromIssuerIdentificationNumberAsync(
+      String issuerIdentificationNumber) {
+    try {
+      return CompletableFuture.completedFuture(
+          getCountryFromIssuerIdentificationNumber(issuerIdentificationNumber));
+    } catch (RuntimeException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+  }
+
+  default CompletableFuture<BinCountry> findCountryAsync(String issuerIdentificationNumber) {
+    CompletableFuture<String> country = getCountryFromIssuerIdentificationNumberAsync(
+        issuerIdentificationNumber);
+    return CompletableFutures.propagateCancellation(country.thenApply(BinCountry::fresh),
+        country);
+  }
+
+  default Map<String, String> findKnownCountries(
+      Collection<String> issuerIdentificationNumbers) {
+    return Map.of();
+  }
+
 }
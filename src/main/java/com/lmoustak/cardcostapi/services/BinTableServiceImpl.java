@@ -1,21 +1,57 @@
 package com.lmoustak.cardcostapi.services;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.lmoustak.cardcostapi.BinTableConfiguration;
+import com.lmoustak.cardcostapi.caching.MultiGetCache;
 import com.lmoustak.cardcostapi.dtos.BinTableResponse;
+import com.lmoustak.cardcostapi.dtos.Country;
+import com.lmoustak.cardcostapi.dtos.Data;
 import com.lmoustak.cardcostapi.exceptions.BinTableException;
+import com.lmoustak.cardcostapi.exceptions.BinTableUnavailableException;
+import com.lmoustak.cardcostapi.utils.Bulkhead;
+import com.lmoustak.cardcostapi.utils.CircuitBreaker;
+import com.lmoustak.cardcostapi.utils.CompletableFutures;
+import com.lmoustak.cardcostapi.utils.SingleFlight;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.SocketTimeoutException;
+import java.net.http.HttpTimeoutException;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.cache.annotation.Cacheable;
-import org.springframework.http.HttpHeaders;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.HttpStatusCode;
-import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.ResourceAccessException;
 import org.springframework.web.client.RestClient;
 
 @Service
@@ -23,40 +59,489 @@ public class BinTableServiceImpl implements BinTableService {
 
   private static final Logger logger = LoggerFactory.getLogger(BinTableServiceImpl.class);
 
+  public static final String CACHE_NAME = "bins";
+  public static final int SHORT_BIN_LENGTH = 6;
+  public static final int LONG_BIN_LENGTH = 8;
+
+  private static final int WARM_UP_BATCH_SIZE = 1000;
+
   private static final ObjectMapper objectMapper = new ObjectMapper();
   private final RestClient restClient;
-  private final String apiKey;
-
-  @Autowired
-  public BinTableServiceImpl(@Value("${bintable.api-key}") String apiKey) {
-    this.apiKey = apiKey;
-    restClient = RestClient.builder()
-        .baseUrl("https://api.bintable.com/v1")
-        .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
-        .defaultUriVariables(Map.of("apiKey", this.apiKey))
+  private final BinTableAsyncClient asyncClient;
+  private final SingleFlight<String, String> singleFlight = new SingleFlight<>();
+  private final Cache<String, BinTableException> negativeCache;
+  private final CircuitBreaker circuitBreaker;
+  private final Bulkhead bulkhead;
+  private final int binLength;
+  private final CacheManager cacheManager;
+  private final CardPlausibilityRules plausibilityRules;
+  private final ResolvedBinStore resolvedBinStore;
+  private final Meter.MeterProvider<Timer> callTimer;
+
+  public BinTableServiceImpl(
+      @Qualifier(BinTableConfiguration.BIN_TABLE_REST_CLIENT) RestClient restClient,
+      BinTableAsyncClient asyncClient, MeterRegistry meterRegistry,
+      @Value("${bintable.negative-cache.time-to-live:1m}") Duration negativeTimeToLive,
+      @Value("${bintable.negative-cache.maximum-size:100000}") long negativeMaximumSize,
+      CircuitBreaker circuitBreaker, Bulkhead bulkhead,
+      @Value("${bintable.bin-length:6}") int binLength, CacheManager cacheManager,
+      CardPlausibilityRules plausibilityRules, ResolvedBinStore resolvedBinStore) {
+    if (binLength != SHORT_BIN_LENGTH && binLength != LONG_BIN_LENGTH) {
+      throw new IllegalArgumentException("bintable.bin-length should be either 6 or 8");
+    }
+    this.restClient = restClient;
+    this.asyncClient = Objects.requireNonNull(asyncClient, "BINTable async client is required");
+    this.circuitBreaker = circuitBreaker;
+    this.bulkhead = bulkhead;
+    this.binLength = binLength;
+    this.cacheManager = cacheManager;
+    this.plausibilityRules = plausibilityRules;
+    this.resolvedBinStore = resolvedBinStore;
+    this.negativeCache = CacheBuilder.newBuilder()
+        .expireAfterWrite(negativeTimeToLive)
+        .maximumSize(negativeMaximumSize)
+        .recordStats()
         .build();
+    this.callTimer = Timer.builder("bintable.calls")
+        .description("Latency of BINTable API calls, by response status")
+        .publishPercentileHistogram()
+        .withRegistry(meterRegistry);
+    registerMetrics(meterRegistry);
   }
 
-  public BinTableServiceImpl(RestClient restClient) {
-    this.apiKey = "";
-    this.restClient = restClient;
+  private void registerMetrics(MeterRegistry meterRegistry) {
+    FunctionCounter.builder("bintable.lookups.executed", singleFlight,
+            SingleFlight::executedCount)
+        .description("BINTable lookups that resulted in a call to the BINTable API")
+        .register(meterRegistry);
+    FunctionCounter.builder("bintable.lookups.coalesced", singleFlight,
+            SingleFlight::coalescedCount)
+        .description("BINTable lookups that joined an in-flight call for the same BIN")
+        .register(meterRegistry);
+    Gauge.builder("bintable.lookups.in-flight", singleFlight, SingleFlight::inFlightCount)
+        .description("BINs with a BINTable API call currently in flight")
+        .register(meterRegistry);
+    GuavaCacheMetrics.monitor(meterRegistry, negativeCache, "binsNegative");
+    Gauge.builder("bintable.circuit-breaker.state", circuitBreaker,
+            breaker -> breaker.getState().ordinal())
+        .description("State of the BINTable circuit breaker (0 closed, 1 open, 2 half-open)")
+        .register(meterRegistry);
+    Gauge.builder("bintable.bulkhead.active-calls", bulkhead, Bulkhead::activeCalls)
+        .description("BINTable API calls currently holding a bulkhead permit")
+        .register(meterRegistry);
+  }
+
+  // Runs after the resolved BINs were loaded from the snapshot, so that a restart or a flushed
+  // cache does not send every BIN seen within the snapshot's max age back to BINTable
+  @EventListener(ApplicationReadyEvent.class)
+  @Order(Ordered.HIGHEST_PRECEDENCE + 1)
+  public void warmUpCache() {
+    org.springframework.cache.Cache cache = cacheManager == null
+        ? null : cacheManager.getCache(CACHE_NAME);
+    if (cache == null || resolvedBinStore == null) {
+      return;
+    }
+
+    long start = System.nanoTime();
+    Map<String, String> batch = new LinkedHashMap<>();
+    int[] warmed = new int[1];
+    try {
+      resolvedBinStore.forEachFresh((bin, country) -> {
+        batch.put(bin, country);
+        if (batch.size() == WARM_UP_BATCH_SIZE) {
+          warmed[0] += putMissing(cache, batch);
+          batch.clear();
+        }
+      });
+      warmed[0] += putMissing(cache, batch);
+    } catch (RuntimeException e) {
+      logger.warn("Could not warm up cache '{}' from the resolved BINs", CACHE_NAME, e);
+      return;
+    }
+    logger.info("Warmed up cache '{}' with {} resolved BINs in {}ms", CACHE_NAME, warmed[0],
+        Duration.ofNanos(System.nanoTime() - start).toMillis());
+  }
+
+  private static int putMissing(org.springframework.cache.Cache cache,
+      Map<String, String> countries) {
+    if (countries.isEmpty()) {
+      return 0;
+    }
+
+    Map<String, String> missing = new LinkedHashMap<>(countries);
+    missing.keySet().removeAll(MultiGetCache.getAll(cache, countries.keySet()).keySet());
+    MultiGetCache.putAll(cache, missing);
+    return missing.size();
   }
 
   @Override
-  @Cacheable(cacheNames = "bins")
+  @Cacheable(cacheNames = CACHE_NAME, key = "#root.target.lookupKey(#issuerIdentificationNumber)",
+      sync = true)
   public String getCountryFromIssuerIdentificationNumber(String issuerIdentificationNumber) {
 
     logger.debug("START getCountryFromIssuerIdentificationNumber('{}')",
         issuerIdentificationNumber);
 
+    String bin = binOf(issuerIdentificationNumber);
+    BinTableException knownFailure = negativeCache.getIfPresent(bin);
+    if (knownFailure != null) {
+      throw knownFailure(bin, knownFailure);
+    }
+
+    String cachedCountry = findCachedPrefix(bin);
+    if (cachedCountry != null) {
+      return cachedCountry;
+    }
+
+    String code = singleFlight.execute(bin, () -> {
+      try {
+        return callBinTable(bin);
+      } catch (BinTableException e) {
+        rememberIfDeterministic(bin, e);
+        throw e;
+      }
+    });
+    logger.debug("END getCountryFromIssuerIdentificationNumber('{}') returns '{}'",
+        issuerIdentificationNumber, code);
+    return code;
+  }
+
+  @Override
+  @Cacheable(cacheNames = CACHE_NAME, key = "#root.target.lookupKey(#issuerIdentificationNumber)",
+      sync = true)
+  public CompletableFuture<String> getCountryFromIssuerIdentificationNumberAsync(
+      String issuerIdentificationNumber) {
+    logger.debug("START getCountryFromIssuerIdentificationNumberAsync('{}')",
+        issuerIdentificationNumber);
+
+    String bin;
+    try {
+      bin = binOf(issuerIdentificationNumber);
+    } catch (RuntimeException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+
+    BinTableException knownFailure = negativeCache.getIfPresent(bin);
+    if (knownFailure != null) {
+      return CompletableFuture.failedFuture(knownFailure(bin, knownFailure));
+    }
+
+    CompletableFuture<String> cachedCountry = retrieveCachedPrefix(bin);
+    if (cachedCountry == null) {
+      return fetchCountryAsync(bin);
+    }
+    return CompletableFutures.thenComposeCancellable(cachedCountry,
+        country -> country != null
+            ? CompletableFuture.completedFuture(country) : fetchCountryAsync(bin));
+  }
+
+  // Refreshes a cached BIN ahead of its expiry, joining any lookup of the same BIN in flight
+  public CompletableFuture<String> refreshCountry(String bin) {
+    BinTableException knownFailure = negativeCache.getIfPresent(bin);
+    if (knownFailure != null) {
+      return CompletableFuture.failedFuture(knownFailure(bin, knownFailure));
+    }
+    return fetchCountryAsync(bin);
+  }
+
+  @Override
+  public Map<String, String> findKnownCountries(
+      Collection<String> issuerIdentificationNumbers) {
+    org.springframework.cache.Cache cache = cacheManager == null
+        ? null : cacheManager.getCache(CACHE_NAME);
+    if (cache == null) {
+      return Map.of();
+    }
+
+    Set<String> keys = new LinkedHashSet<>();
+    for (String issuerIdentificationNumber : issuerIdentificationNumbers) {
+      if (issuerIdentificationNumber != null
+          && issuerIdentificationNumber.length() >= SHORT_BIN_LENGTH) {
+        String longPrefix = longPrefix(issuerIdentificationNumber);
+        if (longPrefix != null) {
+          keys.add(longPrefix);
+        }
+        keys.add(issuerIdentificationNumber.substring(0, SHORT_BIN_LENGTH));
+      }
+    }
+    if (keys.isEmpty()) {
+      return Map.of();
+    }
+
+    Map<Object, org.springframework.cache.Cache.ValueWrapper> cached;
+    try {
+      cached = MultiGetCache.getAll(cache, keys);
+    } catch (RuntimeException e) {
+      logger.warn("Could not look up {} BINs in cache '{}'", keys.size(), CACHE_NAME, e);
+      return Map.of();
+    }
+
+    Map<String, String> countries = new HashMap<>();
+    for (String issuerIdentificationNumber : issuerIdentificationNumbers) {
+      if (issuerIdentificationNumber == null
+          || issuerIdentificationNumber.length() < SHORT_BIN_LENGTH) {
+        continue;
+      }
+      String country = cachedCountry(cached, longPrefix(issuerIdentificationNumber));
+      if (country == null) {
+        country = cachedCountry(cached,
+            issuerIdentificationNumber.substring(0, SHORT_BIN_LENGTH));
+      }
+      if (country != null) {
+        countries.put(issuerIdentificationNumber, country);
+      }
+    }
+    logger.debug("Found {} of {} BINs in cache '{}'", cached.size(), keys.size(), CACHE_NAME);
+    return countries;
+  }
+
+  private static String cachedCountry(
+      Map<Object, org.springframework.cache.Cache.ValueWrapper> cached, String key) {
+    org.springframework.cache.Cache.ValueWrapper valueWrapper = key == null
+        ? null : cached.get(key);
+    return valueWrapper == null ? null : (String) valueWrapper.get();
+  }
+
+  public String cacheKey(String issuerIdentificationNumber) {
+    if (issuerIdentificationNumber == null
+        || issuerIdentificationNumber.length() < SHORT_BIN_LENGTH) {
+      return issuerIdentificationNumber;
+    }
+    return binOf(issuerIdentificationNumber);
+  }
+
+  // A country cached under 8 digits is more specific than one cached under their first 6, so it
+  // is read first even when bintable.bin-length is 6 and lookups are cached under 6 digits
+  public String lookupKey(String issuerIdentificationNumber) {
+    String key = cacheKey(issuerIdentificationNumber);
+    String longPrefix = key == null ? null : longPrefix(issuerIdentificationNumber);
+    if (longPrefix == null || longPrefix.equals(key)) {
+      return key;
+    }
+
+    org.springframework.cache.Cache cache = cacheManager == null
+        ? null : cacheManager.getCache(CACHE_NAME);
+    try {
+      return cache != null && cache.get(longPrefix) != null ? longPrefix : key;
+    } catch (RuntimeException e) {
+      logger.warn("Could not look up prefix '{}' in cache '{}'", longPrefix, CACHE_NAME, e);
+      return key;
+    }
+  }
+
+  private static String longPrefix(String issuerIdentificationNumber) {
+    return issuerIdentificationNumber.length() >= LONG_BIN_LENGTH
+        ? issuerIdentificationNumber.substring(0, LONG_BIN_LENGTH) : null;
+  }
+
+  // The lookup key of an 8-digit BIN missed, so its first 6 digits are the only prefix left
+  private static String shortPrefix(String bin) {
+    return bin.length() == LONG_BIN_LENGTH ? bin.substring(0, SHORT_BIN_LENGTH) : null;
+  }
+
+  private String findCachedPrefix(String bin) {
+    org.springframework.cache.Cache cache = cacheManager == null
+        ? null : cacheManager.getCache(CACHE_NAME);
+    String prefix = shortPrefix(bin);
+    if (cache == null || prefix == null) {
+      return null;
+    }
+
+    String country = cache.get(prefix, String.class);
+    if (country != null) {
+      logger.debug("Found country '{}' for bin='{}' under prefix '{}'", country, bin, prefix);
+    }
+    return country;
+  }
+
+  private CompletableFuture<String> retrieveCachedPrefix(String bin) {
+    org.springframework.cache.Cache cache = cacheManager == null
+        ? null : cacheManager.getCache(CACHE_NAME);
+    String prefix = shortPrefix(bin);
+    if (cache == null || prefix == null) {
+      return null;
+    }
+
+    CompletableFuture<?> cached = cache.retrieve(prefix);
+    if (cached == null) {
+      return CompletableFuture.completedFuture(null);
+    }
+    return cached.handle((value, error) -> {
+      if (error != null) {
+        logger.warn("Could not look up prefix '{}' in cache '{}'", prefix, CACHE_NAME, error);
+        return null;
+      }
+      Object country = value instanceof org.springframework.cache.Cache.ValueWrapper wrapper
+          ? wrapper.get() : value;
+      if (country != null) {
+        logger.debug("Found country '{}' for bin='{}' under prefix '{}'", country, bin, prefix);
+      }
+      return (String) country;
+    });
+  }
+
+  private CompletableFuture<String> fetchCountryAsync(String bin) {
+    return singleFlight.executeAsync(bin, () -> {
+      CompletableFuture<String> country = callBinTableAsync(bin);
+      country.whenComplete((code, error) -> {
+        if (CompletableFutures.unwrap(error) instanceof BinTableException e) {
+          rememberIfDeterministic(bin, e);
+        }
+      });
+      return country;
+    });
+  }
+
+  private String binOf(String issuerIdentificationNumber) {
     Objects.requireNonNull(issuerIdentificationNumber, "IIN should not be null");
 
-    if (issuerIdentificationNumber.length() < 6) {
+    if (issuerIdentificationNumber.length() < SHORT_BIN_LENGTH) {
       throw new IllegalArgumentException("The IIN should be at least 6 digits long");
     }
 
-    String bin = issuerIdentificationNumber.substring(0, 6);
-    logger.debug("Using bin='{}', apiKey='{}'", bin, apiKey);
+    return issuerIdentificationNumber.substring(0,
+        issuerIdentificationNumber.length() >= binLength ? binLength : SHORT_BIN_LENGTH);
+  }
+
+  private String countryOf(String bin, BinTableResponse response) {
+    Data data = response == null ? null : response.getData();
+    if (data != null) {
+      plausibilityRules.learn(bin, data.getCard());
+    }
+    Country country = data == null ? null : data.getCountry();
+    if (country == null || country.getCode() == null || country.getCode().isBlank()) {
+      logger.warn("BINTable API returned no country for bin='{}'", bin);
+      throw new BinTableException(HttpStatus.NOT_FOUND, "No country found for BIN " + bin);
+    }
+    if (resolvedBinStore != null) {
+      resolvedBinStore.record(bin, country.getCode());
+    }
+    return country.getCode();
+  }
+
+  private void rememberIfDeterministic(String bin, BinTableException e) {
+    int status = e.getCode().value();
+    if (status == HttpStatus.NOT_FOUND.value() || status == HttpStatus.BAD_REQUEST.value()) {
+      logger.debug("Remembering that bin='{}' fails with {}", bin, status);
+      negativeCache.put(bin, e);
+    }
+  }
+
+  private static BinTableException knownFailure(String bin, BinTableException failure) {
+    logger.debug("bin='{}' is known to fail with {}", bin, failure.getCode().value());
+    return new BinTableException(failure.getCode(), failure.getMessage());
+  }
+
+  private String callBinTable(String bin) {
+    if (!bulkhead.tryAcquireWaiting()) {
+      throw bulkheadFull(bin);
+    }
+    if (!circuitBreaker.tryAcquirePermission()) {
+      bulkhead.release();
+      throw circuitOpen(bin);
+    }
+
+    long start = System.nanoTime();
+    try {
+      String country = fetchCountry(bin);
+      record(null, System.nanoTime() - start);
+      return country;
+    } catch (RuntimeException e) {
+      record(e, System.nanoTime() - start);
+      throw translate(e);
+    } finally {
+      bulkhead.release();
+    }
+  }
+
+  private CompletableFuture<String> callBinTableAsync(String bin) {
+    if (!bulkhead.tryAcquire()) {
+      return CompletableFuture.failedFuture(bulkheadFull(bin));
+    }
+    if (!circuitBreaker.tryAcquirePermission()) {
+      bulkhead.release();
+      return CompletableFuture.failedFuture(circuitOpen(bin));
+    }
+
+    long start = System.nanoTime();
+    CompletableFuture<String> country;
+    try {
+      CompletableFuture<BinTableResponse> response = asyncClient.fetch(bin);
+      country = CompletableFutures.propagateCancellation(
+          response.thenApply(binTableResponse -> countryOf(bin, binTableResponse)), response);
+    } catch (RuntimeException e) {
+      country = CompletableFuture.failedFuture(e);
+    }
+
+    CompletableFuture<String> translated = country.whenComplete((code, error) -> {
+      bulkhead.release();
+      record(CompletableFutures.unwrap(error), System.nanoTime() - start);
+    }).handle((code, error) -> {
+      Throwable cause = CompletableFutures.unwrap(error);
+      if (cause == null) {
+        return code;
+      }
+      throw cause instanceof CancellationException cancellation ? cancellation : translate(cause);
+    });
+    return CompletableFutures.propagateCancellation(translated, country);
+  }
+
+  private void record(Throwable error, long durationNanos) {
+    callTimer.withTag("status", statusOf(error)).record(durationNanos, TimeUnit.NANOSECONDS);
+    if (error == null) {
+      circuitBreaker.onSuccess(durationNanos);
+    } else if (error instanceof CancellationException) {
+      circuitBreaker.releasePermission();
+    } else if (!(translate(error) instanceof BinTableException e) || e.isTransient()) {
+      logger.warn("BINTable call failed after {}ms: {}", durationNanos / 1_000_000,
+          error.toString());
+      circuitBreaker.onFailure(durationNanos);
+    } else {
+      circuitBreaker.onSuccess(durationNanos);
+    }
+  }
+
+  private static String statusOf(Throwable error) {
+    if (error == null) {
+      return "200";
+    }
+    if (error instanceof CancellationException) {
+      return "CANCELLED";
+    }
+    return translate(error) instanceof BinTableException e
+        ? String.valueOf(e.getCode().value()) : "UNKNOWN";
+  }
+
+  private static RuntimeException translate(Throwable error) {
+    Throwable cause = error instanceof ResourceAccessException
+        || error instanceof UncheckedIOException ? error.getCause() : error;
+    if (cause instanceof HttpTimeoutException || cause instanceof SocketTimeoutException) {
+      return new BinTableUnavailableException(HttpStatus.GATEWAY_TIMEOUT,
+          "BINTable API timed out");
+    }
+    if (cause instanceof IOException) {
+      return new BinTableUnavailableException(HttpStatus.BAD_GATEWAY,
+          "BINTable API call failed: " + cause.getMessage());
+    }
+    return error instanceof RuntimeException runtimeException
+        ? runtimeException : new CompletionException(error);
+  }
+
+  private BinTableUnavailableException bulkheadFull(String bin) {
+    logger.warn("Rejecting BINTable call for bin='{}': {} calls already in flight", bin,
+        bulkhead.activeCalls());
+    return new BinTableUnavailableException(HttpStatus.SERVICE_UNAVAILABLE,
+        "Too many concurrent BINTable calls");
+  }
+
+  private static BinTableUnavailableException circuitOpen(String bin) {
+    logger.warn("Rejecting BINTable call for bin='{}': circuit breaker is open", bin);
+    return new BinTableUnavailableException(HttpStatus.SERVICE_UNAVAILABLE,
+        "BINTable circuit breaker is open");
+  }
+
+  private String fetchCountry(String bin) {
+    logger.debug("Using bin='{}'", bin);
 
     BinTableResponse response = restClient.get()
         .uri("/{bin}?api_key={apiKey}", Map.of("bin", bin))
@@ -76,9 +561,6 @@ public class BinTableServiceImpl implements BinTableService {
         .body(BinTableResponse.class);
 
     logger.debug("BINTable API returned with success: {}", response);
-    String code = response.getData().getCountry().getCode();
-    logger.debug("END getCountryFromIssuerIdentificationNumber('{}') returns '{}'",
-        issuerIdentificationNumber, code);
-    return code;
+    return countryOf(bin, response);
   }
 }
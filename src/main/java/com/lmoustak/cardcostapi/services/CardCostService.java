@@ -1,9 +1,24 @@
 package com.lmoustak.cardcostapi.services;
 
 import com.lmoustak.cardcostapi.dtos.CardCostDto;
+import com.lmoustak.cardcostapi.dtos.CardCostResult;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 public interface CardCostService {
 
   CardCostDto findCardCostFromIssuerIdentificationNumber(String issuerIdentificationNumber);
 
+  CompletableFuture<CardCostDto> findCardCostFromIssuerIdentificationNumberAsync(
+      String issuerIdentificationNumber);
+
+  List<CardCostResult> findCardCostsFromIssuerIdentificationNumbers(
+      List<String> issuerIdentificationNumbers);
+
+  void streamCardCostsFromIssuerIdentificationNumbers(
+      Iterator<String> issuerIdentificationNumbers, Consumer<CardCostResult> consumer,
+      Runnable flush);
+
 }
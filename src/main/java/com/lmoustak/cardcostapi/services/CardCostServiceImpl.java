@@ -1,12 +1,32 @@
 package com.lmoustak.cardcostapi.services;
 
+import com.lmoustak.cardcostapi.ExecutorConfiguration;
 import com.lmoustak.cardcostapi.controllers.CardCostController;
+import com.lmoustak.cardcostapi.dtos.BinCountry;
 import com.lmoustak.cardcostapi.dtos.CardCostDto;
+import com.lmoustak.cardcostapi.dtos.CardCostResult;
 import com.lmoustak.cardcostapi.entities.ClearingCosts;
+import com.lmoustak.cardcostapi.utils.CardNumbers;
+import com.lmoustak.cardcostapi.utils.CompletableFutures;
 import jakarta.persistence.EntityNotFoundException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 
@@ -15,13 +35,44 @@ public class CardCostServiceImpl implements CardCostService {
 
   private static final Logger logger = LoggerFactory.getLogger(CardCostServiceImpl.class);
 
+  private static final int DEFAULT_MAX_BATCH_SIZE = 50_000;
+  private static final int DEFAULT_MAX_IN_FLIGHT = 64;
+
   private final ClearingCostsService clearingCostsService;
   private final BinTableService binTableService;
+  private final Executor binLookupExecutor;
+  private final int maxBatchSize;
+  private final int maxInFlight;
+  private final CardPlausibilityRules plausibilityRules;
+  private final int binLength;
 
   public CardCostServiceImpl(ClearingCostsService clearingCostsService,
       BinTableService binTableService) {
+    this(clearingCostsService, binTableService, Runnable::run, DEFAULT_MAX_BATCH_SIZE,
+        DEFAULT_MAX_IN_FLIGHT);
+  }
+
+  public CardCostServiceImpl(ClearingCostsService clearingCostsService,
+      BinTableService binTableService, Executor binLookupExecutor, int maxBatchSize,
+      int maxInFlight) {
+    this(clearingCostsService, binTableService, binLookupExecutor, maxBatchSize, maxInFlight,
+        new CardPlausibilityRules(), BinTableServiceImpl.SHORT_BIN_LENGTH);
+  }
+
+  @Autowired
+  public CardCostServiceImpl(ClearingCostsService clearingCostsService,
+      BinTableService binTableService,
+      @Qualifier(ExecutorConfiguration.BIN_LOOKUP_EXECUTOR) Executor binLookupExecutor,
+      @Value("${card-cost.batch.max-size:50000}") int maxBatchSize,
+      @Value("${card-cost.stream.max-in-flight:64}") int maxInFlight,
+      CardPlausibilityRules plausibilityRules, @Value("${bintable.bin-length:6}") int binLength) {
     this.clearingCostsService = clearingCostsService;
     this.binTableService = binTableService;
+    this.binLookupExecutor = binLookupExecutor;
+    this.maxBatchSize = maxBatchSize;
+    this.maxInFlight = maxInFlight;
+    this.plausibilityRules = plausibilityRules;
+    this.binLength = binLength;
   }
 
   @Override
@@ -29,10 +80,172 @@ public class CardCostServiceImpl implements CardCostService {
     logger.debug("START findCardCostFromIssuerIdentificationNumber('{}')",
         issuerIdentificationNumber);
 
-    String country = binTableService.getCountryFromIssuerIdentificationNumber(
+    String violation = plausibilityRules.findViolation(issuerIdentificationNumber);
+    if (violation != null) {
+      throw new IllegalArgumentException(violation);
+    }
+
+    CardCostDto cardCostDto = findCardCostForValidNumber(issuerIdentificationNumber);
+    logger.debug("END findCardCostFromIssuerIdentificationNumber('{}') returns {}",
+        issuerIdentificationNumber, cardCostDto);
+    return cardCostDto;
+  }
+
+  private CardCostDto findCardCostForValidNumber(String issuerIdentificationNumber) {
+    BinCountry country = binTableService.findCountry(issuerIdentificationNumber);
+    logger.debug("BINTable found country: {}", country);
+    return findCardCostForCountry(country);
+  }
+
+  @Override
+  public CompletableFuture<CardCostDto> findCardCostFromIssuerIdentificationNumberAsync(
+      String issuerIdentificationNumber) {
+    logger.debug("START findCardCostFromIssuerIdentificationNumberAsync('{}')",
         issuerIdentificationNumber);
-    logger.debug("BINTable found country: '{}'", country);
 
+    String violation = plausibilityRules.findViolation(issuerIdentificationNumber);
+    if (violation != null) {
+      return CompletableFuture.failedFuture(new IllegalArgumentException(violation));
+    }
+
+    CompletableFuture<BinCountry> country =
+        binTableService.findCountryAsync(issuerIdentificationNumber);
+    return CompletableFutures.propagateCancellation(
+        country.thenApply(this::findCardCostForCountry), country);
+  }
+
+  @Override
+  public List<CardCostResult> findCardCostsFromIssuerIdentificationNumbers(
+      List<String> issuerIdentificationNumbers) {
+    Objects.requireNonNull(issuerIdentificationNumbers, "IINs should not be null");
+    logger.debug("START findCardCostsFromIssuerIdentificationNumbers({} IINs)",
+        issuerIdentificationNumbers.size());
+
+    if (issuerIdentificationNumbers.size() > maxBatchSize) {
+      throw new IllegalArgumentException(
+          "At most %d card numbers can be priced in a single batch".formatted(maxBatchSize));
+    }
+
+    List<String> validationErrors = issuerIdentificationNumbers.stream()
+        .map(this::validationError)
+        .toList();
+    List<String> validIssuerIdentificationNumbers = new ArrayList<>();
+    for (int i = 0; i < issuerIdentificationNumbers.size(); i++) {
+      if (validationErrors.get(i) == null) {
+        validIssuerIdentificationNumbers.add(issuerIdentificationNumbers.get(i));
+      }
+    }
+    Map<String, String> knownCountries = binTableService.findKnownCountries(
+        validIssuerIdentificationNumbers);
+
+    Map<Integer, CompletableFuture<BinCountry>> countryByBin = new HashMap<>();
+    for (String issuerIdentificationNumber : validIssuerIdentificationNumbers) {
+      int bin = CardNumbers.packBin(issuerIdentificationNumber, binLength);
+      countryByBin.computeIfAbsent(bin, key -> {
+        String knownCountry = knownCountries.get(issuerIdentificationNumber);
+        return knownCountry != null
+            ? CompletableFuture.completedFuture(BinCountry.fresh(knownCountry))
+            : CompletableFuture.supplyAsync(
+                () -> binTableService.findCountry(issuerIdentificationNumber),
+                binLookupExecutor);
+      });
+    }
+    logger.debug("Resolving {} unique BINs, {} card numbers already have a known country",
+        countryByBin.size(), knownCountries.size());
+
+    Map<BinCountry, CardCostResult> resultByCountry = new HashMap<>();
+    List<CardCostResult> results = new ArrayList<>(issuerIdentificationNumbers.size());
+    for (int i = 0; i < issuerIdentificationNumbers.size(); i++) {
+      String issuerIdentificationNumber = issuerIdentificationNumbers.get(i);
+      String validationError = validationErrors.get(i);
+      if (validationError != null) {
+        results.add(CardCostResult.failure(new IllegalArgumentException(validationError)));
+        continue;
+      }
+
+      BinCountry country;
+      try {
+        country = countryByBin.get(CardNumbers.packBin(issuerIdentificationNumber, binLength))
+            .join();
+      } catch (CompletionException e) {
+        results.add(CardCostResult.failure(unwrap(e)));
+        continue;
+      }
+
+      results.add(resultByCountry.computeIfAbsent(country, key -> {
+        try {
+          return CardCostResult.success(findCardCostForCountry(key));
+        } catch (RuntimeException e) {
+          return CardCostResult.failure(e);
+        }
+      }));
+    }
+
+    logger.debug("END findCardCostsFromIssuerIdentificationNumbers({} IINs) resolved {} BINs",
+        issuerIdentificationNumbers.size(), countryByBin.size());
+    return results;
+  }
+
+  @Override
+  public void streamCardCostsFromIssuerIdentificationNumbers(
+      Iterator<String> issuerIdentificationNumbers, Consumer<CardCostResult> consumer,
+      Runnable flush) {
+    logger.debug("START streamCardCostsFromIssuerIdentificationNumbers()");
+    Deque<CompletableFuture<CardCostResult>> inFlight = new ArrayDeque<>(maxInFlight);
+    long count = 0;
+
+    while (issuerIdentificationNumbers.hasNext()) {
+      if (inFlight.size() >= maxInFlight) {
+        awaitFirst(inFlight, consumer, flush);
+      }
+
+      inFlight.addLast(findCardCostAsync(issuerIdentificationNumbers.next()));
+      count++;
+
+      while (!inFlight.isEmpty() && inFlight.peekFirst().isDone()) {
+        consumer.accept(inFlight.pollFirst().join());
+      }
+    }
+
+    while (!inFlight.isEmpty()) {
+      awaitFirst(inFlight, consumer, flush);
+    }
+    flush.run();
+    logger.debug("END streamCardCostsFromIssuerIdentificationNumbers() priced {} cards", count);
+  }
+
+  private static void awaitFirst(Deque<CompletableFuture<CardCostResult>> inFlight,
+      Consumer<CardCostResult> consumer, Runnable flush) {
+    if (!inFlight.peekFirst().isDone()) {
+      flush.run();
+    }
+    consumer.accept(inFlight.pollFirst().join());
+  }
+
+  // Validated once here, so that the lookup itself does not check the plausibility rules again
+  private CompletableFuture<CardCostResult> findCardCostAsync(String issuerIdentificationNumber) {
+    String validationError = validationError(issuerIdentificationNumber);
+    if (validationError != null) {
+      return CompletableFuture.completedFuture(
+          CardCostResult.failure(new IllegalArgumentException(validationError)));
+    }
+
+    return CompletableFuture.supplyAsync(() -> {
+      try {
+        return CardCostResult.success(findCardCostForValidNumber(issuerIdentificationNumber));
+      } catch (RuntimeException e) {
+        return CardCostResult.failure(e);
+      }
+    }, binLookupExecutor);
+  }
+
+  private CardCostDto findCardCostForCountry(BinCountry binCountry) {
+    CardCostDto cardCost = findCardCostForCountry(binCountry.country());
+    return binCountry.stale()
+        ? new CardCostDto(cardCost.country(), cardCost.cost(), true) : cardCost;
+  }
+
+  private CardCostDto findCardCostForCountry(String country) {
     Optional<ClearingCosts> optionalClearingCosts = clearingCostsService.readClearingCostsByCountry(
         country);
 
@@ -41,9 +254,23 @@ public class CardCostServiceImpl implements CardCostService {
       throw new EntityNotFoundException("No clearing costs found for country=" + country);
     }
 
-    CardCostDto cardCostDto = new CardCostDto(country, optionalClearingCosts.get().getPrice());
-    logger.debug("END findCardCostFromIssuerIdentificationNumber('{}') returns {}",
-        issuerIdentificationNumber, cardCostDto);
-    return cardCostDto;
+    return new CardCostDto(country, optionalClearingCosts.get().getPrice());
+  }
+
+  private String validationError(String issuerIdentificationNumber) {
+    if (issuerIdentificationNumber == null) {
+      return "`card_number` should not be null";
+    }
+    if (!CardNumbers.isValid(issuerIdentificationNumber)) {
+      return "`card_number` should contain 8-19 numeric digits";
+    }
+    return plausibilityRules.findViolation(issuerIdentificationNumber);
+  }
+
+  private static RuntimeException unwrap(CompletionException e) {
+    if (e.getCause() instanceof RuntimeException cause) {
+      return cause;
+    }
+    return e;
   }
 }
@@ -0,0 +1,93 @@
+package com.lmoustak.cardcostapi.services;
+
+import com.lmoustak.cardcostapi.dtos.Card;
+import com.lmoustak.cardcostapi.utils.CardNumbers;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+@Component
+public class CardPlausibilityRules {
+
+  private static final Logger logger = LoggerFactory.getLogger(CardPlausibilityRules.class);
+
+  private static final int BIN_LENGTH = 6;
+  private static final int BINS = 1_000_000;
+
+  private static final byte LENGTH_MASK = 0x1F;
+  private static final byte CHECK_LUHN = 0x20;
+  private static final byte CONFLICTING = 0x40;
+
+  private final boolean enabled;
+  private final Meter.MeterProvider<Counter> rejections;
+
+  // One byte per 6-digit BIN, with the card length BINTable reported in the lower bits and
+  // whether it checks Luhn. A rule that is not yet visible to a reader only costs a lookup
+  private final byte[] rules = new byte[BINS];
+
+  public CardPlausibilityRules() {
+    this(new SimpleMeterRegistry(), true);
+  }
+
+  @Autowired
+  public CardPlausibilityRules(MeterRegistry meterRegistry,
+      @Value("${card-cost.plausibility-check.enabled:true}") boolean enabled) {
+    this.enabled = enabled;
+    this.rejections = Counter.builder("card-cost.implausible")
+        .description("Card numbers rejected by the rules learned from BINTable, by reason")
+        .withRegistry(meterRegistry);
+  }
+
+  public void learn(CharSequence bin, Card card) {
+    int packed = CardNumbers.packBin(bin, BIN_LENGTH);
+    if (packed == CardNumbers.NOT_A_BIN || card == null) {
+      return;
+    }
+
+    Integer length = card.getLength();
+    byte rule = 0;
+    if (length != null && length >= CardNumbers.MIN_LENGTH && length <= CardNumbers.MAX_LENGTH) {
+      rule |= length.byteValue();
+    }
+    if (Integer.valueOf(1).equals(card.getCheckLuhn())) {
+      rule |= CHECK_LUHN;
+    }
+
+    byte current = rules[packed];
+    if (current == 0) {
+      rules[packed] = rule;
+    } else if (current != rule && current != CONFLICTING) {
+      // 8-digit BINs under the same 6 digits may disagree, and then none of them is enforced
+      logger.debug("BINs under {} have conflicting card rules", packed);
+      rules[packed] = CONFLICTING;
+    }
+  }
+
+  public String findViolation(CharSequence cardNumber) {
+    int bin = CardNumbers.packBin(cardNumber, BIN_LENGTH);
+    if (!enabled || bin == CardNumbers.NOT_A_BIN) {
+      return null;
+    }
+
+    byte rule = rules[bin];
+    if (rule == CONFLICTING) {
+      return null;
+    }
+    int length = rule & LENGTH_MASK;
+    if (length != 0 && cardNumber.length() != length) {
+      rejections.withTag("reason", "length").increment();
+      return "`card_number` should be %d digits long for BIN %06d".formatted(length, bin);
+    }
+    if ((rule & CHECK_LUHN) != 0 && !CardNumbers.passesLuhnCheck(cardNumber)) {
+      rejections.withTag("reason", "luhn").increment();
+      return "`card_number` fails the Luhn check";
+    }
+    return null;
+  }
+}
@@ -0,0 +1,175 @@
+package com.lmoustak.cardcostapi.services;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.UUID;
+import javax.sql.DataSource;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+public class ClearingCostsChangeListener implements SmartLifecycle {
+
+  static final String CHANNEL = "clearing_costs_changed";
+
+  private static final Logger logger = LoggerFactory.getLogger(ClearingCostsChangeListener.class);
+
+  private final String instanceId = UUID.randomUUID().toString();
+
+  private final DataSource dataSource;
+  private final ClearingCostsMatrixHolder clearingCostsMatrixHolder;
+  private final boolean enabled;
+  private final Duration pollTimeout;
+
+  private volatile boolean postgres;
+  private volatile boolean running;
+  private Thread listenerThread;
+
+  public ClearingCostsChangeListener(DataSource dataSource,
+      ClearingCostsMatrixHolder clearingCostsMatrixHolder,
+      @Value("${clearing-costs.notifications.enabled:true}") boolean enabled,
+      @Value("${clearing-costs.notifications.poll-timeout:5s}") Duration pollTimeout) {
+    this.dataSource = dataSource;
+    this.clearingCostsMatrixHolder = clearingCostsMatrixHolder;
+    this.enabled = enabled;
+    this.pollTimeout = pollTimeout;
+  }
+
+  public void notifyChange() {
+    if (!postgres) {
+      return;
+    }
+
+    try (Connection connection = dataSource.getConnection();
+        PreparedStatement statement = connection.prepareStatement("SELECT pg_notify(?, ?)")) {
+      statement.setString(1, CHANNEL);
+      statement.setString(2, instanceId);
+      statement.execute();
+    } catch (SQLException e) {
+      logger.warn("Could not notify other nodes of a clearing costs change", e);
+    }
+  }
+
+  // Bounds how long a node serves a stale matrix when notifications are disabled, unsupported
+  // or lost, e.g. when pg_notify fails on the node that made the change
+  @Scheduled(
+      initialDelayString = "${clearing-costs.refresh-interval:1m}",
+      fixedDelayString = "${clearing-costs.refresh-interval:1m}"
+  )
+  public void refreshPeriodically() {
+    try {
+      clearingCostsMatrixHolder.refresh();
+    } catch (RuntimeException e) {
+      logger.warn("Could not refresh the clearing costs matrix. Keeping the current one", e);
+    }
+  }
+
+  @Override
+  public void start() {
+    if (!enabled) {
+      logger.info("Clearing costs change notifications are disabled. Refreshing periodically");
+      return;
+    }
+
+    try (Connection connection = dataSource.getConnection()) {
+      postgres = connection.isWrapperFor(PGConnection.class);
+    } catch (SQLException e) {
+      logger.warn("Could not determine whether the database supports LISTEN/NOTIFY", e);
+    }
+
+    if (!postgres) {
+      logger.info("Database is not PostgreSQL. Relying on periodic clearing costs refresh");
+      return;
+    }
+
+    running = true;
+    listenerThread = new Thread(this::listen, "clearing-costs-listener");
+    listenerThread.setDaemon(true);
+    listenerThread.start();
+  }
+
+  @Override
+  public void stop() {
+    running = false;
+    if (listenerThread != null) {
+      listenerThread.interrupt();
+    }
+  }
+
+  @Override
+  public boolean isRunning() {
+    return running;
+  }
+
+  private void listen() {
+    while (running) {
+      // LISTEN holds on to one of the pool's connections for as long as the process runs, so the
+      // pool should be sized with one connection to spare
+      try (Connection connection = dataSource.getConnection()) {
+        try {
+          try (Statement statement = connection.createStatement()) {
+            statement.execute("LISTEN " + CHANNEL);
+          }
+          logger.info("Listening for clearing costs changes on channel '{}'", CHANNEL);
+
+          // Changes may have been missed while not listening
+          clearingCostsMatrixHolder.refresh();
+
+          PGConnection pgConnection = connection.unwrap(PGConnection.class);
+          while (running) {
+            PGNotification[] notifications = pgConnection.getNotifications(
+                (int) pollTimeout.toMillis());
+            if (hasNotificationsFromOtherNodes(notifications)) {
+              logger.debug("Received clearing costs change notification. Refreshing matrix...");
+              clearingCostsMatrixHolder.refresh();
+            }
+          }
+        } finally {
+          unlisten(connection);
+        }
+      } catch (SQLException | RuntimeException e) {
+        if (!running) {
+          return;
+        }
+        logger.warn("Lost connection while listening for clearing costs changes. Retrying...", e);
+        try {
+          Thread.sleep(pollTimeout.toMillis());
+        } catch (InterruptedException interruptedException) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+      }
+    }
+  }
+
+  // The connection goes back to the pool, where it should not keep collecting notifications
+  private static void unlisten(Connection connection) {
+    try (Statement statement = connection.createStatement()) {
+      statement.execute("UNLISTEN " + CHANNEL);
+    } catch (SQLException e) {
+      logger.debug("Could not stop listening on channel '{}'", CHANNEL, e);
+    }
+  }
+
+  private boolean hasNotificationsFromOtherNodes(PGNotification[] notifications) {
+    if (notifications == null) {
+      return false;
+    }
+
+    for (PGNotification notification : notifications) {
+      if (!instanceId.equals(notification.getParameter())) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,92 @@
+package com.lmoustak.cardcostapi.services;
+
+import com.lmoustak.cardcostapi.entities.ClearingCosts;
+import com.lmoustak.cardcostapi.utils.CountryCodes;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.Optional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public final class ClearingCostsMatrix {
+
+  private static final Logger logger = LoggerFactory.getLogger(ClearingCostsMatrix.class);
+
+  // Never handed out as is, since ClearingCosts is mutable and the matrix is shared by all requests
+  private final ClearingCosts[] byCountry;
+  private final ClearingCosts defaultClearingCosts;
+  private final int size;
+  private final long version;
+
+  private ClearingCostsMatrix(ClearingCosts[] byCountry, ClearingCosts defaultClearingCosts,
+      int size, long version) {
+    this.byCountry = byCountry;
+    this.defaultClearingCosts = defaultClearingCosts;
+    this.size = size;
+    this.version = version;
+  }
+
+  public static ClearingCostsMatrix of(Collection<ClearingCosts> entities) {
+    ClearingCosts defaultClearingCosts = null;
+    ClearingCosts[] byCountry = new ClearingCosts[CountryCodes.COUNT];
+    long version = 0;
+
+    for (ClearingCosts entity : entities) {
+      version += versionHash(entity);
+      ClearingCosts clearingCosts = copyOf(entity);
+      if (entity.getCountry() == null) {
+        defaultClearingCosts = clearingCosts;
+        continue;
+      }
+
+      short country = CountryCodes.pack(entity.getCountry());
+      if (country == CountryCodes.UNKNOWN) {
+        logger.warn("Ignoring clearing costs entity with invalid country: {}", entity);
+        continue;
+      }
+      byCountry[country] = clearingCosts;
+    }
+
+    for (int i = 0; i < byCountry.length; i++) {
+      if (byCountry[i] == null) {
+        byCountry[i] = defaultClearingCosts;
+      }
+    }
+
+    return new ClearingCostsMatrix(byCountry, defaultClearingCosts, entities.size(), version);
+  }
+
+  // Summed over all entities, so that the matrix version does not depend on their order. Ids are
+  // never reused, so it changes whenever an entity is created, updated or deleted
+  private static long versionHash(ClearingCosts entity) {
+    long hash = Objects.requireNonNullElse(entity.getId(), 0L) * 0x9E3779B97F4A7C15L
+        + Objects.requireNonNullElse(entity.getVersion(), 0L);
+    hash = (hash ^ (hash >>> 33)) * 0xFF51AFD7ED558CCDL;
+    hash = (hash ^ (hash >>> 33)) * 0xC4CEB9FE1A85EC53L;
+    return hash ^ (hash >>> 33);
+  }
+
+  private static ClearingCosts copyOf(ClearingCosts entity) {
+    var clearingCosts = new ClearingCosts();
+    clearingCosts.setId(entity.getId());
+    clearingCosts.setCountry(entity.getCountry());
+    clearingCosts.setPrice(entity.getPrice());
+    clearingCosts.setVersion(entity.getVersion());
+    return clearingCosts;
+  }
+
+  public Optional<ClearingCosts> findByCountry(String country) {
+    short packed = CountryCodes.pack(country);
+    ClearingCosts clearingCosts = packed == CountryCodes.UNKNOWN
+        ? defaultClearingCosts : byCountry[packed];
+    return clearingCosts == null ? Optional.empty() : Optional.of(copyOf(clearingCosts));
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public long version() {
+    return version;
+  }
+}
@@ -0,0 +1,47 @@
+package com.lmoustak.cardcostapi.services;
+
+import com.lmoustak.cardcostapi.repositories.ClearingCostsRepository;
+import java.util.concurrent.locks.ReentrantLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+@Component
+public class ClearingCostsMatrixHolder {
+
+  private static final Logger logger = LoggerFactory.getLogger(ClearingCostsMatrixHolder.class);
+
+  private final ClearingCostsRepository clearingCostsRepository;
+  private final ReentrantLock refreshLock = new ReentrantLock();
+
+  private volatile ClearingCostsMatrix matrix;
+
+  public ClearingCostsMatrixHolder(ClearingCostsRepository clearingCostsRepository) {
+    this.clearingCostsRepository = clearingCostsRepository;
+  }
+
+  public ClearingCostsMatrix getMatrix() {
+    ClearingCostsMatrix current = matrix;
+    return current != null ? current : refresh();
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void onApplicationReady() {
+    refresh();
+  }
+
+  public ClearingCostsMatrix refresh() {
+    refreshLock.lock();
+    try {
+      ClearingCostsMatrix newMatrix = ClearingCostsMatrix.of(clearingCostsRepository.findAll());
+      matrix = newMatrix;
+      logger.debug("Swapped clearing costs matrix with a new one of {} entries",
+          newMatrix.size());
+      return newMatrix;
+    } finally {
+      refreshLock.unlock();
+    }
+  }
+}
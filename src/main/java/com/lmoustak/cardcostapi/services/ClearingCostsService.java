@@ -1,9 +1,16 @@
 package com.lmoustak.cardcostapi.services;
 
+import com.lmoustak.cardcostapi.dtos.ClearingCostsImportResult;
+import com.lmoustak.cardcostapi.dtos.ClearingCostsPage;
+import com.lmoustak.cardcostapi.dtos.ClearingCostsVersion;
 import com.lmoustak.cardcostapi.entities.ClearingCosts;
 import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface ClearingCostsService {
 
@@ -11,16 +18,39 @@ public interface ClearingCostsService {
 
   List<ClearingCosts> readAllClearingCosts();
 
+  ClearingCostsPage readClearingCostsPageById(Long afterId, int limit);
+
+  ClearingCostsPage readClearingCostsPageByCountry(String afterCountry, int limit);
+
+  void streamAllClearingCosts(Consumer<ClearingCosts> consumer);
+
   Optional<ClearingCosts> readClearingCostsById(Long id);
 
   Optional<ClearingCosts> readClearingCostsByCountry(String country);
 
+  List<ClearingCosts> readClearingCostsByIds(Collection<Long> ids);
+
+  Map<String, ClearingCosts> readClearingCostsByCountries(Collection<String> countries);
+
   List<ClearingCosts> readClearingCostsByPriceRange(BigDecimal minPrice, BigDecimal maxPrice);
 
-  ClearingCosts updateClearingCosts(String country, BigDecimal price);
+  ClearingCostsPage readClearingCostsPageByPriceRange(BigDecimal minPrice, BigDecimal maxPrice,
+      Long afterId, int limit);
+
+  void streamClearingCostsByPriceRange(BigDecimal minPrice, BigDecimal maxPrice,
+      Consumer<ClearingCosts> consumer);
+
+  long readClearingCostsMatrixVersion();
+
+  ClearingCosts updateClearingCosts(String country, BigDecimal price,
+      Collection<ClearingCostsVersion> expectedVersions);
 
   ClearingCosts deleteClearingCosts(Long id);
 
   ClearingCosts deleteClearingCostsByCountry(String country);
 
+  ClearingCostsImportResult importClearingCosts(Iterator<ClearingCosts> rows, boolean replace);
+
+  void exportClearingCosts(Consumer<ClearingCosts> consumer);
+
 }
@@ -1,43 +1,114 @@
 package com.lmoustak.cardcostapi.services;
 
+import com.lmoustak.cardcostapi.caching.MultiGetCache;
+import com.lmoustak.cardcostapi.dtos.ClearingCostsImportResult;
+import com.lmoustak.cardcostapi.dtos.ClearingCostsPage;
+import com.lmoustak.cardcostapi.dtos.ClearingCostsVersion;
 import com.lmoustak.cardcostapi.entities.ClearingCosts;
+import com.lmoustak.cardcostapi.exceptions.ClearingCostsImportException;
+import com.lmoustak.cardcostapi.repositories.ClearingCostsBulkRepository;
 import com.lmoustak.cardcostapi.repositories.ClearingCostsRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.persistence.EntityExistsException;
+import jakarta.persistence.EntityManager;
 import jakarta.persistence.EntityNotFoundException;
+import jakarta.persistence.OptimisticLockException;
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.Cache.ValueWrapper;
+import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.CachePut;
 import org.springframework.cache.annotation.Cacheable;
-import org.springframework.cache.annotation.Caching;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 @Service
 public class ClearingCostsServiceImpl implements ClearingCostsService {
 
   private static final Logger logger = LoggerFactory.getLogger(ClearingCostsServiceImpl.class);
 
+  public static final String CACHE_NAME = "clearingCosts";
+
+  private static final Pattern COUNTRY_PATTERN = Pattern.compile("[A-Za-z]{2}");
+
   private final ClearingCostsRepository clearingCostsRepository;
+  private final ClearingCostsBulkRepository clearingCostsBulkRepository;
+  private final ClearingCostsMatrixHolder clearingCostsMatrixHolder;
+  private final ClearingCostsChangeListener clearingCostsChangeListener;
+  private final CacheManager cacheManager;
+  private final EntityManager entityManager;
+  private final TransactionTemplate transactionTemplate;
+  private final TransactionTemplate readOnlyTransactionTemplate;
+  private final int importBatchSize;
+  private final int importMaxErrors;
+  private final Timer countryLookupTimer;
+  private final Timer countriesLookupTimer;
+  private final Timer idLookupTimer;
+  private final Timer idsLookupTimer;
 
-  public ClearingCostsServiceImpl(ClearingCostsRepository clearingCostsRepository) {
+  public ClearingCostsServiceImpl(ClearingCostsRepository clearingCostsRepository,
+      ClearingCostsBulkRepository clearingCostsBulkRepository,
+      ClearingCostsMatrixHolder clearingCostsMatrixHolder,
+      ClearingCostsChangeListener clearingCostsChangeListener, CacheManager cacheManager,
+      EntityManager entityManager, PlatformTransactionManager transactionManager,
+      MeterRegistry meterRegistry,
+      @Value("${clearing-costs.bulk.batch-size:500}") int importBatchSize,
+      @Value("${clearing-costs.bulk.max-errors:100}") int importMaxErrors) {
     this.clearingCostsRepository = clearingCostsRepository;
+    this.clearingCostsBulkRepository = clearingCostsBulkRepository;
+    this.clearingCostsMatrixHolder = clearingCostsMatrixHolder;
+    this.clearingCostsChangeListener = clearingCostsChangeListener;
+    this.cacheManager = cacheManager;
+    this.entityManager = entityManager;
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+    this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+    this.readOnlyTransactionTemplate.setReadOnly(true);
+    this.importBatchSize = importBatchSize;
+    this.importMaxErrors = importMaxErrors;
+    this.countryLookupTimer = lookupTimer(meterRegistry, "country");
+    this.countriesLookupTimer = lookupTimer(meterRegistry, "countries");
+    this.idLookupTimer = lookupTimer(meterRegistry, "id");
+    this.idsLookupTimer = lookupTimer(meterRegistry, "ids");
+  }
+
+  private static Timer lookupTimer(MeterRegistry meterRegistry, String by) {
+    return Timer.builder("clearing-costs.lookups")
+        .description("Latency of clearing costs lookups, excluding cache hits on lookups by id")
+        .tag("by", by)
+        .register(meterRegistry);
+  }
+
+  private void onClearingCostsChanged() {
+    clearingCostsMatrixHolder.refresh();
+    clearingCostsChangeListener.notifyChange();
   }
 
   @Override
-  @Caching(
-      put = {
-          @CachePut(value = "clearingCosts", key = "#result.id"),
-          @CachePut(value = "clearingCosts", key = "#country", condition = "#country!=null")
-      },
-      evict = {
-          @CacheEvict(value = "clearingCosts", key = "#result.id"),
-          @CacheEvict(value = "clearingCosts", key = "#country", condition = "#country!=null")
-      }
-  )
+  @CachePut(value = CACHE_NAME, key = "#result.id")
   public ClearingCosts createClearingCosts(String country, BigDecimal price) {
     logger.debug("START createClearingCosts('{}', {})", country, price);
 
@@ -64,6 +135,7 @@ public class ClearingCostsServiceImpl implements ClearingCostsService {
     clearingCosts.setPrice(price);
 
     ClearingCosts newEntity = clearingCostsRepository.save(clearingCosts);
+    onClearingCostsChanged();
     logger.debug("END createClearingCosts('{}', {}) returns {}", country, price, newEntity);
     return newEntity;
   }
@@ -74,17 +146,153 @@ public class ClearingCostsServiceImpl implements ClearingCostsService {
   }
 
   @Override
-  @Cacheable("clearingCosts")
+  public ClearingCostsPage readClearingCostsPageById(Long afterId, int limit) {
+    requirePositive(limit);
+    List<ClearingCosts> rows = clearingCostsRepository.findPageAfterId(
+        afterId == null ? Long.MIN_VALUE : afterId, Limit.of(limit + 1));
+    return toPage(rows, limit, clearingCosts -> clearingCosts.getId().toString());
+  }
+
+  @Override
+  public ClearingCostsPage readClearingCostsPageByCountry(String afterCountry, int limit) {
+    requirePositive(limit);
+    // The default entry sorts first, and its cursor is the empty string
+    List<ClearingCosts> rows = afterCountry == null
+        ? clearingCostsRepository.findFirstPageByCountry(Limit.of(limit + 1))
+        : clearingCostsRepository.findPageAfterCountry(afterCountry.toLowerCase(),
+            Limit.of(limit + 1));
+    return toPage(rows, limit,
+        clearingCosts -> Objects.requireNonNullElse(clearingCosts.getCountry(), ""));
+  }
+
+  @Override
+  public void streamAllClearingCosts(Consumer<ClearingCosts> consumer) {
+    Objects.requireNonNull(consumer, "`consumer` should not be null");
+    forEachDetached(clearingCostsRepository::streamAll, consumer);
+  }
+
+  private static void requirePositive(int limit) {
+    if (limit < 1) {
+      throw new IllegalArgumentException("`limit` should be positive");
+    }
+  }
+
+  private static ClearingCostsPage toPage(List<ClearingCosts> rows, int limit,
+      Function<ClearingCosts, String> cursor) {
+    if (rows.size() <= limit) {
+      return new ClearingCostsPage(rows, null);
+    }
+
+    List<ClearingCosts> items = rows.subList(0, limit);
+    return new ClearingCostsPage(items, cursor.apply(items.get(limit - 1)));
+  }
+
+  private void forEachDetached(Supplier<Stream<ClearingCosts>> query,
+      Consumer<ClearingCosts> consumer) {
+    // Detached rows are not kept by the persistence context, so memory stays bounded
+    readOnlyTransactionTemplate.executeWithoutResult(status -> {
+      try (Stream<ClearingCosts> clearingCosts = query.get()) {
+        clearingCosts.forEach(entity -> {
+          entityManager.detach(entity);
+          consumer.accept(entity);
+        });
+      }
+    });
+  }
+
+  @Override
+  @Cacheable(CACHE_NAME)
   public Optional<ClearingCosts> readClearingCostsById(Long id) {
     Objects.requireNonNull(id, "`id` should not be null");
-    return clearingCostsRepository.findById(id);
+    return idLookupTimer.record(() -> clearingCostsRepository.findById(id));
   }
 
   @Override
-  @Cacheable("clearingCosts")
   public Optional<ClearingCosts> readClearingCostsByCountry(String country) {
-    return clearingCostsRepository.findByCountry(country)
-        .or(clearingCostsRepository::findByCountryIsNull);
+    return countryLookupTimer.record(
+        () -> clearingCostsMatrixHolder.getMatrix().findByCountry(country));
+  }
+
+  @Override
+  public List<ClearingCosts> readClearingCostsByIds(Collection<Long> ids) {
+    Objects.requireNonNull(ids, "`ids` should not be null");
+    return idsLookupTimer.record(() -> findClearingCostsByIds(ids));
+  }
+
+  private List<ClearingCosts> findClearingCostsByIds(Collection<Long> ids) {
+    logger.debug("START readClearingCostsByIds({} ids)", ids.size());
+
+    Set<Long> distinctIds = new LinkedHashSet<>(ids);
+    distinctIds.remove(null);
+    Cache cache = cacheManager.getCache(CACHE_NAME);
+    Map<Object, ValueWrapper> cached = readCached(cache, distinctIds);
+
+    List<Long> missingIds = distinctIds.stream()
+        .filter(id -> !cached.containsKey(id))
+        .toList();
+    Map<Long, ClearingCosts> loaded = new HashMap<>();
+    if (!missingIds.isEmpty()) {
+      clearingCostsRepository.findAllById(missingIds)
+          .forEach(clearingCosts -> loaded.put(clearingCosts.getId(), clearingCosts));
+      writeCached(cache, loaded);
+    }
+
+    List<ClearingCosts> clearingCosts = new ArrayList<>(distinctIds.size());
+    for (Long id : distinctIds) {
+      ValueWrapper valueWrapper = cached.get(id);
+      ClearingCosts entity = valueWrapper != null
+          ? (ClearingCosts) valueWrapper.get() : loaded.get(id);
+      if (entity != null) {
+        clearingCosts.add(entity);
+      }
+    }
+    logger.debug("END readClearingCostsByIds({} ids) found {} in cache, {} in the database",
+        ids.size(), cached.size(), loaded.size());
+    return clearingCosts;
+  }
+
+  @Override
+  public Map<String, ClearingCosts> readClearingCostsByCountries(Collection<String> countries) {
+    Objects.requireNonNull(countries, "`countries` should not be null");
+    return countriesLookupTimer.record(() -> findClearingCostsByCountries(countries));
+  }
+
+  private Map<String, ClearingCosts> findClearingCostsByCountries(Collection<String> countries) {
+
+    ClearingCostsMatrix matrix = clearingCostsMatrixHolder.getMatrix();
+    Map<String, ClearingCosts> clearingCosts = new LinkedHashMap<>();
+    for (String country : countries) {
+      if (country != null) {
+        String key = country.toLowerCase();
+        matrix.findByCountry(key).ifPresent(entity -> clearingCosts.putIfAbsent(key, entity));
+      }
+    }
+    return clearingCosts;
+  }
+
+  private static Map<Object, ValueWrapper> readCached(Cache cache, Collection<Long> ids) {
+    if (cache == null || ids.isEmpty()) {
+      return Map.of();
+    }
+
+    try {
+      return MultiGetCache.getAll(cache, ids);
+    } catch (RuntimeException e) {
+      logger.warn("Could not read {} keys from cache '{}'", ids.size(), CACHE_NAME, e);
+      return Map.of();
+    }
+  }
+
+  private static void writeCached(Cache cache, Map<Long, ClearingCosts> clearingCosts) {
+    if (cache == null || clearingCosts.isEmpty()) {
+      return;
+    }
+
+    try {
+      MultiGetCache.putAll(cache, clearingCosts);
+    } catch (RuntimeException e) {
+      logger.warn("Could not write {} keys to cache '{}'", clearingCosts.size(), CACHE_NAME, e);
+    }
   }
 
   @Override
@@ -94,18 +302,34 @@ public class ClearingCostsServiceImpl implements ClearingCostsService {
   }
 
   @Override
-  @Caching(
-      put = {
-          @CachePut(value = "clearingCosts", key = "#result.id"),
-          @CachePut(value = "clearingCosts", key = "#country", condition = "#country!=null")
-      },
-      evict = {
-          @CacheEvict(value = "clearingCosts", key = "#result.id"),
-          @CacheEvict(value = "clearingCosts", key = "#country", condition = "#country!=null")
-      }
-  )
-  public ClearingCosts updateClearingCosts(String country, BigDecimal price) {
-    logger.debug("START updateClearingCosts('{}', {})", country, price);
+  public ClearingCostsPage readClearingCostsPageByPriceRange(BigDecimal minPrice,
+      BigDecimal maxPrice, Long afterId, int limit) {
+    requirePositive(limit);
+    List<ClearingCosts> rows = clearingCostsRepository.findByPriceRangeAfterId(minPrice, maxPrice,
+        afterId == null ? Long.MIN_VALUE : afterId, Limit.of(limit + 1));
+    return toPage(rows, limit, clearingCosts -> clearingCosts.getId().toString());
+  }
+
+  @Override
+  public void streamClearingCostsByPriceRange(BigDecimal minPrice, BigDecimal maxPrice,
+      Consumer<ClearingCosts> consumer) {
+    Objects.requireNonNull(consumer, "`consumer` should not be null");
+    forEachDetached(() -> clearingCostsRepository.streamByPriceRange(minPrice, maxPrice),
+        consumer);
+  }
+
+  // Read from the database rather than the matrix in memory, which may not have caught up with a
+  // change made through another node yet
+  @Override
+  public long readClearingCostsMatrixVersion() {
+    return clearingCostsMatrixHolder.refresh().version();
+  }
+
+  @Override
+  @CachePut(value = CACHE_NAME, key = "#result.id")
+  public ClearingCosts updateClearingCosts(String country, BigDecimal price,
+      Collection<ClearingCostsVersion> expectedVersions) {
+    logger.debug("START updateClearingCosts('{}', {}, {})", country, price, expectedVersions);
     Objects.requireNonNull(price, "`price` should not be null");
 
     Optional<ClearingCosts> optionalClearingCosts;
@@ -124,19 +348,23 @@ public class ClearingCostsServiceImpl implements ClearingCostsService {
     ClearingCosts clearingCosts = optionalClearingCosts.get();
     logger.debug("Found clearing costs entity {}", clearingCosts);
 
+    if (expectedVersions != null && !expectedVersions.contains(
+        new ClearingCostsVersion(clearingCosts.getId(), clearingCosts.getVersion()))) {
+      logger.error("Clearing costs entity {} does not match any of {}. Throwing...",
+          clearingCosts, expectedVersions);
+      throw new OptimisticLockException(
+          "Clearing costs for country='%s' were changed since they were read".formatted(country));
+    }
+
     clearingCosts.setPrice(price);
     ClearingCosts updatedEntity = clearingCostsRepository.save(clearingCosts);
+    onClearingCostsChanged();
     logger.debug("END updateClearingCosts('{}', {}) returns {}", country, price, updatedEntity);
     return updatedEntity;
   }
 
   @Override
-  @Caching(
-      evict = {
-          @CacheEvict(value = "clearingCosts", key = "#id"),
-          @CacheEvict(value = "clearingCosts", key = "#result.country", condition = "#result.country!=null")
-      }
-  )
+  @CacheEvict(value = CACHE_NAME, key = "#id")
   public ClearingCosts deleteClearingCosts(Long id) {
     logger.debug("START deleteClearingCosts({})", id);
     Objects.requireNonNull(id, "`id` should not be null");
@@ -150,17 +378,13 @@ public class ClearingCostsServiceImpl implements ClearingCostsService {
 
     logger.debug("Found clearing costs entity {}", clearingCosts);
     clearingCostsRepository.delete(clearingCosts);
+    onClearingCostsChanged();
     logger.debug("END deleteClearingCosts({}) returns {}", id, clearingCosts);
     return clearingCosts;
   }
 
   @Override
-  @Caching(
-      evict = {
-          @CacheEvict(value = "clearingCosts", key = "#result.id"),
-          @CacheEvict(value = "clearingCosts", key = "#country", condition = "#country!=null")
-      }
-  )
+  @CacheEvict(value = CACHE_NAME, key = "#result.id")
   public ClearingCosts deleteClearingCostsByCountry(String country) {
     logger.debug("START deleteClearingCostsByCountry('{}')", country);
     Optional<ClearingCosts> optionalClearingCosts;
@@ -180,7 +404,152 @@ public class ClearingCostsServiceImpl implements ClearingCostsService {
     logger.debug("Found clearing costs entity {}", clearingCosts);
 
     clearingCostsRepository.delete(clearingCosts);
+    onClearingCostsChanged();
     logger.debug("END deleteClearingCostsByCountry({}) returns {}", country, clearingCosts);
     return clearingCosts;
   }
+
+  @Override
+  public ClearingCostsImportResult importClearingCosts(Iterator<ClearingCosts> rows,
+      boolean replace) {
+    logger.debug("START importClearingCosts(replace={})", replace);
+    Objects.requireNonNull(rows, "`rows` should not be null");
+
+    ClearingCostsImportResult result = transactionTemplate.execute(
+        status -> importRows(rows, replace));
+
+    clearCache();
+    onClearingCostsChanged();
+    logger.debug("END importClearingCosts(replace={}) returns {}", replace, result);
+    return result;
+  }
+
+  private ClearingCostsImportResult importRows(Iterator<ClearingCosts> rows, boolean replace) {
+    Map<String, Long> existingIds = clearingCostsBulkRepository.findIdsByCountryForUpdate();
+    Set<String> importedCountries = new HashSet<>();
+    Map<String, String> errors = new LinkedHashMap<>();
+    List<ClearingCosts> inserts = new ArrayList<>(importBatchSize);
+    List<ClearingCosts> updates = new ArrayList<>(importBatchSize);
+    int created = 0;
+    int updated = 0;
+
+    // Once a row is invalid nothing is written, but later rows are still validated
+    for (int row = 0; rows.hasNext() && errors.size() < importMaxErrors; row++) {
+      ClearingCosts clearingCosts = validateRow(row, rows.next(), importedCountries, errors);
+      if (clearingCosts == null || !errors.isEmpty()) {
+        continue;
+      }
+
+      Long id = existingIds.get(clearingCosts.getCountry());
+      if (id == null) {
+        inserts.add(clearingCosts);
+      } else {
+        clearingCosts.setId(id);
+        updates.add(clearingCosts);
+      }
+
+      if (inserts.size() == importBatchSize) {
+        created += flushInserts(inserts);
+      }
+      if (updates.size() == importBatchSize) {
+        updated += flushUpdates(updates);
+      }
+    }
+
+    if (!errors.isEmpty()) {
+      logger.error("{} clearing costs rows were invalid. Rolling back...", errors.size());
+      throw new ClearingCostsImportException(errors);
+    }
+
+    created += flushInserts(inserts);
+    updated += flushUpdates(updates);
+
+    int deleted = 0;
+    if (replace) {
+      List<Long> staleIds = existingIds.entrySet().stream()
+          .filter(entry -> !importedCountries.contains(entry.getKey()))
+          .map(Map.Entry::getValue)
+          .toList();
+      clearingCostsBulkRepository.deleteAllById(staleIds);
+      deleted = staleIds.size();
+    }
+    return new ClearingCostsImportResult(created, updated, deleted);
+  }
+
+  private static ClearingCosts validateRow(int row, ClearingCosts clearingCosts,
+      Set<String> importedCountries, Map<String, String> errors) {
+    String country = clearingCosts.getCountry();
+    BigDecimal price = clearingCosts.getPrice();
+    boolean valid = true;
+
+    if (country != null) {
+      if (COUNTRY_PATTERN.matcher(country).matches()) {
+        country = country.toLowerCase();
+      } else {
+        errors.put("[%d].country".formatted(row),
+            "`country` should either be null or two letters long");
+        valid = false;
+      }
+    }
+    if (valid && !importedCountries.add(country)) {
+      errors.put("[%d].country".formatted(row),
+          "`country` should not appear more than once, but '%s' did".formatted(country));
+      valid = false;
+    }
+
+    if (price == null) {
+      errors.put("[%d].price".formatted(row), "`price` should not be null");
+      valid = false;
+    } else if (price.signum() < 0) {
+      errors.put("[%d].price".formatted(row), "`price` should not be negative");
+      valid = false;
+    }
+
+    if (!valid) {
+      return null;
+    }
+
+    var validated = new ClearingCosts();
+    validated.setCountry(country);
+    validated.setPrice(price);
+    return validated;
+  }
+
+  private int flushInserts(List<ClearingCosts> inserts) {
+    int count = inserts.size();
+    if (count > 0) {
+      clearingCostsBulkRepository.insertAll(inserts);
+      inserts.clear();
+    }
+    return count;
+  }
+
+  private int flushUpdates(List<ClearingCosts> updates) {
+    int count = updates.size();
+    if (count > 0) {
+      clearingCostsBulkRepository.updatePrices(updates);
+      updates.clear();
+    }
+    return count;
+  }
+
+  private void clearCache() {
+    Cache cache = cacheManager.getCache(CACHE_NAME);
+    if (cache == null) {
+      return;
+    }
+
+    try {
+      cache.clear();
+    } catch (RuntimeException e) {
+      logger.warn("Could not clear cache '{}'", CACHE_NAME, e);
+    }
+  }
+
+  @Override
+  public void exportClearingCosts(Consumer<ClearingCosts> consumer) {
+    Objects.requireNonNull(consumer, "`consumer` should not be null");
+    readOnlyTransactionTemplate.executeWithoutResult(
+        status -> clearingCostsBulkRepository.forEach(consumer));
+  }
 }
@@ -0,0 +1,165 @@
+package com.lmoustak.cardcostapi.services;
+
+import com.lmoustak.cardcostapi.dtos.BinCountry;
+import com.lmoustak.cardcostapi.exceptions.BinTableException;
+import com.lmoustak.cardcostapi.utils.CardNumbers;
+import com.lmoustak.cardcostapi.utils.CompletableFutures;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+@Service
+@Primary
+public class LocalFirstBinTableService implements BinTableService {
+
+  private static final Logger logger = LoggerFactory.getLogger(LocalFirstBinTableService.class);
+
+  private final BinRangeIndexLoader binRangeIndexLoader;
+  private final ResolvedBinStore resolvedBinStore;
+  private final BinTableService remoteBinTableService;
+  private final int binLength;
+
+  public LocalFirstBinTableService(BinRangeIndexLoader binRangeIndexLoader,
+      ResolvedBinStore resolvedBinStore,
+      @Qualifier("binTableServiceImpl") BinTableService remoteBinTableService,
+      @Value("${bintable.bin-length:6}") int binLength) {
+    this.binRangeIndexLoader = binRangeIndexLoader;
+    this.resolvedBinStore = resolvedBinStore;
+    this.remoteBinTableService = remoteBinTableService;
+    this.binLength = binLength;
+  }
+
+  @Override
+  public String getCountryFromIssuerIdentificationNumber(String issuerIdentificationNumber) {
+    return findCountry(issuerIdentificationNumber).country();
+  }
+
+  @Override
+  public BinCountry findCountry(String issuerIdentificationNumber) {
+    int bin = parseBin(issuerIdentificationNumber);
+    String country = findLocalCountry(bin);
+    if (country != null) {
+      return BinCountry.fresh(country);
+    }
+
+    try {
+      return BinCountry.fresh(remoteBinTableService.getCountryFromIssuerIdentificationNumber(
+          issuerIdentificationNumber));
+    } catch (BinTableException e) {
+      String staleCountry = findStaleCountry(issuerIdentificationNumber, e);
+      if (staleCountry == null) {
+        throw e;
+      }
+      return BinCountry.stale(staleCountry);
+    }
+  }
+
+  @Override
+  public CompletableFuture<String> getCountryFromIssuerIdentificationNumberAsync(
+      String issuerIdentificationNumber) {
+    CompletableFuture<BinCountry> country = findCountryAsync(issuerIdentificationNumber);
+    return CompletableFutures.propagateCancellation(country.thenApply(BinCountry::country),
+        country);
+  }
+
+  @Override
+  public CompletableFuture<BinCountry> findCountryAsync(String issuerIdentificationNumber) {
+    int bin;
+    try {
+      bin = parseBin(issuerIdentificationNumber);
+    } catch (RuntimeException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+    String country = findLocalCountry(bin);
+    if (country != null) {
+      return CompletableFuture.completedFuture(BinCountry.fresh(country));
+    }
+
+    CompletableFuture<String> remoteCountry =
+        remoteBinTableService.getCountryFromIssuerIdentificationNumberAsync(
+            issuerIdentificationNumber);
+    return CompletableFutures.propagateCancellation(remoteCountry.handle((resolved, error) -> {
+      if (error == null) {
+        return BinCountry.fresh(resolved);
+      }
+
+      Throwable cause = CompletableFutures.unwrap(error);
+      String staleCountry = cause instanceof BinTableException e
+          ? findStaleCountry(issuerIdentificationNumber, e) : null;
+      if (staleCountry == null) {
+        throw error instanceof CompletionException completionException
+            ? completionException : new CompletionException(cause);
+      }
+      return BinCountry.stale(staleCountry);
+    }), remoteCountry);
+  }
+
+  @Override
+  public Map<String, String> findKnownCountries(
+      Collection<String> issuerIdentificationNumbers) {
+    Map<String, String> countries = new HashMap<>();
+    List<String> unresolved = new ArrayList<>();
+    for (String issuerIdentificationNumber : issuerIdentificationNumbers) {
+      if (issuerIdentificationNumber == null
+          || countries.containsKey(issuerIdentificationNumber)) {
+        continue;
+      }
+
+      String country = findLocalCountry(parseBin(issuerIdentificationNumber));
+      if (country != null) {
+        countries.put(issuerIdentificationNumber, country);
+      } else {
+        unresolved.add(issuerIdentificationNumber);
+      }
+    }
+
+    if (!unresolved.isEmpty()) {
+      countries.putAll(remoteBinTableService.findKnownCountries(unresolved));
+    }
+    return countries;
+  }
+
+  // Resolved BINs are only served once both the bins cache and BINTable failed to answer, so
+  // that they never stand in for the cache's expiry and refresh
+  private String findStaleCountry(String issuerIdentificationNumber, BinTableException e) {
+    if (!e.isTransient()) {
+      return null;
+    }
+
+    String country = resolvedBinStore.findStale(issuerIdentificationNumber);
+    if (country != null) {
+      logger.warn("BINTable is unavailable ({}). Serving stale country '{}' for IIN '{}'",
+          e.getMessage(), country, issuerIdentificationNumber);
+    }
+    return country;
+  }
+
+  private String findLocalCountry(int bin) {
+    if (bin == CardNumbers.NOT_A_BIN) {
+      return null;
+    }
+
+    String country = binRangeIndexLoader.getIndex().findCountry(bin);
+    if (country != null) {
+      logger.debug("Found country '{}' for bin={} in the local BIN range index", country, bin);
+    }
+    return country;
+  }
+
+  // Ranges are given in BINs of bintable.bin-length digits, so shorter IINs are not covered
+  private int parseBin(String issuerIdentificationNumber) {
+    Objects.requireNonNull(issuerIdentificationNumber, "IIN should not be null");
+    return CardNumbers.packBin(issuerIdentificationNumber, binLength);
+  }
+}
@@ -0,0 +1,277 @@
+package com.lmoustak.cardcostapi.services;
+
+import com.lmoustak.cardcostapi.utils.CardNumbers;
+import com.lmoustak.cardcostapi.utils.CountryCodes;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.function.BiConsumer;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+public class ResolvedBinStore {
+
+  private static final Logger logger = LoggerFactory.getLogger(ResolvedBinStore.class);
+
+  public static final int MAGIC = 0x42494E53;
+  public static final short VERSION = 1;
+
+  private static final int BIN_LENGTH = 6;
+  private static final int BINS = 1_000_000;
+  // Stored in place of a country once BINs under the same 6 digits resolved to different ones
+  private static final short CONFLICTING = CountryCodes.COUNT;
+  // Set next to the country of slots only BINs longer than 6 digits were resolved into, which
+  // therefore cannot answer for the 6 digits themselves
+  private static final short LONG_BINS_ONLY = 0x4000;
+  private static final int HEADER_BYTES = Integer.BYTES + Short.BYTES;
+  private static final int ENTRY_BYTES = Integer.BYTES + Short.BYTES + Integer.BYTES;
+  private static final int TRAILER_BYTES = Integer.BYTES + Integer.BYTES;
+
+  private final Path file;
+  private final long maxAgeSeconds;
+  private final Clock clock;
+
+  // Each slot packs the epoch second the BIN was resolved at with its country code plus one,
+  // so that an empty slot reads as zero. 8-digit BINs share the slot of their first 6 digits
+  private final AtomicLongArray entries = new AtomicLongArray(BINS);
+  private final LongAdder recorded = new LongAdder();
+  private volatile long persisted;
+
+  @Autowired
+  public ResolvedBinStore(@Value("${bintable.snapshot.file:}") String file,
+      @Value("${bintable.snapshot.max-age:7d}") Duration maxAge) {
+    this(file.isBlank() ? null : Path.of(file), maxAge, Clock.systemUTC());
+  }
+
+  public ResolvedBinStore(Path file, Duration maxAge, Clock clock) {
+    this.file = file;
+    this.maxAgeSeconds = maxAge.toSeconds();
+    this.clock = clock;
+  }
+
+  public String findStale(CharSequence cardNumber) {
+    return findStale(CardNumbers.packBin(cardNumber, BIN_LENGTH));
+  }
+
+  public String findStale(int bin) {
+    if (bin < 0 || bin >= BINS) {
+      return null;
+    }
+
+    long entry = entries.get(bin);
+    return entry == 0 ? null : CountryCodes.unpack(country(entry));
+  }
+
+  public void record(int bin, String country) {
+    short packed = CountryCodes.pack(country);
+    if (bin < 0 || bin >= BINS || packed == CountryCodes.UNKNOWN) {
+      return;
+    }
+
+    entries.set(bin, entry(clock.instant().getEpochSecond(), packed));
+    recorded.increment();
+  }
+
+  // A BIN longer than 6 digits only speaks for itself, so once two of them under the same 6
+  // digits disagree, the slot is marked as conflicting and serves none of them
+  public void record(CharSequence bin, String country) {
+    int slot = CardNumbers.packBin(bin, BIN_LENGTH);
+    short packed = CountryCodes.pack(country);
+    if (slot == CardNumbers.NOT_A_BIN || packed == CountryCodes.UNKNOWN) {
+      return;
+    }
+    if (bin.length() > BIN_LENGTH) {
+      long current = entries.get(slot);
+      if (current == 0) {
+        packed |= LONG_BINS_ONLY;
+      } else if (country(current) != packed) {
+        logger.debug("BINs under {} resolved to conflicting countries", slot);
+        packed = CONFLICTING;
+      } else {
+        packed |= (short) (code(current) & LONG_BINS_ONLY);
+      }
+    }
+
+    entries.set(slot, entry(clock.instant().getEpochSecond(), packed));
+    recorded.increment();
+  }
+
+  // Hands out the 6-digit BINs resolved within the max age, for warming caches after a restart
+  public void forEachFresh(BiConsumer<String, String> consumer) {
+    long now = clock.instant().getEpochSecond();
+    for (int bin = 0; bin < BINS; bin++) {
+      long entry = entries.get(bin);
+      if (entry == 0 || (code(entry) & LONG_BINS_ONLY) != 0 || country(entry) == CONFLICTING
+          || isExpired(resolvedAt(entry), now)) {
+        continue;
+      }
+      consumer.accept("%06d".formatted(bin), CountryCodes.unpack(country(entry)));
+    }
+  }
+
+  public int size() {
+    int size = 0;
+    for (int bin = 0; bin < BINS; bin++) {
+      if (entries.get(bin) != 0) {
+        size++;
+      }
+    }
+    return size;
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  @Order(Ordered.HIGHEST_PRECEDENCE)
+  public void onApplicationReady() {
+    if (file == null || !Files.exists(file)) {
+      return;
+    }
+
+    long start = System.nanoTime();
+    int loaded = load(file);
+    logger.info("Loaded {} BINs from snapshot '{}' in {}ms", loaded, file,
+        Duration.ofNanos(System.nanoTime() - start).toMillis());
+  }
+
+  @Scheduled(
+      initialDelayString = "${bintable.snapshot.interval:5m}",
+      fixedDelayString = "${bintable.snapshot.interval:5m}"
+  )
+  public void persistIfChanged() {
+    long changes = recorded.sum();
+    if (file == null || changes == persisted) {
+      return;
+    }
+
+    try {
+      int written = write(file);
+      persisted = changes;
+      logger.debug("Wrote {} BINs to snapshot '{}'", written, file);
+    } catch (IOException e) {
+      logger.error("Could not write BIN snapshot '{}'", file, e);
+    }
+  }
+
+  @EventListener(ContextClosedEvent.class)
+  public void onContextClosed() {
+    persistIfChanged();
+  }
+
+  public int write(Path target) throws IOException {
+    Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+    var crc = new CRC32();
+    int count = 0;
+    try (OutputStream out = Files.newOutputStream(temporary)) {
+      var data = new DataOutputStream(
+          new CheckedOutputStream(new BufferedOutputStream(out), crc));
+      data.writeInt(MAGIC);
+      data.writeShort(VERSION);
+      for (int bin = 0; bin < BINS; bin++) {
+        long entry = entries.get(bin);
+        if (entry != 0) {
+          data.writeInt(bin);
+          data.writeShort(code(entry));
+          data.writeInt((int) resolvedAt(entry));
+          count++;
+        }
+      }
+      data.writeInt(count);
+      data.flush();
+      new DataOutputStream(out).writeInt((int) crc.getValue());
+    }
+    Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+    return count;
+  }
+
+  public int load(Path source) {
+    try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size < HEADER_BYTES + TRAILER_BYTES || size > Integer.MAX_VALUE) {
+        throw new IllegalArgumentException("Unexpected file size " + size);
+      }
+
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      int checksumOffset = (int) size - Integer.BYTES;
+      var crc = new CRC32();
+      crc.update(buffer.slice(0, checksumOffset));
+      if ((int) crc.getValue() != buffer.getInt(checksumOffset)) {
+        throw new IllegalArgumentException("Checksum mismatch");
+      }
+
+      int magic = buffer.getInt();
+      short version = buffer.getShort();
+      int count = buffer.getInt(checksumOffset - Integer.BYTES);
+      if (magic != MAGIC || version != VERSION) {
+        throw new IllegalArgumentException(
+            "Unsupported format %08x version %d".formatted(magic, version));
+      }
+      if ((long) HEADER_BYTES + (long) count * ENTRY_BYTES + TRAILER_BYTES != size) {
+        throw new IllegalArgumentException("Expected %d entries".formatted(count));
+      }
+
+      long now = clock.instant().getEpochSecond();
+      int loaded = 0;
+      for (int i = 0; i < count; i++) {
+        int bin = buffer.getInt();
+        short code = buffer.getShort();
+        short country = (short) (code & ~LONG_BINS_ONLY);
+        long resolvedAt = Integer.toUnsignedLong(buffer.getInt());
+        if (bin < 0 || bin >= BINS
+            || CountryCodes.unpack(country) == null && country != CONFLICTING
+            || isExpired(resolvedAt, now)) {
+          continue;
+        }
+        if (entries.compareAndSet(bin, 0, entry(resolvedAt, code))) {
+          loaded++;
+        }
+      }
+      return loaded;
+    } catch (IOException | IllegalArgumentException e) {
+      logger.warn("Ignoring BIN snapshot '{}': {}", source, e.getMessage());
+      return 0;
+    }
+  }
+
+  private boolean isExpired(long resolvedAt, long now) {
+    return now - resolvedAt > maxAgeSeconds;
+  }
+
+  private static long entry(long resolvedAt, short country) {
+    return resolvedAt << 16 | (country + 1);
+  }
+
+  private static long resolvedAt(long entry) {
+    return entry >>> 16;
+  }
+
+  private static short code(long entry) {
+    return (short) ((entry & 0xFFFF) - 1);
+  }
+
+  private static short country(long entry) {
+    return (short) (code(entry) & ~LONG_BINS_ONLY);
+  }
+}
@@ -0,0 +1,39 @@
+package com.lmoustak.cardcostapi.utils;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+public class Bulkhead {
+
+  private final int maxConcurrentCalls;
+  private final long maxWaitNanos;
+  private final Semaphore permits;
+
+  public Bulkhead(int maxConcurrentCalls, Duration maxWait) {
+    this.maxConcurrentCalls = maxConcurrentCalls;
+    this.maxWaitNanos = maxWait.toNanos();
+    this.permits = new Semaphore(maxConcurrentCalls);
+  }
+
+  public boolean tryAcquire() {
+    return permits.tryAcquire();
+  }
+
+  public boolean tryAcquireWaiting() {
+    try {
+      return permits.tryAcquire(maxWaitNanos, TimeUnit.NANOSECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+
+  public void release() {
+    permits.release();
+  }
+
+  public int activeCalls() {
+    return maxConcurrentCalls - permits.availablePermits();
+  }
+}
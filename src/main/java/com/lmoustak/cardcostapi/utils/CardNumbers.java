@@ -0,0 +1,72 @@
+package com.lmoustak.cardcostapi.utils;
+
+public final class CardNumbers {
+
+  public static final int MIN_LENGTH = 8;
+  public static final int MAX_LENGTH = 19;
+  public static final int NOT_A_BIN = -1;
+
+  private CardNumbers() {
+  }
+
+  // Same as matching [0-9]{8,19}, in a single pass without a regex Matcher
+  public static boolean isValid(CharSequence cardNumber) {
+    if (cardNumber == null) {
+      return false;
+    }
+
+    int length = cardNumber.length();
+    if (length < MIN_LENGTH || length > MAX_LENGTH) {
+      return false;
+    }
+    for (int i = 0; i < length; i++) {
+      if (!isDigit(cardNumber.charAt(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  // Reads the first binLength digits as an int, without taking a substring
+  public static int packBin(CharSequence cardNumber, int binLength) {
+    if (cardNumber == null || cardNumber.length() < binLength) {
+      return NOT_A_BIN;
+    }
+
+    int bin = 0;
+    for (int i = 0; i < binLength; i++) {
+      char c = cardNumber.charAt(i);
+      if (!isDigit(c)) {
+        return NOT_A_BIN;
+      }
+      bin = bin * 10 + (c - '0');
+    }
+    return bin;
+  }
+
+  public static boolean passesLuhnCheck(CharSequence cardNumber) {
+    int sum = 0;
+    boolean doubled = false;
+    for (int i = cardNumber.length() - 1; i >= 0; i--) {
+      char c = cardNumber.charAt(i);
+      if (!isDigit(c)) {
+        return false;
+      }
+
+      int digit = c - '0';
+      if (doubled) {
+        digit *= 2;
+        if (digit > 9) {
+          digit -= 9;
+        }
+      }
+      sum += digit;
+      doubled = !doubled;
+    }
+    return sum % 10 == 0;
+  }
+
+  private static boolean isDigit(char c) {
+    return c >= '0' && c <= '9';
+  }
+}
@@ -0,0 +1,157 @@
+package com.lmoustak.cardcostapi.utils;
+
+import java.time.Duration;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+public class CircuitBreaker {
+
+  public enum State {
+    CLOSED, OPEN, HALF_OPEN
+  }
+
+  private static final byte FAILURE = 1;
+  private static final byte SLOW = 2;
+
+  private final int minimumCalls;
+  private final double failureRateThreshold;
+  private final long slowCallNanos;
+  private final double slowCallRateThreshold;
+  private final long openNanos;
+  private final int halfOpenCalls;
+  private final LongSupplier nanoClock;
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final byte[] window;
+  private int next;
+  private int calls;
+  private int failures;
+  private int slowCalls;
+
+  private volatile State state = State.CLOSED;
+  private long openedAt;
+  private int halfOpenPermits;
+  private int halfOpenSuccesses;
+
+  public CircuitBreaker(int windowSize, int minimumCalls, double failureRateThreshold,
+      Duration slowCallDuration, double slowCallRateThreshold, Duration openDuration,
+      int halfOpenCalls, LongSupplier nanoClock) {
+    if (windowSize < 1 || minimumCalls < 1 || minimumCalls > windowSize || halfOpenCalls < 1) {
+      throw new IllegalArgumentException("Invalid circuit breaker window");
+    }
+    this.window = new byte[windowSize];
+    this.minimumCalls = minimumCalls;
+    this.failureRateThreshold = failureRateThreshold;
+    this.slowCallNanos = slowCallDuration.toNanos();
+    this.slowCallRateThreshold = slowCallRateThreshold;
+    this.openNanos = openDuration.toNanos();
+    this.halfOpenCalls = halfOpenCalls;
+    this.nanoClock = nanoClock;
+  }
+
+  public static CircuitBreaker withDefaults() {
+    return new CircuitBreaker(20, 10, 0.5, Duration.ofSeconds(2), 0.8, Duration.ofSeconds(30), 3,
+        System::nanoTime);
+  }
+
+  public State getState() {
+    return state;
+  }
+
+  public boolean tryAcquirePermission() {
+    if (state == State.CLOSED) {
+      return true;
+    }
+
+    lock.lock();
+    try {
+      if (state == State.OPEN && nanoClock.getAsLong() - openedAt >= openNanos) {
+        state = State.HALF_OPEN;
+        halfOpenPermits = 0;
+        halfOpenSuccesses = 0;
+      }
+      return switch (state) {
+        case CLOSED -> true;
+        case OPEN -> false;
+        case HALF_OPEN -> {
+          if (halfOpenPermits >= halfOpenCalls) {
+            yield false;
+          }
+          halfOpenPermits++;
+          yield true;
+        }
+      };
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public void releasePermission() {
+    lock.lock();
+    try {
+      if (state == State.HALF_OPEN && halfOpenPermits > 0) {
+        halfOpenPermits--;
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public void onSuccess(long durationNanos) {
+    record(durationNanos >= slowCallNanos ? SLOW : 0);
+  }
+
+  public void onFailure(long durationNanos) {
+    record((byte) (FAILURE | (durationNanos >= slowCallNanos ? SLOW : 0)));
+  }
+
+  private void record(byte outcome) {
+    lock.lock();
+    try {
+      switch (state) {
+        case CLOSED -> {
+          if (calls == window.length) {
+            byte evicted = window[next];
+            failures -= evicted & FAILURE;
+            slowCalls -= (evicted & SLOW) >> 1;
+          } else {
+            calls++;
+          }
+          window[next] = outcome;
+          next = (next + 1) % window.length;
+          failures += outcome & FAILURE;
+          slowCalls += (outcome & SLOW) >> 1;
+
+          if (calls >= minimumCalls && ((double) failures / calls >= failureRateThreshold
+              || (double) slowCalls / calls >= slowCallRateThreshold)) {
+            open();
+          }
+        }
+        case HALF_OPEN -> {
+          if (outcome != 0) {
+            open();
+          } else if (++halfOpenSuccesses >= halfOpenCalls) {
+            close();
+          }
+        }
+        case OPEN -> {
+        }
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void open() {
+    state = State.OPEN;
+    openedAt = nanoClock.getAsLong();
+  }
+
+  private void close() {
+    next = 0;
+    calls = 0;
+    failures = 0;
+    slowCalls = 0;
+    state = State.CLOSED;
+  }
+}
@@ -0,0 +1,55 @@
+package com.lmoustak.cardcostapi.utils;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+public final class CompletableFutures {
+
+  private CompletableFutures() {
+  }
+
+  public static <T> CompletableFuture<T> propagateCancellation(CompletableFuture<T> dependent,
+      CompletableFuture<?> source) {
+    dependent.whenComplete((value, error) -> {
+      if (dependent.isCancelled()) {
+        source.cancel(true);
+      }
+    });
+    return dependent;
+  }
+
+  public static <T, U> CompletableFuture<U> thenComposeCancellable(CompletableFuture<T> source,
+      Function<? super T, CompletableFuture<U>> next) {
+    var composedHolder = new AtomicReference<CompletableFuture<U>>();
+    var nextHolder = new AtomicReference<CompletableFuture<U>>();
+    CompletableFuture<U> composed = source.thenCompose(value -> {
+      CompletableFuture<U> nextFuture = next.apply(value);
+      nextHolder.set(nextFuture);
+      CompletableFuture<U> current = composedHolder.get();
+      if (current != null && current.isCancelled()) {
+        nextFuture.cancel(true);
+      }
+      return nextFuture;
+    });
+    composedHolder.set(composed);
+    composed.whenComplete((value, error) -> {
+      if (composed.isCancelled()) {
+        source.cancel(true);
+        CompletableFuture<U> nextFuture = nextHolder.get();
+        if (nextFuture != null) {
+          nextFuture.cancel(true);
+        }
+      }
+    });
+    return composed;
+  }
+
+  public static Throwable unwrap(Throwable error) {
+    while (error instanceof CompletionException && error.getCause() != null) {
+      error = error.getCause();
+    }
+    return error;
+  }
+}
@@ -0,0 +1,49 @@
+package com.lmoustak.cardcostapi.utils;
+
+public final class CountryCodes {
+
+  public static final int COUNT = 26 * 26;
+  public static final short UNKNOWN = -1;
+
+  private static final String[] CODES = new String[COUNT];
+
+  static {
+    for (int i = 0; i < COUNT; i++) {
+      CODES[i] = new String(new char[]{(char) ('a' + i / 26), (char) ('a' + i % 26)});
+    }
+  }
+
+  private CountryCodes() {
+  }
+
+  public static short pack(CharSequence country) {
+    if (country == null || country.length() != 2) {
+      return UNKNOWN;
+    }
+
+    int first = letterIndex(country.charAt(0));
+    int second = letterIndex(country.charAt(1));
+    if (first < 0 || second < 0) {
+      return UNKNOWN;
+    }
+
+    return (short) (first * 26 + second);
+  }
+
+  public static String unpack(short packed) {
+    if (packed < 0 || packed >= COUNT) {
+      return null;
+    }
+    return CODES[packed];
+  }
+
+  private static int letterIndex(char c) {
+    if (c >= 'a' && c <= 'z') {
+      return c - 'a';
+    }
+    if (c >= 'A' && c <= 'Z') {
+      return c - 'A';
+    }
+    return -1;
+  }
+}
@@ -0,0 +1,148 @@
+package com.lmoustak.cardcostapi.utils;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+public class SingleFlight<K, V> {
+
+  private final ConcurrentMap<K, Flight<V>> inFlight = new ConcurrentHashMap<>();
+  private final LongAdder executed = new LongAdder();
+  private final LongAdder coalesced = new LongAdder();
+
+  public V execute(K key, Supplier<V> loader) {
+    var flight = new Flight<V>();
+    Flight<V> existing = inFlight.putIfAbsent(key, flight);
+    if (existing != null) {
+      coalesced.increment();
+      existing.waiters.incrementAndGet();
+      try {
+        return await(existing.result);
+      } finally {
+        leave(key, existing);
+      }
+    }
+
+    executed.increment();
+    flight.waiters.incrementAndGet();
+    try {
+      V value = loader.get();
+      flight.result.complete(value);
+      return value;
+    } catch (Throwable t) {
+      flight.result.completeExceptionally(t);
+      throw t;
+    } finally {
+      flight.waiters.decrementAndGet();
+      inFlight.remove(key, flight);
+    }
+  }
+
+  public CompletableFuture<V> executeAsync(K key, Supplier<CompletableFuture<V>> loader) {
+    var flight = new Flight<V>();
+    Flight<V> existing = inFlight.putIfAbsent(key, flight);
+    if (existing != null) {
+      coalesced.increment();
+      return attach(key, existing);
+    }
+
+    executed.increment();
+    CompletableFuture<V> attached = attach(key, flight);
+    CompletableFuture<V> source;
+    try {
+      source = loader.get();
+    } catch (Throwable t) {
+      source = CompletableFuture.failedFuture(t);
+    }
+
+    source.whenComplete((value, error) -> {
+      inFlight.remove(key, flight);
+      if (error != null) {
+        flight.result.completeExceptionally(
+            error instanceof CompletionException && error.getCause() != null
+                ? error.getCause() : error);
+      } else {
+        flight.result.complete(value);
+      }
+    });
+    flight.setSource(source);
+    return attached;
+  }
+
+  private CompletableFuture<V> attach(K key, Flight<V> flight) {
+    flight.waiters.incrementAndGet();
+    CompletableFuture<V> copy = flight.result.copy();
+    copy.whenComplete((value, error) -> {
+      if (copy.isCancelled()) {
+        leave(key, flight);
+      }
+    });
+    return copy;
+  }
+
+  // Once every caller, blocking or not, gave up on a flight, it is cancelled and forgotten, so
+  // that the next caller starts a new one instead of joining it
+  private void leave(K key, Flight<V> flight) {
+    if (flight.waiters.decrementAndGet() == 0 && !flight.result.isDone()) {
+      inFlight.remove(key, flight);
+      flight.abandon();
+    }
+  }
+
+  public long executedCount() {
+    return executed.sum();
+  }
+
+  public long coalescedCount() {
+    return coalesced.sum();
+  }
+
+  public int inFlightCount() {
+    return inFlight.size();
+  }
+
+  private static <V> V await(CompletableFuture<V> future) {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new CompletionException(e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException runtimeException) {
+        throw runtimeException;
+      }
+      if (cause instanceof Error error) {
+        throw error;
+      }
+      throw new CompletionException(cause);
+    }
+  }
+
+  private static final class Flight<V> {
+
+    private final CompletableFuture<V> result = new CompletableFuture<>();
+    private final AtomicInteger waiters = new AtomicInteger();
+    private volatile CompletableFuture<V> source;
+
+    private void setSource(CompletableFuture<V> source) {
+      this.source = source;
+      if (result.isCancelled()) {
+        source.cancel(true);
+      }
+    }
+
+    private void abandon() {
+      result.cancel(true);
+      CompletableFuture<V> source = this.source;
+      if (source != null) {
+        source.cancel(true);
+      }
+    }
+  }
+}
@@ -0,0 +1,44 @@
+package com.lmoustak.cardcostapi.utils;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class TokenBucket {
+
+  private final long nanosPerPermit;
+  private final long burstNanos;
+  // Generic cell rate algorithm: the bucket is a single "theoretical arrival time", which is
+  // ahead of the clock by the time it takes to refill the permits that have been spent
+  private final AtomicLong theoreticalArrivalTime;
+
+  public TokenBucket(double permitsPerSecond, int burst, long nowNanos) {
+    if (permitsPerSecond <= 0 || burst < 1) {
+      throw new IllegalArgumentException("The rate and the burst should be positive");
+    }
+    this.nanosPerPermit = (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond);
+    this.burstNanos = nanosPerPermit * burst;
+    this.theoreticalArrivalTime = new AtomicLong(nowNanos);
+  }
+
+  public boolean tryAcquire(long nowNanos) {
+    while (true) {
+      long arrivalTime = theoreticalArrivalTime.get();
+      long next = (arrivalTime - nowNanos > 0 ? arrivalTime : nowNanos) + nanosPerPermit;
+      if (next - nowNanos > burstNanos) {
+        return false;
+      }
+      if (theoreticalArrivalTime.compareAndSet(arrivalTime, next)) {
+        return true;
+      }
+    }
+  }
+
+  public long remaining(long nowNanos) {
+    long backlog = Math.max(theoreticalArrivalTime.get() - nowNanos, 0);
+    return Math.max((burstNanos - backlog) / nanosPerPermit, 0);
+  }
+
+  public long nanosUntilAvailable(long nowNanos) {
+    return Math.max(theoreticalArrivalTime.get() + nanosPerPermit - burstNanos - nowNanos, 0);
+  }
+}
@@ -0,0 +1,25 @@
+-- Generic cell rate algorithm over a single key holding the theoretical arrival time, in
+-- microseconds of the Redis clock so that every replica agrees on "now".
+-- ARGV: microseconds per permit, burst in microseconds, permits requested.
+-- Returns: {permits granted, permits still available, microseconds until the next permit}.
+local interval = tonumber(ARGV[1])
+local burst = tonumber(ARGV[2])
+local requested = tonumber(ARGV[3])
+
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000000 + tonumber(time[2])
+
+local tat = tonumber(redis.call('GET', KEYS[1]) or now)
+if tat < now then
+  tat = now
+end
+
+local available = math.floor((burst - (tat - now)) / interval)
+local granted = math.min(requested, available)
+if granted < 1 then
+  return {0, 0, tat + interval - burst - now}
+end
+
+tat = tat + granted * interval
+redis.call('SET', KEYS[1], string.format('%d', tat), 'PX', math.ceil((tat - now) / 1000))
+return {granted, available - granted, 0}
@@ -0,0 +1,117 @@
+package com.lmoustak.cardcostapi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lmoustak.cardcostapi.dtos.BinTableResponse;
+import com.lmoustak.cardcostapi.dtos.CardCostDto;
+import com.lmoustak.cardcostapi.entities.ClearingCosts;
+import com.lmoustak.cardcostapi.exceptions.BinTableException;
+import com.lmoustak.cardcostapi.services.BinTableAsyncClient;
+import com.lmoustak.cardcostapi.services.CardCostService;
+import com.lmoustak.cardcostapi.services.CardCostServiceImpl;
+import com.lmoustak.cardcostapi.services.ClearingCostsService;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class AsyncCardCostTests {
+
+  private HttpServer binTableStub;
+  private ClearingCostsService clearingCostsService;
+
+  @BeforeEach
+  void setupStubs() throws IOException {
+    binTableStub = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    binTableStub.createContext("/", exchange -> {
+      boolean known = exchange.getRequestURI().getPath().equals("/403244");
+      byte[] body = (known
+          ? "{\"result\":200,\"message\":\"SUCCESS\",\"data\":{\"country\":{\"code\":\"GR\"}}}"
+          : "{\"result\":404,\"message\":\"BIN not found\"}").getBytes(StandardCharsets.UTF_8);
+      exchange.sendResponseHeaders(known ? 200 : 404, body.length);
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(body);
+      }
+    });
+    binTableStub.start();
+
+    var clearingCosts = new ClearingCosts();
+    clearingCosts.setCountry("GR");
+    clearingCosts.setPrice(new BigDecimal("15"));
+    clearingCostsService = mock();
+    when(clearingCostsService.readClearingCostsByCountry(any()))
+        .thenReturn(Optional.of(clearingCosts));
+  }
+
+  @AfterEach
+  void stopStub() {
+    binTableStub.stop(0);
+  }
+
+  private CardCostService cardCostService(BinTableAsyncClient asyncClient) {
+    var binTableService = BinTableServiceBuilder.binTableService()
+        .asyncClient(asyncClient)
+        .build();
+    return new CardCostServiceImpl(clearingCostsService, binTableService);
+  }
+
+  @Test
+  void async_lookups_should_resolve_through_the_non_blocking_client() {
+    var asyncClient = new BinTableAsyncClient(HttpClient.newHttpClient(), new ObjectMapper(),
+        "http://localhost:" + binTableStub.getAddress().getPort(), "key", Duration.ofSeconds(5));
+    CardCostService cardCostService = cardCostService(asyncClient);
+
+    CardCostDto cardCost = cardCostService
+        .findCardCostFromIssuerIdentificationNumberAsync("4032448502837539")
+        .orTimeout(5, TimeUnit.SECONDS)
+        .join();
+    assertEquals(new CardCostDto("GR", new BigDecimal("15")), cardCost);
+
+    CompletionException e = assertThrows(CompletionException.class,
+        () -> cardCostService.findCardCostFromIssuerIdentificationNumberAsync("5555554444444444")
+            .orTimeout(5, TimeUnit.SECONDS)
+            .join());
+    BinTableException cause = assertInstanceOf(BinTableException.class, e.getCause());
+    assertEquals(404, cause.getCode().value());
+  }
+
+  @Test
+  void cancelling_every_caller_should_cancel_the_remote_call() {
+    CompletableFuture<BinTableResponse> remoteCall = new CompletableFuture<>();
+    BinTableAsyncClient asyncClient = mock();
+    when(asyncClient.fetch("403244")).thenReturn(remoteCall);
+    CardCostService cardCostService = cardCostService(asyncClient);
+
+    CompletableFuture<CardCostDto> first =
+        cardCostService.findCardCostFromIssuerIdentificationNumberAsync("4032448502837539");
+    CompletableFuture<CardCostDto> second =
+        cardCostService.findCardCostFromIssuerIdentificationNumberAsync("4032440000000000");
+
+    first.cancel(true);
+    assertFalse(remoteCall.isCancelled());
+    assertFalse(second.isDone());
+
+    second.cancel(true);
+    assertTrue(remoteCall.isCancelled());
+  }
+
+}
@@ -0,0 +1,208 @@
+package com.lmoustak.cardcostapi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.lmoustak.cardcostapi.caching.CacheKeyMigration;
+import com.lmoustak.cardcostapi.dtos.BinTableResponse;
+import com.lmoustak.cardcostapi.dtos.CardCostResult;
+import com.lmoustak.cardcostapi.dtos.Country;
+import com.lmoustak.cardcostapi.dtos.Data;
+import com.lmoustak.cardcostapi.entities.ClearingCosts;
+import com.lmoustak.cardcostapi.services.BinRangeIndexLoader;
+import com.lmoustak.cardcostapi.services.BinTableServiceImpl;
+import com.lmoustak.cardcostapi.services.CardCostServiceImpl;
+import com.lmoustak.cardcostapi.services.CardPlausibilityRules;
+import com.lmoustak.cardcostapi.services.ClearingCostsService;
+import com.lmoustak.cardcostapi.services.LocalFirstBinTableService;
+import com.lmoustak.cardcostapi.services.ResolvedBinStore;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.web.client.RestClient;
+
+public class BinCacheKeyTests {
+
+  private RestClient restClient;
+  private RestClient.RequestHeadersUriSpec<?> uriSpec;
+  private RestClient.ResponseSpec responseSpec;
+  private ConcurrentMapCacheManager cacheManager;
+
+  @BeforeEach
+  void setupStubClient() {
+    restClient = mock();
+
+    uriSpec = mock();
+    doReturn(uriSpec).when(restClient).get();
+
+    RestClient.RequestHeadersSpec<?> headersSpec = mock();
+    doReturn(headersSpec).when(uriSpec).uri(anyString(), anyMap());
+
+    responseSpec = mock();
+    when(headersSpec.retrieve()).thenReturn(responseSpec);
+    when(responseSpec.onStatus(any(), any())).thenReturn(responseSpec);
+
+    cacheManager = new ConcurrentMapCacheManager(BinTableServiceImpl.CACHE_NAME);
+  }
+
+  private void answer(String bin, String country) {
+    var binTableCountry = new Country();
+    binTableCountry.setCode(country);
+    var data = new Data();
+    data.setCountry(binTableCountry);
+    var response = new BinTableResponse();
+    response.setData(data);
+
+    RestClient.RequestHeadersSpec<?> headersSpec = mock();
+    doReturn(headersSpec).when(uriSpec).uri(anyString(), eq(Map.of("bin", bin)));
+    RestClient.ResponseSpec binResponseSpec = mock();
+    when(headersSpec.retrieve()).thenReturn(binResponseSpec);
+    when(binResponseSpec.onStatus(any(), any())).thenReturn(binResponseSpec);
+    when(binResponseSpec.body(BinTableResponse.class)).thenReturn(response);
+  }
+
+  private BinTableServiceImpl binTableService(int binLength) {
+    return BinTableServiceBuilder.binTableService()
+        .restClient(restClient)
+        .binLength(binLength)
+        .cacheManager(cacheManager)
+        .build();
+  }
+
+  @Test
+  void cache_keys_should_be_bin_prefixes_instead_of_card_numbers() {
+    BinTableServiceImpl sixDigits = binTableService(6);
+    assertEquals("403244", sixDigits.cacheKey("4032448502837539"));
+
+    BinTableServiceImpl eightDigits = binTableService(8);
+    assertEquals("40324485", eightDigits.cacheKey("4032448502837539"));
+    assertEquals("403244", eightDigits.cacheKey("4032448"));
+    assertNull(eightDigits.cacheKey(null));
+  }
+
+  @Test
+  void cached_six_digit_prefixes_should_answer_eight_digit_lookups() {
+    cacheManager.getCache(BinTableServiceImpl.CACHE_NAME).put("403244", "gr");
+    BinTableServiceImpl binTableService = binTableService(8);
+
+    assertEquals("gr",
+        binTableService.getCountryFromIssuerIdentificationNumber("4032448502837539"));
+    assertEquals("gr", binTableService
+        .getCountryFromIssuerIdentificationNumberAsync("4032440000000000")
+        .join());
+    verify(responseSpec, never()).body(BinTableResponse.class);
+  }
+
+  @Test
+  void known_countries_should_be_read_from_the_cache_in_one_go() {
+    Cache cache = cacheManager.getCache(BinTableServiceImpl.CACHE_NAME);
+    cache.put("40324485", "gr");
+    cache.put("555555", "us");
+    BinTableServiceImpl binTableService = binTableService(8);
+
+    assertEquals(Map.of("4032448502837539", "gr", "5555550000000000", "us"),
+        binTableService.findKnownCountries(
+            List.of("4032448502837539", "5555550000000000", "4111111111111111", "12")));
+    verify(responseSpec, never()).body(BinTableResponse.class);
+  }
+
+  @Test
+  void cached_eight_digit_prefixes_should_be_checked_before_six_digit_ones() {
+    Cache cache = cacheManager.getCache(BinTableServiceImpl.CACHE_NAME);
+    cache.put("403244", "gr");
+    cache.put("40324485", "us");
+
+    for (int binLength : List.of(6, 8)) {
+      BinTableServiceImpl binTableService = binTableService(binLength);
+      assertEquals("40324485", binTableService.lookupKey("4032448502837539"));
+      assertEquals(Map.of("4032448502837539", "us", "4032449902837539", "gr"),
+          binTableService.findKnownCountries(List.of("4032448502837539", "4032449902837539")));
+    }
+    assertEquals("403244", binTableService(6).lookupKey("4032449902837539"));
+    assertEquals("gr",
+        binTableService(8).getCountryFromIssuerIdentificationNumber("4032449902837539"));
+    verify(responseSpec, never()).body(BinTableResponse.class);
+  }
+
+  @Test
+  void eight_digit_bins_should_not_answer_for_their_six_digit_prefix() throws Exception {
+    answer("40324485", "gr");
+    answer("40324499", "us");
+    var resolvedBinStore = new ResolvedBinStore(null, Duration.ofDays(1), Clock.systemUTC());
+    BinTableServiceImpl remote = BinTableServiceBuilder.binTableService()
+        .restClient(restClient)
+        .binLength(BinTableServiceImpl.LONG_BIN_LENGTH)
+        .resolvedBinStore(resolvedBinStore)
+        .build();
+    var binRangeIndexLoader = new BinRangeIndexLoader("");
+    binRangeIndexLoader.load(new StringReader("40324400,40324484,de"));
+    var binTableService = new LocalFirstBinTableService(binRangeIndexLoader, resolvedBinStore,
+        remote, BinTableServiceImpl.LONG_BIN_LENGTH);
+
+    ClearingCostsService clearingCostsService = mock();
+    when(clearingCostsService.readClearingCostsByCountry(any())).thenAnswer(invocation -> {
+      var clearingCosts = new ClearingCosts();
+      clearingCosts.setCountry(invocation.getArgument(0));
+      clearingCosts.setPrice(new BigDecimal("10"));
+      return Optional.of(clearingCosts);
+    });
+    var cardCostService = new CardCostServiceImpl(clearingCostsService, binTableService,
+        Runnable::run, 100, 8, new CardPlausibilityRules(), BinTableServiceImpl.LONG_BIN_LENGTH);
+
+    List<CardCostResult> results = cardCostService.findCardCostsFromIssuerIdentificationNumbers(
+        List.of("4032448502837539", "4032449902837539", "4032440002837539"));
+    assertEquals(List.of("gr", "us", "de"),
+        results.stream().map(result -> result.cardCost().country()).toList());
+
+    assertEquals("us",
+        binTableService.getCountryFromIssuerIdentificationNumber("4032449912345678"));
+    assertEquals("de",
+        binTableService.getCountryFromIssuerIdentificationNumber("4032440112345678"));
+    assertNull(resolvedBinStore.findStale("4032448502837539"));
+    assertTrue(resolvedBinStore.size() > 0);
+  }
+
+  @Test
+  void legacy_card_number_keys_should_be_migrated_to_bin_prefixes() {
+    Cache cache = cacheManager.getCache(BinTableServiceImpl.CACHE_NAME);
+    cache.put("4032448502837539", "gr");
+    cache.put("555555", "us");
+
+    Cursor<String> cursor = mock();
+    when(cursor.hasNext()).thenReturn(true, true, false);
+    when(cursor.next()).thenReturn("bins::4032448502837539", "bins::555555");
+    StringRedisTemplate redisTemplate = mock();
+    when(redisTemplate.scan(any(ScanOptions.class))).thenReturn(cursor);
+
+    BinTableServiceImpl binTableService = binTableService(6);
+    var migration = new CacheKeyMigration(cache, redisTemplate, "bins::",
+        key -> key.length() > BinTableServiceImpl.LONG_BIN_LENGTH
+            ? binTableService.cacheKey(key) : null);
+
+    assertEquals(1, migration.migrate());
+    assertEquals("gr", cache.get("403244", String.class));
+    verify(redisTemplate).delete(List.of("bins::4032448502837539"));
+  }
+
+}
@@ -0,0 +1,61 @@
+package com.lmoustak.cardcostapi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.lmoustak.cardcostapi.services.BinRangeIndex;
+import java.io.IOException;
+import java.io.StringReader;
+import org.junit.jupiter.api.Test;
+
+public class BinRangeIndexTests {
+
+  private static BinRangeIndex parse(String csv) throws IOException {
+    return BinRangeIndex.parse(new StringReader(csv));
+  }
+
+  @Test
+  void lookup_should_find_country_of_enclosing_range() throws IOException {
+    BinRangeIndex index = parse("""
+        start,end,country
+        510000,519999,US
+        403244,403244,eg
+        400000,400099,gr
+        """);
+
+    assertEquals(3, index.size());
+    assertEquals("gr", index.findCountry(400000));
+    assertEquals("gr", index.findCountry(400050));
+    assertEquals("gr", index.findCountry(400099));
+    assertEquals("eg", index.findCountry(403244));
+    assertEquals("us", index.findCountry(515151));
+  }
+
+  @Test
+  void lookup_outside_any_range_should_return_null() throws IOException {
+    BinRangeIndex index = parse("""
+        400000,400099,gr
+        510000,519999,us
+        """);
+
+    assertNull(index.findCountry(399999));
+    assertNull(index.findCountry(400100));
+    assertNull(index.findCountry(520000));
+    assertNull(BinRangeIndex.empty().findCountry(400000));
+  }
+
+  @Test
+  void overlapping_ranges_should_be_rejected() {
+    assertThrows(IllegalArgumentException.class, () -> parse("""
+        400000,400099,gr
+        400050,400199,de
+        """));
+  }
+
+  @Test
+  void invalid_country_should_be_rejected() {
+    assertThrows(IllegalArgumentException.class, () -> parse("400000,400099,greece"));
+  }
+
+}
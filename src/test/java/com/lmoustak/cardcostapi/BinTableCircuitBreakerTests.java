@@ -0,0 +1,252 @@
+package com.lmoustak.cardcostapi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lmoustak.cardcostapi.dtos.CardCostDto;
+import com.lmoustak.cardcostapi.dtos.CardCostResult;
+import com.lmoustak.cardcostapi.entities.ClearingCosts;
+import com.lmoustak.cardcostapi.exceptions.BinTableException;
+import com.lmoustak.cardcostapi.exceptions.BinTableUnavailableException;
+import com.lmoustak.cardcostapi.services.BinRangeIndexLoader;
+import com.lmoustak.cardcostapi.services.BinTableAsyncClient;
+import com.lmoustak.cardcostapi.services.BinTableService;
+import com.lmoustak.cardcostapi.services.BinTableServiceImpl;
+import com.lmoustak.cardcostapi.services.CardCostServiceImpl;
+import com.lmoustak.cardcostapi.services.ClearingCostsService;
+import com.lmoustak.cardcostapi.services.LocalFirstBinTableService;
+import com.lmoustak.cardcostapi.services.ResolvedBinStore;
+import com.lmoustak.cardcostapi.utils.Bulkhead;
+import com.lmoustak.cardcostapi.utils.CircuitBreaker;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+public class BinTableCircuitBreakerTests {
+
+  private static final Duration OPEN_DURATION = Duration.ofSeconds(30);
+
+  private HttpServer binTableStub;
+  private final AtomicInteger requests = new AtomicInteger();
+  private volatile int status = 200;
+  private volatile long delayMillis;
+  private volatile CountDownLatch gate;
+
+  private final AtomicLong nanoClock = new AtomicLong();
+  private CircuitBreaker circuitBreaker;
+
+  @BeforeEach
+  void setupStub() throws IOException {
+    binTableStub = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    binTableStub.setExecutor(Executors.newCachedThreadPool());
+    binTableStub.createContext("/", exchange -> {
+      requests.incrementAndGet();
+      try {
+        CountDownLatch gate = this.gate;
+        if (gate != null) {
+          gate.await(5, TimeUnit.SECONDS);
+        }
+        Thread.sleep(delayMillis);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+
+      int status = this.status;
+      byte[] body = (status == 200
+          ? "{\"result\":200,\"message\":\"SUCCESS\",\"data\":{\"country\":{\"code\":\"GR\"}}}"
+          : "{\"result\":" + status + ",\"message\":\"Injected fault\"}")
+          .getBytes(StandardCharsets.UTF_8);
+      exchange.sendResponseHeaders(status, body.length);
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(body);
+      }
+    });
+    binTableStub.start();
+
+    circuitBreaker = new CircuitBreaker(4, 4, 0.5, Duration.ofMillis(200), 0.5, OPEN_DURATION, 1,
+        nanoClock::get);
+  }
+
+  @AfterEach
+  void stopStub() {
+    binTableStub.stop(0);
+  }
+
+  private BinTableService binTableService(Bulkhead bulkhead) {
+    var asyncClient = new BinTableAsyncClient(HttpClient.newHttpClient(), new ObjectMapper(),
+        "http://localhost:" + binTableStub.getAddress().getPort(), "key", Duration.ofSeconds(5));
+    return BinTableServiceBuilder.binTableService()
+        .asyncClient(asyncClient)
+        .circuitBreaker(circuitBreaker)
+        .bulkhead(bulkhead)
+        .build();
+  }
+
+  private BinTableService binTableService() {
+    return binTableService(new Bulkhead(32, Duration.ZERO));
+  }
+
+  private static Throwable failureOf(CompletableFuture<?> future) {
+    CompletionException e = assertThrows(CompletionException.class,
+        () -> future.orTimeout(5, TimeUnit.SECONDS).join());
+    return e.getCause();
+  }
+
+  @Test
+  void server_errors_should_open_the_breaker_and_fail_fast() {
+    status = 500;
+    BinTableService binTableService = binTableService();
+
+    for (int i = 0; i < 4; i++) {
+      BinTableException e = assertInstanceOf(BinTableException.class, failureOf(
+          binTableService.getCountryFromIssuerIdentificationNumberAsync("40324" + i + "0000")));
+      assertEquals(500, e.getCode().value());
+    }
+    assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+
+    BinTableUnavailableException e = assertInstanceOf(BinTableUnavailableException.class,
+        failureOf(binTableService.getCountryFromIssuerIdentificationNumberAsync("4032450000")));
+    assertEquals(503, e.getCode().value());
+    assertEquals(4, requests.get());
+  }
+
+  @Test
+  void slow_calls_should_open_the_breaker() {
+    delayMillis = 250;
+    BinTableService binTableService = binTableService();
+
+    for (int i = 0; i < 4; i++) {
+      assertEquals("GR", binTableService
+          .getCountryFromIssuerIdentificationNumberAsync("40324" + i + "0000")
+          .orTimeout(5, TimeUnit.SECONDS)
+          .join());
+    }
+    assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+  }
+
+  @Test
+  void breaker_should_close_after_a_successful_trial_call() {
+    status = 503;
+    BinTableService binTableService = binTableService();
+    for (int i = 0; i < 4; i++) {
+      failureOf(binTableService.getCountryFromIssuerIdentificationNumberAsync("40324" + i + "0"));
+    }
+    assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+
+    status = 200;
+    nanoClock.addAndGet(OPEN_DURATION.toNanos());
+    assertEquals("GR", binTableService
+        .getCountryFromIssuerIdentificationNumberAsync("4032450000")
+        .orTimeout(5, TimeUnit.SECONDS)
+        .join());
+    assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+  }
+
+  @Test
+  void bulkhead_should_reject_calls_beyond_its_capacity() {
+    gate = new CountDownLatch(1);
+    var bulkhead = new Bulkhead(1, Duration.ZERO);
+    BinTableService binTableService = binTableService(bulkhead);
+
+    CompletableFuture<String> first =
+        binTableService.getCountryFromIssuerIdentificationNumberAsync("4032440000");
+    BinTableUnavailableException e = assertInstanceOf(BinTableUnavailableException.class,
+        failureOf(binTableService.getCountryFromIssuerIdentificationNumberAsync("5555550000")));
+    assertEquals(503, e.getCode().value());
+    assertEquals(1, bulkhead.activeCalls());
+
+    gate.countDown();
+    assertEquals("GR", first.orTimeout(5, TimeUnit.SECONDS).join());
+    assertEquals(0, bulkhead.activeCalls());
+  }
+
+  @Test
+  void expired_countries_should_be_served_as_degraded_while_bintable_is_down() {
+    Instant resolvedAt = Instant.parse("2025-01-01T00:00:00Z");
+    Clock clock = mock();
+    when(clock.instant()).thenReturn(resolvedAt);
+    var resolvedBinStore = new ResolvedBinStore(null, Duration.ofDays(1), clock);
+    resolvedBinStore.record(403244, "GR");
+    when(clock.instant()).thenReturn(resolvedAt.plus(Duration.ofDays(2)));
+
+    var clearingCosts = new ClearingCosts();
+    clearingCosts.setCountry("GR");
+    clearingCosts.setPrice(new BigDecimal("15"));
+    ClearingCostsService clearingCostsService = mock();
+    when(clearingCostsService.readClearingCostsByCountry(any()))
+        .thenReturn(Optional.of(clearingCosts));
+
+    status = 502;
+    var localFirstBinTableService = new LocalFirstBinTableService(new BinRangeIndexLoader(""),
+        resolvedBinStore, binTableService(), BinTableServiceImpl.SHORT_BIN_LENGTH);
+    var cardCostService = new CardCostServiceImpl(clearingCostsService,
+        localFirstBinTableService);
+
+    CardCostDto cardCost = cardCostService
+        .findCardCostFromIssuerIdentificationNumberAsync("4032448502837539")
+        .orTimeout(5, TimeUnit.SECONDS)
+        .join();
+    assertEquals("gr", cardCost.country());
+    assertTrue(cardCost.degraded());
+
+    status = 404;
+    assertFalse(assertInstanceOf(BinTableException.class, failureOf(cardCostService
+        .findCardCostFromIssuerIdentificationNumberAsync("5555554444444444"))).isTransient());
+  }
+
+  @Test
+  void stale_countries_should_be_flagged_on_blocking_and_batch_lookups() {
+    var resolvedBinStore = new ResolvedBinStore(null, Duration.ofDays(1), Clock.systemUTC());
+    resolvedBinStore.record(403244, "GR");
+    BinTableService unavailable = issuerIdentificationNumber -> {
+      throw new BinTableUnavailableException(HttpStatus.BAD_GATEWAY, "BINTable is down");
+    };
+
+    var clearingCosts = new ClearingCosts();
+    clearingCosts.setCountry("GR");
+    clearingCosts.setPrice(new BigDecimal("15"));
+    ClearingCostsService clearingCostsService = mock();
+    when(clearingCostsService.readClearingCostsByCountry(any()))
+        .thenReturn(Optional.of(clearingCosts));
+
+    var cardCostService = new CardCostServiceImpl(clearingCostsService,
+        new LocalFirstBinTableService(new BinRangeIndexLoader(""), resolvedBinStore,
+            unavailable, BinTableServiceImpl.SHORT_BIN_LENGTH));
+
+    assertTrue(cardCostService.findCardCostFromIssuerIdentificationNumber("4032448502837539")
+        .degraded());
+
+    List<CardCostResult> results = cardCostService.findCardCostsFromIssuerIdentificationNumbers(
+        List.of("4032448502837539", "5555554444444444"));
+    assertEquals(new CardCostDto("gr", new BigDecimal("15"), true), results.get(0).cardCost());
+    assertInstanceOf(BinTableUnavailableException.class, results.get(1).error());
+  }
+
+}
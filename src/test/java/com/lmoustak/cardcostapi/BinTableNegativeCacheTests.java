@@ -0,0 +1,106 @@
+package com.lmoustak.cardcostapi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.lmoustak.cardcostapi.dtos.BinTableResponse;
+import com.lmoustak.cardcostapi.dtos.Data;
+import com.lmoustak.cardcostapi.exceptions.BinTableException;
+import com.lmoustak.cardcostapi.services.BinTableService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.RestClient;
+
+public class BinTableNegativeCacheTests {
+
+  private RestClient.ResponseSpec responseSpec;
+  private MeterRegistry meterRegistry;
+  private BinTableService binTableService;
+
+  @BeforeEach
+  void setupStubClient() {
+    RestClient restClient = mock();
+
+    RestClient.RequestHeadersUriSpec<?> uriSpec = mock();
+    doReturn(uriSpec).when(restClient).get();
+
+    RestClient.RequestHeadersSpec<?> headersSpec = mock();
+    doReturn(headersSpec).when(uriSpec).uri(anyString(), anyMap());
+
+    responseSpec = mock();
+    when(headersSpec.retrieve()).thenReturn(responseSpec);
+    when(responseSpec.onStatus(any(), any())).thenReturn(responseSpec);
+
+    meterRegistry = new SimpleMeterRegistry();
+    binTableService = BinTableServiceBuilder.binTableService()
+        .restClient(restClient)
+        .meterRegistry(meterRegistry)
+        .build();
+  }
+
+  private double negativeCacheHits() {
+    return meterRegistry.get("cache.gets").tag("cache", "binsNegative").tag("result", "hit")
+        .functionCounter().count();
+  }
+
+  @Test
+  void unknown_bins_should_be_answered_from_the_negative_cache() {
+    when(responseSpec.body(BinTableResponse.class))
+        .thenThrow(new BinTableException(HttpStatus.NOT_FOUND, "BIN not found"));
+
+    for (int i = 0; i < 3; i++) {
+      BinTableException e = assertThrows(BinTableException.class,
+          () -> binTableService.getCountryFromIssuerIdentificationNumber("9999990000000000"));
+      assertEquals(404, e.getCode().value());
+      assertEquals("BIN not found", e.getMessage());
+    }
+
+    verify(responseSpec, times(1)).body(BinTableResponse.class);
+    assertEquals(2, negativeCacheHits());
+    assertEquals(1, meterRegistry.get("bintable.calls").tag("status", "404").timer().count());
+  }
+
+  @Test
+  void missing_country_data_should_be_a_cached_not_found_error() {
+    var response = new BinTableResponse();
+    response.setData(new Data());
+    when(responseSpec.body(BinTableResponse.class)).thenReturn(response);
+
+    for (int i = 0; i < 2; i++) {
+      BinTableException e = assertThrows(BinTableException.class,
+          () -> binTableService.getCountryFromIssuerIdentificationNumber("9999990000000000"));
+      assertEquals(404, e.getCode().value());
+    }
+
+    verify(responseSpec, times(1)).body(BinTableResponse.class);
+  }
+
+  @Test
+  void quota_and_auth_errors_should_not_be_cached() {
+    when(responseSpec.body(BinTableResponse.class))
+        .thenThrow(new BinTableException(HttpStatus.UNAUTHORIZED,
+            "Your balance is exhausted,or package expired"))
+        .thenThrow(new BinTableException(HttpStatus.FORBIDDEN, "Invalid API Key"))
+        .thenThrow(new BinTableException(HttpStatus.TOO_MANY_REQUESTS, "Too many requests"));
+
+    for (int i = 0; i < 3; i++) {
+      assertThrows(BinTableException.class,
+          () -> binTableService.getCountryFromIssuerIdentificationNumber("4032448502837539"));
+    }
+
+    verify(responseSpec, times(3)).body(BinTableResponse.class);
+    assertEquals(0, negativeCacheHits());
+  }
+
+}
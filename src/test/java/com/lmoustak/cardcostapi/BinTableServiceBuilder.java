@@ -0,0 +1,93 @@
+package com.lmoustak.cardcostapi;
+
+import static org.mockito.Mockito.mock;
+
+import com.lmoustak.cardcostapi.services.BinTableAsyncClient;
+import com.lmoustak.cardcostapi.services.BinTableServiceImpl;
+import com.lmoustak.cardcostapi.services.CardPlausibilityRules;
+import com.lmoustak.cardcostapi.services.ResolvedBinStore;
+import com.lmoustak.cardcostapi.utils.Bulkhead;
+import com.lmoustak.cardcostapi.utils.CircuitBreaker;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import org.springframework.cache.CacheManager;
+import org.springframework.web.client.RestClient;
+
+// Builds a BinTableServiceImpl with mock clients and permissive defaults, so that tests only
+// set what they exercise
+public class BinTableServiceBuilder {
+
+  private RestClient restClient = mock(RestClient.class);
+  private BinTableAsyncClient asyncClient = mock(BinTableAsyncClient.class);
+  private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private Duration negativeTimeToLive = Duration.ofMinutes(1);
+  private long negativeMaximumSize = 1000;
+  private CircuitBreaker circuitBreaker = CircuitBreaker.withDefaults();
+  private Bulkhead bulkhead = new Bulkhead(1000, Duration.ZERO);
+  private int binLength = BinTableServiceImpl.SHORT_BIN_LENGTH;
+  private CacheManager cacheManager;
+  private CardPlausibilityRules plausibilityRules = new CardPlausibilityRules();
+  private ResolvedBinStore resolvedBinStore;
+
+  public static BinTableServiceBuilder binTableService() {
+    return new BinTableServiceBuilder();
+  }
+
+  public BinTableServiceBuilder restClient(RestClient restClient) {
+    this.restClient = restClient;
+    return this;
+  }
+
+  public BinTableServiceBuilder asyncClient(BinTableAsyncClient asyncClient) {
+    this.asyncClient = asyncClient;
+    return this;
+  }
+
+  public BinTableServiceBuilder meterRegistry(MeterRegistry meterRegistry) {
+    this.meterRegistry = meterRegistry;
+    return this;
+  }
+
+  public BinTableServiceBuilder negativeCache(Duration timeToLive, long maximumSize) {
+    this.negativeTimeToLive = timeToLive;
+    this.negativeMaximumSize = maximumSize;
+    return this;
+  }
+
+  public BinTableServiceBuilder circuitBreaker(CircuitBreaker circuitBreaker) {
+    this.circuitBreaker = circuitBreaker;
+    return this;
+  }
+
+  public BinTableServiceBuilder bulkhead(Bulkhead bulkhead) {
+    this.bulkhead = bulkhead;
+    return this;
+  }
+
+  public BinTableServiceBuilder binLength(int binLength) {
+    this.binLength = binLength;
+    return this;
+  }
+
+  public BinTableServiceBuilder cacheManager(CacheManager cacheManager) {
+    this.cacheManager = cacheManager;
+    return this;
+  }
+
+  public BinTableServiceBuilder plausibilityRules(CardPlausibilityRules plausibilityRules) {
+    this.plausibilityRules = plausibilityRules;
+    return this;
+  }
+
+  public BinTableServiceBuilder resolvedBinStore(ResolvedBinStore resolvedBinStore) {
+    this.resolvedBinStore = resolvedBinStore;
+    return this;
+  }
+
+  public BinTableServiceImpl build() {
+    return new BinTableServiceImpl(restClient, asyncClient, meterRegistry, negativeTimeToLive,
+        negativeMaximumSize, circuitBreaker, bulkhead, binLength, cacheManager, plausibilityRules,
+        resolvedBinStore);
+  }
+}
@@ -0,0 +1,176 @@
+package com.lmoustak.cardcostapi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.lmoustak.cardcostapi.dtos.BinTableResponse;
+import com.lmoustak.cardcostapi.dtos.Country;
+import com.lmoustak.cardcostapi.dtos.Data;
+import com.lmoustak.cardcostapi.exceptions.BinTableException;
+import com.lmoustak.cardcostapi.services.BinTableService;
+import com.lmoustak.cardcostapi.utils.SingleFlight;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.web.client.RestClient;
+
+public class BinTableSingleFlightTests {
+
+  private static final int CALLERS = 2000;
+  private static final String BIN = "403244";
+
+  private final AtomicInteger remoteCalls = new AtomicInteger();
+  private final CountDownLatch release = new CountDownLatch(1);
+
+  private RestClient.ResponseSpec responseSpec;
+  private MeterRegistry meterRegistry;
+  private BinTableService binTableService;
+  private ExecutorService executor;
+
+  @BeforeEach
+  void setupStubClient() {
+    RestClient restClient = mock();
+
+    RestClient.RequestHeadersUriSpec<?> uriSpec = mock();
+    doReturn(uriSpec).when(restClient).get();
+
+    RestClient.RequestHeadersSpec<?> headersSpec = mock();
+    doReturn(headersSpec).when(uriSpec).uri("/{bin}?api_key={apiKey}", Map.of("bin", BIN));
+
+    responseSpec = mock();
+    when(headersSpec.retrieve()).thenReturn(responseSpec);
+    when(responseSpec.onStatus(any(), any())).thenReturn(responseSpec);
+
+    meterRegistry = new SimpleMeterRegistry();
+    binTableService = BinTableServiceBuilder.binTableService()
+        .restClient(restClient)
+        .meterRegistry(meterRegistry)
+        .build();
+    executor = Executors.newFixedThreadPool(CALLERS);
+  }
+
+  @AfterEach
+  void shutdownExecutor() {
+    executor.shutdownNow();
+  }
+
+  private double coalescedCount() {
+    return meterRegistry.get("bintable.lookups.coalesced").functionCounter().count();
+  }
+
+  private List<Future<String>> fireLookupsAndRelease() throws InterruptedException {
+    List<Future<String>> futures = new ArrayList<>(CALLERS);
+    for (int i = 0; i < CALLERS; i++) {
+      String pan = BIN + "%010d".formatted(i);
+      futures.add(executor.submit(
+          () -> binTableService.getCountryFromIssuerIdentificationNumber(pan)));
+    }
+
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+    while (coalescedCount() < CALLERS - 1 && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+    release.countDown();
+
+    return futures;
+  }
+
+  @Test
+  void concurrent_lookups_for_the_same_bin_should_call_bintable_once() throws Exception {
+    var country = new Country();
+    country.setCode("eg");
+    var data = new Data();
+    data.setCountry(country);
+    var binTableResponse = new BinTableResponse();
+    binTableResponse.setResult(200);
+    binTableResponse.setData(data);
+
+    when(responseSpec.body(BinTableResponse.class)).thenAnswer(invocation -> {
+      remoteCalls.incrementAndGet();
+      assertTrue(release.await(30, TimeUnit.SECONDS));
+      return binTableResponse;
+    });
+
+    for (Future<String> future : fireLookupsAndRelease()) {
+      assertEquals("eg", future.get(30, TimeUnit.SECONDS));
+    }
+
+    assertEquals(1, remoteCalls.get());
+    assertEquals(CALLERS - 1, coalescedCount());
+    assertEquals(1, meterRegistry.get("bintable.lookups.executed").functionCounter().count());
+  }
+
+  @Test
+  void concurrent_lookups_for_the_same_bin_should_share_the_bintable_error() throws Exception {
+    var error = new BinTableException(HttpStatusCode.valueOf(401),
+        "Your balance is exhausted,or package expired");
+
+    when(responseSpec.body(BinTableResponse.class)).thenAnswer(invocation -> {
+      remoteCalls.incrementAndGet();
+      assertTrue(release.await(30, TimeUnit.SECONDS));
+      throw error;
+    });
+
+    for (Future<String> future : fireLookupsAndRelease()) {
+      Exception e = assertThrows(Exception.class, () -> future.get(30, TimeUnit.SECONDS));
+      assertSame(error, e.getCause());
+    }
+
+    assertEquals(1, remoteCalls.get());
+  }
+
+  @Test
+  void flights_should_be_abandoned_once_blocking_and_async_callers_all_left() throws Exception {
+    var singleFlight = new SingleFlight<String, String>();
+    var source = new CompletableFuture<String>();
+    CompletableFuture<String> asyncCaller = singleFlight.executeAsync(BIN, () -> source);
+
+    var blockingError = new AtomicReference<Throwable>();
+    var blockingCaller = new Thread(() -> {
+      try {
+        singleFlight.execute(BIN, () -> "never called");
+      } catch (Throwable t) {
+        blockingError.set(t);
+      }
+    });
+    blockingCaller.start();
+    while (blockingCaller.getState() != Thread.State.WAITING) {
+      Thread.sleep(1);
+    }
+
+    asyncCaller.cancel(true);
+    assertFalse(source.isCancelled());
+    assertEquals(1, singleFlight.inFlightCount());
+
+    blockingCaller.interrupt();
+    blockingCaller.join(TimeUnit.SECONDS.toMillis(30));
+    assertInstanceOf(InterruptedException.class,
+        assertInstanceOf(CompletionException.class, blockingError.get()).getCause());
+    assertTrue(source.isCancelled());
+    assertEquals(0, singleFlight.inFlightCount());
+  }
+
+}
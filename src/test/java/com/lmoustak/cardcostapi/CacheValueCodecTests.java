@@ -0,0 +1,73 @@
+package com.lmoustak.cardcostapi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.lmoustak.cardcostapi.caching.CacheValueCodec;
+import com.lmoustak.cardcostapi.caching.RefreshAheadCache;
+import com.lmoustak.cardcostapi.entities.ClearingCosts;
+import java.math.BigDecimal;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+public class CacheValueCodecTests {
+
+  private final CacheValueCodec codec = new CacheValueCodec();
+
+  private static ClearingCosts clearingCosts(Long id, String country, String price) {
+    var clearingCosts = new ClearingCosts();
+    clearingCosts.setId(id);
+    clearingCosts.setCountry(country);
+    clearingCosts.setPrice(price == null ? null : new BigDecimal(price));
+    return clearingCosts;
+  }
+
+  private static ClearingCosts clearingCosts(Long id, String country, String price,
+      long version) {
+    ClearingCosts clearingCosts = clearingCosts(id, country, price);
+    clearingCosts.setVersion(version);
+    return clearingCosts;
+  }
+
+  private Object roundTrip(Object value) {
+    return codec.deserialize(codec.serialize(value));
+  }
+
+  @Test
+  void cached_values_should_survive_a_round_trip() {
+    for (Object value : List.of("gr", "GR", "Gr", "unknown",
+        new RefreshAheadCache.Entry("us", 1_000, 61_000),
+        clearingCosts(1L, "gr", "15.50"),
+        clearingCosts(1L, "gr", "15.50", 3),
+        clearingCosts(null, null, null),
+        clearingCosts(2L, "us", "123456789012345678901234567890.01"),
+        List.of("not", "natively", "supported"))) {
+      assertEquals(value, roundTrip(value));
+    }
+  }
+
+  @Test
+  void common_values_should_be_encoded_compactly() {
+    assertEquals(3, codec.serialize("gr").length);
+    assertEquals(16, codec.serialize(new RefreshAheadCache.Entry("GR", 1_000, 61_000)).length);
+    assertEquals(21, codec.serialize(clearingCosts(1L, "gr", "15.50")).length);
+    assertEquals(29, codec.serialize(clearingCosts(1L, "gr", "15.50", 3)).length);
+  }
+
+  @Test
+  void values_written_with_jdk_serialization_should_still_be_read() {
+    byte[] legacy = new JdkSerializationRedisSerializer()
+        .serialize(clearingCosts(1L, "gr", "15.50"));
+    assertEquals(clearingCosts(1L, "gr", "15.50"), codec.deserialize(legacy));
+  }
+
+  @Test
+  void unknown_format_versions_should_be_rejected() {
+    byte[] bytes = codec.serialize("gr");
+    bytes[0] = (byte) (0x20 | bytes[0] & 0xF);
+    assertThrows(SerializationException.class, () -> codec.deserialize(bytes));
+  }
+
+}
@@ -7,16 +7,18 @@ import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.lmoustak.cardcostapi.dtos.BinTableResponse;
 import com.lmoustak.cardcostapi.dtos.CardCostDto;
+import com.lmoustak.cardcostapi.dtos.CardCostResult;
 import com.lmoustak.cardcostapi.dtos.Country;
 import com.lmoustak.cardcostapi.dtos.Data;
 import com.lmoustak.cardcostapi.entities.ClearingCosts;
 import com.lmoustak.cardcostapi.exceptions.BinTableException;
 import com.lmoustak.cardcostapi.services.BinTableService;
-import com.lmoustak.cardcostapi.services.BinTableServiceImpl;
 import com.lmoustak.cardcostapi.services.CardCostService;
 import com.lmoustak.cardcostapi.services.CardCostServiceImpl;
 import com.lmoustak.cardcostapi.services.ClearingCostsService;
@@ -89,7 +91,9 @@ public class CardCostServiceTests {
   @BeforeEach
   void setupMocks() {
     restClient = mock();
-    BinTableService binTableService = new BinTableServiceImpl(restClient);
+    BinTableService binTableService = BinTableServiceBuilder.binTableService()
+        .restClient(restClient)
+        .build();
     clearingCostsService = mock();
     cardCostService = new CardCostServiceImpl(clearingCostsService, binTableService);
   }
@@ -191,4 +195,49 @@ public class CardCostServiceTests {
 
   }
 
+  @Test
+  void batch_card_costs_should_resolve_each_bin_once_and_keep_input_order() {
+    final String countryCode = "eg";
+    final BigDecimal price = new BigDecimal("6.80");
+    final String bin = "403244";
+
+    var binTableResponse = new BinTableResponse();
+    binTableResponse.setResult(200);
+    binTableResponse.setMessage("SUCCESS");
+    var data = new Data();
+    var country = new Country();
+    country.setCode(countryCode);
+    data.setCountry(country);
+    binTableResponse.setData(data);
+
+    RestClient.RequestHeadersUriSpec<?> uriSpec = mock();
+    doReturn(uriSpec).when(restClient).get();
+
+    RestClient.RequestHeadersSpec<?> headersSpec = mock();
+    doReturn(headersSpec).when(uriSpec).uri("/{bin}?api_key={apiKey}", Map.of("bin", bin));
+
+    RestClient.ResponseSpec responseSpec = mock();
+    when(headersSpec.retrieve()).thenReturn(responseSpec);
+
+    when(responseSpec.onStatus(any(), any())).thenReturn(responseSpec);
+    when(responseSpec.body(BinTableResponse.class)).thenReturn(binTableResponse);
+
+    var clearingCost = new ClearingCosts();
+    clearingCost.setId(56L);
+    clearingCost.setCountry(countryCode);
+    clearingCost.setPrice(price);
+    when(clearingCostsService.readClearingCostsByCountry(countryCode))
+        .thenReturn(Optional.of(clearingCost));
+
+    List<CardCostResult> results = cardCostService.findCardCostsFromIssuerIdentificationNumbers(
+        List.of("4032448502837539", "40324", "4032441111111111"));
+
+    assertEquals(3, results.size());
+    assertEquals(new CardCostDto(countryCode, price), results.get(0).cardCost());
+    assertEquals(IllegalArgumentException.class, results.get(1).error().getClass());
+    assertEquals(new CardCostDto(countryCode, price), results.get(2).cardCost());
+    verify(restClient, times(1)).get();
+    verify(clearingCostsService, times(1)).readClearingCostsByCountry(countryCode);
+  }
+
 }
@@ -0,0 +1,200 @@
+package com.lmoustak.cardcostapi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import com.lmoustak.cardcostapi.dtos.CardCostResult;
+import com.lmoustak.cardcostapi.entities.ClearingCosts;
+import com.lmoustak.cardcostapi.services.BinTableService;
+import com.lmoustak.cardcostapi.services.BinTableServiceImpl;
+import com.lmoustak.cardcostapi.services.CardCostService;
+import com.lmoustak.cardcostapi.services.CardCostServiceImpl;
+import com.lmoustak.cardcostapi.services.CardPlausibilityRules;
+import com.lmoustak.cardcostapi.services.ClearingCostsService;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+public class CardCostStreamingTests {
+
+  private static final int LINES = 2_000_000;
+  private static final int MAX_IN_FLIGHT = 64;
+
+  private ExecutorService executor;
+  private ClearingCostsService clearingCostsService;
+  private CardCostService cardCostService;
+
+  @BeforeEach
+  void setupStubs() {
+    BinTableService binTableService = issuerIdentificationNumber ->
+        issuerIdentificationNumber.charAt(0) == '5' ? "us" : "gr";
+
+    var clearingCosts = new ClearingCosts();
+    clearingCosts.setId(1L);
+    clearingCosts.setCountry("gr");
+    clearingCosts.setPrice(new BigDecimal("3"));
+    clearingCostsService = mock(withSettings().stubOnly());
+    when(clearingCostsService.readClearingCostsByCountry(any()))
+        .thenReturn(Optional.of(clearingCosts));
+
+    executor = Executors.newFixedThreadPool(8);
+    cardCostService = new CardCostServiceImpl(clearingCostsService, binTableService, executor,
+        1000, MAX_IN_FLIGHT);
+  }
+
+  @AfterEach
+  void shutdownExecutor() {
+    executor.shutdownNow();
+  }
+
+  private static Iterator<String> cardNumbers(int count) {
+    return new Iterator<>() {
+      private int next;
+
+      @Override
+      public boolean hasNext() {
+        return next < count;
+      }
+
+      @Override
+      public String next() {
+        int i = next++;
+        return i % 1000 == 999 ? "not-a-card" : (i % 2 == 0 ? "4" : "5") + "%015d".formatted(i);
+      }
+    };
+  }
+
+  private static long usedHeapAfterGc(MemoryMXBean memoryMXBean) {
+    System.gc();
+    return memoryMXBean.getHeapMemoryUsage().getUsed();
+  }
+
+  @Test
+  void streaming_should_keep_input_order_and_report_errors_inline() {
+    List<CardCostResult> results = new ArrayList<>();
+
+    cardCostService.streamCardCostsFromIssuerIdentificationNumbers(cardNumbers(2000),
+        results::add, () -> {
+        });
+
+    assertEquals(2000, results.size());
+    assertEquals("gr", results.get(0).cardCost().country());
+    assertEquals("us", results.get(1).cardCost().country());
+    assertNull(results.get(998).error());
+    assertEquals(IllegalArgumentException.class, results.get(999).error().getClass());
+  }
+
+  @Test
+  void streaming_should_check_the_plausibility_rules_once_per_line() {
+    BinTableService binTableService = issuerIdentificationNumber -> "gr";
+    CardPlausibilityRules plausibilityRules = spy(new CardPlausibilityRules());
+    var service = new CardCostServiceImpl(clearingCostsService, binTableService, Runnable::run,
+        1000, MAX_IN_FLIGHT, plausibilityRules, BinTableServiceImpl.SHORT_BIN_LENGTH);
+
+    List<CardCostResult> results = new ArrayList<>();
+    service.streamCardCostsFromIssuerIdentificationNumbers(cardNumbers(100), results::add, () -> {
+    });
+
+    assertEquals(100, results.size());
+    verify(plausibilityRules, times(100)).findViolation(any());
+  }
+
+  @Test
+  void streaming_should_not_submit_more_than_max_in_flight_lookups() throws Exception {
+    var release = new CountDownLatch(1);
+    var blockedLookups = new AtomicInteger();
+    BinTableService blockingBinTableService = issuerIdentificationNumber -> {
+      blockedLookups.incrementAndGet();
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return "gr";
+    };
+
+    // Twice as many threads as lookups in flight, so only the service can hold lookups back
+    ExecutorService lookupExecutor = Executors.newFixedThreadPool(2 * MAX_IN_FLIGHT);
+    var submitted = new AtomicInteger();
+    var consumed = new AtomicInteger();
+    var maxOutstanding = new AtomicInteger();
+    Executor countingExecutor = task -> {
+      maxOutstanding.accumulateAndGet(submitted.incrementAndGet() - consumed.get(), Math::max);
+      lookupExecutor.execute(task);
+    };
+    CardCostService blockingCardCostService = new CardCostServiceImpl(clearingCostsService,
+        blockingBinTableService, countingExecutor, 1000, MAX_IN_FLIGHT);
+
+    var streaming = new Thread(
+        () -> blockingCardCostService.streamCardCostsFromIssuerIdentificationNumbers(
+            cardNumbers(2000), result -> consumed.incrementAndGet(), () -> {
+            }));
+    try {
+      streaming.start();
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+      while (blockedLookups.get() < MAX_IN_FLIGHT && System.nanoTime() < deadline) {
+        Thread.sleep(10);
+      }
+      Thread.sleep(200);
+
+      assertEquals(MAX_IN_FLIGHT, blockedLookups.get());
+      assertEquals(MAX_IN_FLIGHT, submitted.get());
+      assertEquals(0, consumed.get());
+
+      release.countDown();
+      streaming.join(TimeUnit.SECONDS.toMillis(10));
+    } finally {
+      release.countDown();
+      lookupExecutor.shutdownNow();
+    }
+
+    assertEquals(2000, consumed.get());
+    assertEquals(MAX_IN_FLIGHT, maxOutstanding.get());
+  }
+
+  @Test
+  @Tag("slow")
+  void streaming_millions_of_lines_should_keep_heap_flat() {
+    MemoryMXBean memoryMXBean = ManagementFactory.getMemoryMXBean();
+    AtomicInteger count = new AtomicInteger();
+    List<Long> heapSamples = new ArrayList<>();
+
+    cardCostService.streamCardCostsFromIssuerIdentificationNumbers(cardNumbers(LINES),
+        result -> {
+          if (count.incrementAndGet() % 500_000 == 0) {
+            heapSamples.add(usedHeapAfterGc(memoryMXBean));
+          }
+        }, () -> {
+        });
+
+    assertEquals(LINES, count.get());
+
+    long baseline = heapSamples.get(0);
+    long peak = heapSamples.stream().mapToLong(Long::longValue).max().orElseThrow();
+    assertTrue(peak - baseline < 32 * 1024 * 1024,
+        "Heap grew by %d bytes while streaming".formatted(peak - baseline));
+  }
+
+}
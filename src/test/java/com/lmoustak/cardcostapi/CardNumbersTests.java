@@ -0,0 +1,87 @@
+package com.lmoustak.cardcostapi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.lmoustak.cardcostapi.controllers.requests.CardCostRequest;
+import com.lmoustak.cardcostapi.utils.CardNumbers;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import jakarta.validation.ValidatorFactory;
+import java.util.List;
+import java.util.regex.Pattern;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class CardNumbersTests {
+
+  private static final Pattern CARD_NUMBER_PATTERN = Pattern.compile("[0-9]{8,19}");
+
+  private static final List<String> CARD_NUMBERS = List.of("", "4032448", "40324485",
+      "4032448502837539", "4032448502837539123", "40324485028375391234", "4032-4485-0283",
+      " 40324485", "40324485 ", "4032448502837539\n", "٤٠٣٢٤٤٨٥",
+      "4032448５02837539", "abcdefgh");
+
+  private ValidatorFactory validatorFactory;
+  private Validator validator;
+
+  @BeforeEach
+  void setupValidator() {
+    validatorFactory = Validation.buildDefaultValidatorFactory();
+    validator = validatorFactory.getValidator();
+  }
+
+  @AfterEach
+  void closeValidator() {
+    validatorFactory.close();
+  }
+
+  private List<String> violations(String cardNumber) {
+    var request = new CardCostRequest();
+    request.setCard_number(cardNumber);
+    return validator.validate(request).stream()
+        .map(ConstraintViolation::getMessage)
+        .toList();
+  }
+
+  @Test
+  void validation_should_match_the_card_number_pattern() {
+    for (String cardNumber : CARD_NUMBERS) {
+      assertEquals(CARD_NUMBER_PATTERN.matcher(cardNumber).matches(),
+          CardNumbers.isValid(cardNumber), cardNumber);
+    }
+  }
+
+  @Test
+  void validation_errors_should_be_unchanged() {
+    assertEquals(List.of(), violations("4032448502837539"));
+    assertEquals(List.of("`card_number` should not be null"), violations(null));
+    assertEquals(List.of("`card_number` should contain 8-19 numeric digits"),
+        violations("4032-4485-0283"));
+    assertEquals(List.of("`card_number` should contain 8-19 numeric digits"), violations(""));
+  }
+
+  @Test
+  void bins_should_be_packed_from_leading_digits() {
+    assertEquals(403244, CardNumbers.packBin("4032448502837539", 6));
+    assertEquals(40324485, CardNumbers.packBin("4032448502837539", 8));
+    assertEquals(12345, CardNumbers.packBin("01234567", 6));
+    assertEquals(CardNumbers.NOT_A_BIN, CardNumbers.packBin("40324", 6));
+    assertEquals(CardNumbers.NOT_A_BIN, CardNumbers.packBin("4032-4485", 6));
+    assertEquals(CardNumbers.NOT_A_BIN, CardNumbers.packBin(null, 6));
+  }
+
+  @Test
+  void luhn_check_should_accept_only_matching_check_digits() {
+    assertTrue(CardNumbers.passesLuhnCheck("4111111111111111"));
+    assertTrue(CardNumbers.passesLuhnCheck("4032440000000002"));
+    assertTrue(CardNumbers.passesLuhnCheck("378282246310005"));
+    assertFalse(CardNumbers.passesLuhnCheck("4111111111111112"));
+    assertFalse(CardNumbers.passesLuhnCheck("4032448502837539"));
+    assertFalse(CardNumbers.passesLuhnCheck("4111-1111-1111-1111"));
+  }
+
+}
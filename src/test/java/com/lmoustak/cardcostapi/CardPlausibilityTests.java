@@ -0,0 +1,122 @@
+package com.lmoustak.cardcostapi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.lmoustak.cardcostapi.dtos.BinTableResponse;
+import com.lmoustak.cardcostapi.dtos.Card;
+import com.lmoustak.cardcostapi.dtos.CardCostDto;
+import com.lmoustak.cardcostapi.dtos.Country;
+import com.lmoustak.cardcostapi.dtos.Data;
+import com.lmoustak.cardcostapi.entities.ClearingCosts;
+import com.lmoustak.cardcostapi.services.BinTableServiceImpl;
+import com.lmoustak.cardcostapi.services.CardCostService;
+import com.lmoustak.cardcostapi.services.CardCostServiceImpl;
+import com.lmoustak.cardcostapi.services.CardPlausibilityRules;
+import com.lmoustak.cardcostapi.services.ClearingCostsService;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletionException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.RestClient;
+
+public class CardPlausibilityTests {
+
+  private RestClient.ResponseSpec responseSpec;
+  private CardPlausibilityRules plausibilityRules;
+  private CardCostService cardCostService;
+
+  @BeforeEach
+  void setupServices() {
+    RestClient restClient = mock();
+    RestClient.RequestHeadersUriSpec<?> uriSpec = mock();
+    doReturn(uriSpec).when(restClient).get();
+    RestClient.RequestHeadersSpec<?> headersSpec = mock();
+    doReturn(headersSpec).when(uriSpec).uri(anyString(), anyMap());
+    responseSpec = mock();
+    when(headersSpec.retrieve()).thenReturn(responseSpec);
+    when(responseSpec.onStatus(any(), any())).thenReturn(responseSpec);
+
+    var clearingCosts = new ClearingCosts();
+    clearingCosts.setCountry("gr");
+    clearingCosts.setPrice(new BigDecimal("3"));
+    ClearingCostsService clearingCostsService = mock();
+    when(clearingCostsService.readClearingCostsByCountry("gr"))
+        .thenReturn(Optional.of(clearingCosts));
+
+    plausibilityRules = new CardPlausibilityRules();
+    var binTableService = BinTableServiceBuilder.binTableService()
+        .restClient(restClient)
+        .plausibilityRules(plausibilityRules)
+        .build();
+    cardCostService = new CardCostServiceImpl(clearingCostsService, binTableService,
+        Runnable::run, 100, 8, plausibilityRules,
+        BinTableServiceImpl.SHORT_BIN_LENGTH);
+  }
+
+  private static BinTableResponse response(Integer length, Integer checkLuhn) {
+    var card = new Card();
+    card.setLength(length);
+    card.setCheckLuhn(checkLuhn);
+    var country = new Country();
+    country.setCode("gr");
+    var data = new Data();
+    data.setCard(card);
+    data.setCountry(country);
+    var response = new BinTableResponse();
+    response.setData(data);
+    return response;
+  }
+
+  @Test
+  void implausible_cards_should_be_rejected_without_calling_bintable() {
+    when(responseSpec.body(BinTableResponse.class)).thenReturn(response(16, 1));
+    assertEquals(new CardCostDto("gr", new BigDecimal("3")),
+        cardCostService.findCardCostFromIssuerIdentificationNumber("4032440000000002"));
+
+    var luhnFailure = assertThrows(IllegalArgumentException.class,
+        () -> cardCostService.findCardCostFromIssuerIdentificationNumber("4032440000000000"));
+    assertEquals("`card_number` fails the Luhn check", luhnFailure.getMessage());
+
+    var lengthFailure = assertThrows(CompletionException.class,
+        () -> cardCostService.findCardCostFromIssuerIdentificationNumberAsync("403244000000002")
+            .join());
+    assertEquals("`card_number` should be 16 digits long for BIN 403244",
+        lengthFailure.getCause().getMessage());
+
+    assertEquals("`card_number` fails the Luhn check", cardCostService
+        .findCardCostsFromIssuerIdentificationNumbers(List.of("4032440000000000"))
+        .get(0).error().getMessage());
+    verify(responseSpec, times(1)).body(BinTableResponse.class);
+  }
+
+  @Test
+  void cards_should_only_be_checked_against_rules_bintable_reported() {
+    plausibilityRules.learn("403244", response(null, 0).getData().getCard());
+    assertNull(plausibilityRules.findViolation("4032440000000000"));
+    assertNull(plausibilityRules.findViolation("555555000000000"));
+  }
+
+  @Test
+  void conflicting_rules_under_the_same_six_digits_should_not_be_enforced() {
+    plausibilityRules.learn("40324410", response(16, 1).getData().getCard());
+    assertEquals("`card_number` should be 16 digits long for BIN 403244",
+        plausibilityRules.findViolation("403244100000000"));
+
+    plausibilityRules.learn("40324420", response(19, 1).getData().getCard());
+    assertNull(plausibilityRules.findViolation("403244100000000"));
+    assertNull(plausibilityRules.findViolation("4032440000000000"));
+  }
+
+}
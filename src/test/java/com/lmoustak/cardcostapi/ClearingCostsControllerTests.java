@@ -0,0 +1,336 @@
+package com.lmoustak.cardcostapi;
+
+import static org.hamcrest.Matchers.matchesPattern;
+import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.mockito.Mockito.doReturn;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.jayway.jsonpath.JsonPath;
+import com.lmoustak.cardcostapi.controllers.ClearingCostsController;
+import com.lmoustak.cardcostapi.entities.ClearingCosts;
+import com.lmoustak.cardcostapi.repositories.ClearingCostsBulkRepository;
+import com.lmoustak.cardcostapi.repositories.ClearingCostsRepository;
+import java.math.BigDecimal;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.cache.CacheType;
+import org.springframework.boot.jdbc.EmbeddedDatabaseConnection;
+import org.springframework.boot.test.autoconfigure.core.AutoConfigureCache;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+@SpringBootTest(properties = {"rate-limit.permits-per-second=1000", "rate-limit.burst=1000"})
+@AutoConfigureTestDatabase(connection = EmbeddedDatabaseConnection.H2)
+@AutoConfigureCache(cacheProvider = CacheType.SIMPLE)
+@AutoConfigureMockMvc
+public class ClearingCostsControllerTests {
+
+  @Autowired
+  private MockMvc mockMvc;
+
+  @Autowired
+  private ClearingCostsRepository clearingCostsRepository;
+
+  @MockitoSpyBean
+  private ClearingCostsBulkRepository clearingCostsBulkRepository;
+
+  @BeforeEach
+  void importSampleClearingCosts() throws Exception {
+    mockMvc.perform(put("/clearing-costs/bulk?replace=true")
+            .contentType(ClearingCostsController.TEXT_CSV_VALUE)
+            .content("""
+                country,price
+                ,10
+                gr,3
+                us,5
+                """))
+        .andExpect(status().isOk());
+  }
+
+  @Test
+  void csv_imports_should_create_and_update_rows() throws Exception {
+    mockMvc.perform(put("/clearing-costs/bulk")
+            .contentType(ClearingCostsController.TEXT_CSV_VALUE)
+            .content("""
+                "gr", "4"
+
+                fr,7.5
+                """))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.created").value(1))
+        .andExpect(jsonPath("$.updated").value(1))
+        .andExpect(jsonPath("$.deleted").value(0));
+
+    mockMvc.perform(get("/clearing-costs/country/gr"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.price").value(4));
+  }
+
+  @Test
+  void json_and_ndjson_imports_should_replace_rows() throws Exception {
+    mockMvc.perform(put("/clearing-costs/bulk?replace=true")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content("""
+                [{"country": null, "price": 10}, {"country": "GR", "price": 2}]
+                """))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.created").value(0))
+        .andExpect(jsonPath("$.updated").value(2))
+        .andExpect(jsonPath("$.deleted").value(1));
+
+    mockMvc.perform(put("/clearing-costs/bulk")
+            .contentType(MediaType.APPLICATION_NDJSON)
+            .content("""
+                {"country": "it", "price": 6}
+                {"country": "gr", "price": 1}
+                """))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.created").value(1))
+        .andExpect(jsonPath("$.updated").value(1));
+  }
+
+  @Test
+  void invalid_rows_should_be_listed_under_errors_and_nothing_imported() throws Exception {
+    mockMvc.perform(put("/clearing-costs/bulk")
+            .contentType(ClearingCostsController.TEXT_CSV_VALUE)
+            .content("""
+                fr,1
+                gr,-3
+                greece,2
+                fr,4
+                """))
+        .andExpect(status().isBadRequest())
+        .andExpect(content().contentType(MediaType.APPLICATION_PROBLEM_JSON))
+        .andExpect(jsonPath("$.title").value("Validation error"))
+        .andExpect(jsonPath("$.errors['[1].price']").value("`price` should not be negative"))
+        .andExpect(jsonPath("$.errors['[2].country']").exists())
+        .andExpect(jsonPath("$.errors['[3].country']").exists());
+
+    mockMvc.perform(put("/clearing-costs/bulk")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content("""
+                [{"country": "fr"}]
+                """))
+        .andExpect(status().isBadRequest())
+        .andExpect(jsonPath("$.errors['[0].price']").value("`price` should not be null"));
+
+    mockMvc.perform(get("/clearing-costs/country/fr"))
+        .andExpect(jsonPath("$.country").doesNotExist());
+  }
+
+  @Test
+  void malformed_bodies_should_be_rejected() throws Exception {
+    mockMvc.perform(put("/clearing-costs/bulk")
+            .contentType(ClearingCostsController.TEXT_CSV_VALUE)
+            .content("gr,3,eur\n"))
+        .andExpect(status().isBadRequest())
+        .andExpect(jsonPath("$.detail").value("Line 1 should contain a country and a price"));
+
+    mockMvc.perform(put("/clearing-costs/bulk")
+            .contentType(ClearingCostsController.TEXT_CSV_VALUE)
+            .content("gr,three\n"))
+        .andExpect(status().isBadRequest());
+
+    mockMvc.perform(put("/clearing-costs/bulk")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content("[{\"country\": \"gr\", \"price\": 3},"))
+        .andExpect(status().isBadRequest());
+  }
+
+  @Test
+  void concurrently_created_countries_should_fail_the_import_with_conflict() throws Exception {
+    // As if the rows were inserted after the import read the existing ones
+    doReturn(Map.of()).when(clearingCostsBulkRepository).findIdsByCountryForUpdate();
+
+    mockMvc.perform(put("/clearing-costs/bulk")
+            .contentType(ClearingCostsController.TEXT_CSV_VALUE)
+            .content("gr,4\n"))
+        .andExpect(status().isConflict())
+        .andExpect(content().contentType(MediaType.APPLICATION_PROBLEM_JSON));
+  }
+
+  @Test
+  void all_clearing_costs_should_be_streamed_as_one_array() throws Exception {
+    mockMvc.perform(get("/clearing-costs"))
+        .andExpect(status().isOk())
+        .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+        .andExpect(jsonPath("$.length()").value(3))
+        .andExpect(jsonPath("$[1].country").value("gr"));
+
+    mockMvc.perform(get("/clearing-costs/priceRange?minPrice=4"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.length()").value(2))
+        .andExpect(jsonPath("$[1].country").value("us"));
+
+    mockMvc.perform(get("/clearing-costs/priceRange?minPrice=20"))
+        .andExpect(status().isOk())
+        .andExpect(content().json("[]"));
+  }
+
+  @Test
+  void pages_should_be_followed_through_their_next_cursor() throws Exception {
+    String firstPage = mockMvc.perform(get("/clearing-costs?limit=2"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.items.length()").value(2))
+        .andExpect(jsonPath("$.items[1].country").value("gr"))
+        .andExpect(jsonPath("$.next").isNotEmpty())
+        .andReturn().getResponse().getContentAsString();
+
+    mockMvc.perform(get("/clearing-costs?limit=2&after=" + JsonPath.read(firstPage, "$.next")))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.items.length()").value(1))
+        .andExpect(jsonPath("$.items[0].country").value("us"))
+        .andExpect(jsonPath("$.next").doesNotExist());
+
+    mockMvc.perform(get("/clearing-costs?limit=2&sort=country&after=gr"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.items[0].country").value("us"));
+
+    mockMvc.perform(get("/clearing-costs/priceRange?limit=1&maxPrice=5"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.items[0].country").value("gr"))
+        .andExpect(jsonPath("$.next").isNotEmpty());
+  }
+
+  @Test
+  void invalid_or_combined_lookups_should_be_rejected() throws Exception {
+    mockMvc.perform(get("/clearing-costs?limit=0"))
+        .andExpect(status().isBadRequest());
+    mockMvc.perform(get("/clearing-costs?limit=10&sort=price"))
+        .andExpect(status().isBadRequest());
+    mockMvc.perform(get("/clearing-costs/priceRange?limit=10000"))
+        .andExpect(status().isBadRequest());
+
+    mockMvc.perform(get("/clearing-costs?limit=10&ids=1"))
+        .andExpect(status().isBadRequest());
+    mockMvc.perform(get("/clearing-costs?limit=10&countries=gr"))
+        .andExpect(status().isBadRequest());
+    mockMvc.perform(get("/clearing-costs?ids=1&countries=gr"))
+        .andExpect(status().isBadRequest());
+
+    mockMvc.perform(get("/clearing-costs?countries=gr,mx"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.gr.price").value(3))
+        .andExpect(jsonPath("$.mx.country").doesNotExist());
+  }
+
+  private String updatePrice(String ifMatch, String price, int expectedStatus) throws Exception {
+    var request = put("/clearing-costs")
+        .contentType(MediaType.APPLICATION_JSON)
+        .content("{\"country\": \"gr\", \"price\": %s}".formatted(price));
+    if (ifMatch != null) {
+      request.header(HttpHeaders.IF_MATCH, ifMatch);
+    }
+    return mockMvc.perform(request)
+        .andExpect(status().is(expectedStatus))
+        .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+  }
+
+  @Test
+  void unchanged_clearing_costs_should_not_be_sent_again() throws Exception {
+    String eTag = mockMvc.perform(get("/clearing-costs/country/gr"))
+        .andExpect(status().isOk())
+        .andExpect(header().string(HttpHeaders.ETAG, matchesPattern("\"\\d+-\\d+\"")))
+        .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+    mockMvc.perform(get("/clearing-costs/country/gr").header(HttpHeaders.IF_NONE_MATCH, eTag))
+        .andExpect(status().isNotModified())
+        .andExpect(content().string(""));
+
+    String matrixETag = mockMvc.perform(get("/clearing-costs"))
+        .andExpect(status().isOk())
+        .andExpect(header().exists(HttpHeaders.ETAG))
+        .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+    mockMvc.perform(get("/clearing-costs").header(HttpHeaders.IF_NONE_MATCH, matrixETag))
+        .andExpect(status().isNotModified());
+
+    updatePrice(null, "8", 200);
+
+    mockMvc.perform(get("/clearing-costs/country/gr").header(HttpHeaders.IF_NONE_MATCH, eTag))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.price").value(8));
+    String changedMatrixETag = mockMvc.perform(
+            get("/clearing-costs").header(HttpHeaders.IF_NONE_MATCH, matrixETag))
+        .andExpect(status().isOk())
+        .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+    assertNotEquals(matrixETag, changedMatrixETag);
+  }
+
+  @Test
+  void changes_made_through_another_node_should_not_be_confirmed_as_unchanged()
+      throws Exception {
+    String matrixETag = mockMvc.perform(get("/clearing-costs"))
+        .andExpect(status().isOk())
+        .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+    // Written around this node's matrix, as another node would
+    ClearingCosts clearingCosts = clearingCostsRepository.findByCountry("us").orElseThrow();
+    clearingCosts.setPrice(new BigDecimal("6"));
+    clearingCostsRepository.saveAndFlush(clearingCosts);
+
+    mockMvc.perform(get("/clearing-costs").header(HttpHeaders.IF_NONE_MATCH, matrixETag))
+        .andExpect(status().isOk())
+        .andExpect(header().string(HttpHeaders.ETAG, not(matrixETag)))
+        .andExpect(jsonPath("$[?(@.country == 'us')].price").value(6.0));
+  }
+
+  @Test
+  void updates_should_only_go_ahead_while_if_match_holds() throws Exception {
+    String eTag = mockMvc.perform(get("/clearing-costs/country/gr"))
+        .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+    String newETag = updatePrice(eTag, "6", 200);
+    assertNotEquals(eTag, newETag);
+
+    mockMvc.perform(put("/clearing-costs")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content("{\"country\": \"gr\", \"price\": 7}")
+            .header(HttpHeaders.IF_MATCH, eTag))
+        .andExpect(status().isPreconditionFailed())
+        .andExpect(content().contentType(MediaType.APPLICATION_PROBLEM_JSON))
+        .andExpect(jsonPath("$.title").value("Resource was modified"));
+
+    // Weak and malformed tags never match
+    updatePrice("W/" + newETag, "7", 412);
+    updatePrice("gr-1", "7", 412);
+    updatePrice("\"gr-one\"", "7", 412);
+
+    newETag = updatePrice(eTag + ", " + newETag, "7", 200);
+    updatePrice("*", "9", 200);
+    updatePrice(newETag, "10", 412);
+  }
+
+  @Test
+  void exports_should_be_written_as_csv_or_json() throws Exception {
+    mockMvc.perform(get("/clearing-costs/bulk").accept(ClearingCostsController.TEXT_CSV_VALUE))
+        .andExpect(status().isOk())
+        .andExpect(content().contentTypeCompatibleWith(ClearingCostsController.TEXT_CSV_VALUE))
+        .andExpect(content().string("""
+            country,price
+            ,10.00
+            gr,3.00
+            us,5.00
+            """));
+
+    mockMvc.perform(get("/clearing-costs/bulk").accept(MediaType.APPLICATION_JSON))
+        .andExpect(status().isOk())
+        .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+        .andExpect(jsonPath("$.length()").value(3))
+        .andExpect(jsonPath("$[0].country").doesNotExist())
+        .andExpect(jsonPath("$[1].country").value("gr"))
+        .andExpect(jsonPath("$[2].price").value(5));
+  }
+
+}
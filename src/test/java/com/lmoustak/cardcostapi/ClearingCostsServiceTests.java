@@ -7,12 +7,18 @@ import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
+import com.lmoustak.cardcostapi.dtos.ClearingCostsImportResult;
+import com.lmoustak.cardcostapi.dtos.ClearingCostsPage;
+import com.lmoustak.cardcostapi.dtos.ClearingCostsVersion;
 import com.lmoustak.cardcostapi.entities.ClearingCosts;
+import com.lmoustak.cardcostapi.exceptions.ClearingCostsImportException;
 import com.lmoustak.cardcostapi.services.ClearingCostsService;
 import jakarta.persistence.EntityNotFoundException;
+import jakarta.persistence.OptimisticLockException;
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
@@ -64,6 +70,13 @@ public class ClearingCostsServiceTests {
         entity -> clearingCostsService.createClearingCosts(entity.getCountry(), entity.getPrice()));
   }
 
+  private static ClearingCosts row(String country, String price) {
+    var clearingCosts = new ClearingCosts();
+    clearingCosts.setCountry(country);
+    clearingCosts.setPrice(price == null ? null : new BigDecimal(price));
+    return clearingCosts;
+  }
+
   private ClearingCosts getByCountry(String country) {
     return sampleClearingCosts.stream()
         .filter(entity -> country.equals(entity.getCountry()))
@@ -103,6 +116,53 @@ public class ClearingCostsServiceTests {
     assertEquals(0, expectedEntity.getPrice().compareTo(actualEntity.getPrice()));
   }
 
+  @Test
+  void country_lookups_should_reflect_writes_without_querying_again() {
+    final String country = "fr";
+
+    clearingCostsService.createClearingCosts(country, new BigDecimal("7.25"));
+    assertEquals(0, new BigDecimal("7.25").compareTo(
+        clearingCostsService.readClearingCostsByCountry("FR").orElseThrow().getPrice()));
+
+    clearingCostsService.updateClearingCosts(country, new BigDecimal("8"), null);
+    assertEquals(0, new BigDecimal("8").compareTo(
+        clearingCostsService.readClearingCostsByCountry(country).orElseThrow().getPrice()));
+
+    clearingCostsService.deleteClearingCostsByCountry(country);
+    assertNull(clearingCostsService.readClearingCostsByCountry(country).orElseThrow().getCountry());
+  }
+
+  @Test
+  void country_lookups_should_not_share_entries_between_callers() {
+    ClearingCosts defaultClearingCosts = clearingCostsService.readClearingCostsByCountry("mx")
+        .orElseThrow();
+    BigDecimal price = defaultClearingCosts.getPrice();
+    defaultClearingCosts.setPrice(price.add(BigDecimal.ONE));
+
+    assertEquals(0, price.compareTo(
+        clearingCostsService.readClearingCostsByCountry("mx").orElseThrow().getPrice()));
+    assertEquals(0, price.compareTo(
+        clearingCostsService.readClearingCostsByCountries(List.of("mx")).get("mx").getPrice()));
+  }
+
+  @Test
+  void multi_key_reads_should_return_each_known_entry_once() {
+    ClearingCosts greece = clearingCostsService.readClearingCostsByCountry("gr").orElseThrow();
+    ClearingCosts unitedKingdom = clearingCostsService.readClearingCostsByCountry("uk")
+        .orElseThrow();
+
+    List<ClearingCosts> byIds = clearingCostsService.readClearingCostsByIds(
+        List.of(unitedKingdom.getId(), 999L, greece.getId(), unitedKingdom.getId()));
+    assertEquals(List.of(unitedKingdom.getId(), greece.getId()),
+        byIds.stream().map(ClearingCosts::getId).toList());
+
+    Map<String, ClearingCosts> byCountries = clearingCostsService.readClearingCostsByCountries(
+        List.of("GR", "uk", "mx", "gr"));
+    assertEquals(List.of("gr", "uk", "mx"), List.copyOf(byCountries.keySet()));
+    assertEquals(greece.getId(), byCountries.get("gr").getId());
+    assertNull(byCountries.get("mx").getCountry());
+  }
+
   @Test
   void deleting_non_existing_id_should_throw() {
     assertThrows(EntityNotFoundException.class,
@@ -115,4 +175,124 @@ public class ClearingCostsServiceTests {
         () -> clearingCostsService.deleteClearingCostsByCountry("de"));
   }
 
+  @Test
+  void bulk_import_should_create_and_update_rows_in_one_go() {
+    ClearingCostsImportResult created = clearingCostsService.importClearingCosts(
+        List.of(row("ES", "5"), row("it", "6.5")).iterator(), false);
+    assertEquals(new ClearingCostsImportResult(2, 0, 0), created);
+    assertEquals(0, new BigDecimal("5").compareTo(
+        clearingCostsService.readClearingCostsByCountry("es").orElseThrow().getPrice()));
+
+    ClearingCostsImportResult updated = clearingCostsService.importClearingCosts(
+        List.of(row("es", "5.5")).iterator(), false);
+    assertEquals(new ClearingCostsImportResult(0, 1, 0), updated);
+    assertEquals(0, new BigDecimal("5.5").compareTo(
+        clearingCostsService.readClearingCostsByCountry("es").orElseThrow().getPrice()));
+
+    clearingCostsService.deleteClearingCostsByCountry("es");
+    clearingCostsService.deleteClearingCostsByCountry("it");
+  }
+
+  @Test
+  void bulk_import_with_invalid_rows_should_import_nothing() {
+    List<ClearingCosts> rows = List.of(row("pt", "1"), row("esp", "2"), row("pt", "3"),
+        row("nl", "-1"), row("be", null));
+
+    ClearingCostsImportException exception = assertThrows(ClearingCostsImportException.class,
+        () -> clearingCostsService.importClearingCosts(rows.iterator(), false));
+
+    assertEquals(List.of("[1].country", "[2].country", "[3].price", "[4].price"),
+        List.copyOf(exception.getErrors().keySet()));
+    assertNull(clearingCostsService.readClearingCostsByCountry("pt").orElseThrow().getCountry());
+  }
+
+  @Test
+  void bulk_export_should_round_trip_through_a_replacing_import() {
+    List<ClearingCosts> exported = new ArrayList<>();
+    clearingCostsService.exportClearingCosts(exported::add);
+    assertEquals(clearingCostsService.readAllClearingCosts().size(), exported.size());
+
+    ClearingCostsImportResult result = clearingCostsService.importClearingCosts(
+        exported.iterator(), true);
+
+    assertEquals(new ClearingCostsImportResult(0, exported.size(), 0), result);
+  }
+
+  @Test
+  void keyset_pages_should_return_every_entry_once_in_order() {
+    List<Long> expectedIds = clearingCostsService.readAllClearingCosts().stream()
+        .map(ClearingCosts::getId)
+        .sorted()
+        .toList();
+
+    List<Long> pagedIds = new ArrayList<>();
+    ClearingCostsPage page = clearingCostsService.readClearingCostsPageById(null, 2);
+    page.items().forEach(entity -> pagedIds.add(entity.getId()));
+    while (page.next() != null) {
+      page = clearingCostsService.readClearingCostsPageById(Long.valueOf(page.next()), 2);
+      page.items().forEach(entity -> pagedIds.add(entity.getId()));
+    }
+    assertEquals(expectedIds, pagedIds);
+
+    List<String> pagedCountries = new ArrayList<>();
+    page = clearingCostsService.readClearingCostsPageByCountry(null, 1);
+    page.items().forEach(entity -> pagedCountries.add(entity.getCountry()));
+    while (page.next() != null) {
+      page = clearingCostsService.readClearingCostsPageByCountry(page.next(), 1);
+      page.items().forEach(entity -> pagedCountries.add(entity.getCountry()));
+    }
+    assertNull(pagedCountries.get(0));
+    assertEquals(expectedIds.size(), pagedCountries.size());
+    assertIterableEquals(
+        pagedCountries.subList(1, pagedCountries.size()).stream().sorted().toList(),
+        pagedCountries.subList(1, pagedCountries.size()));
+  }
+
+  @Test
+  void streamed_and_paged_price_range_reads_should_match_the_list_query() {
+    BigDecimal minPrice = new BigDecimal("3");
+    BigDecimal maxPrice = new BigDecimal("5");
+    List<Long> expectedIds = clearingCostsService.readClearingCostsByPriceRange(minPrice, maxPrice)
+        .stream()
+        .map(ClearingCosts::getId)
+        .sorted()
+        .toList();
+
+    List<Long> streamedIds = new ArrayList<>();
+    clearingCostsService.streamClearingCostsByPriceRange(minPrice, maxPrice,
+        entity -> streamedIds.add(entity.getId()));
+    assertEquals(expectedIds, streamedIds);
+
+    ClearingCostsPage page = clearingCostsService.readClearingCostsPageByPriceRange(minPrice,
+        maxPrice, null, 1);
+    assertAll(
+        () -> assertEquals(expectedIds.subList(0, 1),
+            page.items().stream().map(ClearingCosts::getId).toList()),
+        () -> assertEquals(expectedIds.get(0).toString(), page.next())
+    );
+  }
+
+  @Test
+  void updates_should_bump_the_entry_and_matrix_versions() {
+    final String country = "nl";
+    ClearingCosts created = clearingCostsService.createClearingCosts(country, new BigDecimal("2"));
+    long matrixVersion = clearingCostsService.readClearingCostsMatrixVersion();
+
+    ClearingCosts updated = clearingCostsService.updateClearingCosts(country, new BigDecimal("3"),
+        List.of(new ClearingCostsVersion(created.getId(), created.getVersion())));
+
+    assertEquals(created.getVersion() + 1, updated.getVersion());
+    assertEquals(updated.getVersion(),
+        clearingCostsService.readClearingCostsByCountry(country).orElseThrow().getVersion());
+    assertNotEquals(matrixVersion, clearingCostsService.readClearingCostsMatrixVersion());
+
+    assertThrows(OptimisticLockException.class,
+        () -> clearingCostsService.updateClearingCosts(country, new BigDecimal("4"),
+            List.of(new ClearingCostsVersion(created.getId(), created.getVersion()))));
+    assertEquals(0, new BigDecimal("3").compareTo(
+        clearingCostsService.readClearingCostsByCountry(country).orElseThrow().getPrice()));
+
+    clearingCostsService.deleteClearingCostsByCountry(country);
+  }
+
 }
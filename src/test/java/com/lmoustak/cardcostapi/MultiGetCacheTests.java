@@ -0,0 +1,119 @@
+package com.lmoustak.cardcostapi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.common.cache.CacheBuilder;
+import com.lmoustak.cardcostapi.caching.CacheMetrics;
+import com.lmoustak.cardcostapi.caching.CacheValueCodec;
+import com.lmoustak.cardcostapi.caching.MultiGetCache;
+import com.lmoustak.cardcostapi.caching.MultiGetRedisCache;
+import com.lmoustak.cardcostapi.caching.TwoTierCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.cache.Cache.ValueWrapper;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.cache.RedisCacheWriter;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.connection.RedisStringCommands.SetOption;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.serializer.RedisSerializationContext.SerializationPair;
+
+public class MultiGetCacheTests {
+
+  private final CacheValueCodec codec = new CacheValueCodec();
+
+  private RedisConnectionFactory connectionFactory;
+  private RedisConnection connection;
+  private RedisStringCommands stringCommands;
+  private MultiGetRedisCache redisCache;
+
+  @BeforeEach
+  void setupRedisCache() {
+    connection = mock();
+    stringCommands = mock();
+    when(connection.stringCommands()).thenReturn(stringCommands);
+    connectionFactory = mock();
+    when(connectionFactory.getConnection()).thenReturn(connection);
+
+    redisCache = new MultiGetRedisCache("bins", mock(RedisCacheWriter.class),
+        RedisCacheConfiguration.defaultCacheConfig()
+            .serializeValuesWith(SerializationPair.fromSerializer(codec))
+            .entryTtl(Duration.ofMinutes(10)),
+        connectionFactory);
+  }
+
+  private static Map<Object, Object> values(Map<Object, ValueWrapper> found) {
+    Map<Object, Object> values = new LinkedHashMap<>();
+    found.forEach((key, valueWrapper) -> values.put(key, valueWrapper.get()));
+    return values;
+  }
+
+  @Test
+  void redis_reads_of_many_keys_should_take_a_single_round_trip() {
+    when(stringCommands.mGet(any(byte[][].class))).thenReturn(
+        Arrays.asList(codec.serialize("gr"), null, codec.serialize("US")));
+
+    Map<Object, ValueWrapper> found = redisCache.getAll(
+        List.of("403244", "555555", "411111", "403244"));
+
+    assertEquals(Map.of("403244", "gr", "411111", "US"), values(found));
+    ArgumentCaptor<byte[][]> keys = ArgumentCaptor.forClass(byte[][].class);
+    verify(stringCommands, times(1)).mGet(keys.capture());
+    assertEquals(List.of("bins::403244", "bins::555555", "bins::411111"),
+        Arrays.stream(keys.getValue()).map(String::new).toList());
+  }
+
+  @Test
+  void redis_writes_of_many_keys_should_be_pipelined() {
+    redisCache.putAll(Map.of("403244", "gr", "555555", "us"));
+
+    verify(connectionFactory, times(1)).getConnection();
+    verify(connection).openPipeline();
+    verify(stringCommands, times(2)).set(any(), any(), eq(Expiration.from(Duration.ofMinutes(10))),
+        eq(SetOption.upsert()));
+    verify(connection).closePipeline();
+  }
+
+  @Test
+  void two_tier_reads_should_only_ask_the_remote_tier_for_local_misses() {
+    List<Object> remoteKeys = new ArrayList<>();
+    MultiGetCache remoteCache = mock();
+    when(remoteCache.getAll(any())).thenAnswer(invocation -> {
+      remoteKeys.addAll(invocation.getArgument(0));
+      return Map.of("555555", (ValueWrapper) () -> "us");
+    });
+    List<String> publishedKeys = new ArrayList<>();
+    var cache = new TwoTierCache("bins", CacheBuilder.newBuilder().maximumSize(100).build(),
+        remoteCache, (cacheName, key) -> publishedKeys.add(key),
+        new CacheMetrics("bins", new SimpleMeterRegistry()));
+    cache.getLocalCache().put("403244", () -> "gr");
+
+    Map<Object, ValueWrapper> found = MultiGetCache.getAll(cache,
+        List.of("403244", "555555", "411111"));
+
+    assertEquals(Map.of("403244", "gr", "555555", "us"), values(found));
+    assertEquals(List.of("555555", "411111"), remoteKeys);
+    assertEquals("us", cache.getLocalCache().getIfPresent("555555").get());
+
+    cache.putAll(Map.of("411111", "gb"));
+    verify(remoteCache).putAll(Map.of("411111", "gb"));
+    assertEquals(List.of("411111"), publishedKeys);
+  }
+
+}
@@ -0,0 +1,117 @@
+package com.lmoustak.cardcostapi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.lmoustak.cardcostapi.controllers.RateLimiterFilter;
+import com.lmoustak.cardcostapi.ratelimiting.LocalRateLimiter;
+import com.lmoustak.cardcostapi.ratelimiting.RateLimitDecision;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+public class RateLimiterFilterTests {
+
+  private static MockHttpServletResponse call(RateLimiterFilter filter, String ip)
+      throws Exception {
+    var request = new MockHttpServletRequest("POST", "/payment-cards-cost");
+    request.setRemoteAddr(ip);
+    var response = new MockHttpServletResponse();
+    filter.doFilter(request, response, new MockFilterChain());
+    return response;
+  }
+
+  @Test
+  void exhausting_the_burst_should_answer_429_with_quota_headers() throws Exception {
+    var filter = new RateLimiterFilter(new LocalRateLimiter(1, 3, 100, Duration.ofMinutes(1)),
+        new SimpleMeterRegistry());
+
+    for (int remaining = 2; remaining >= 0; remaining--) {
+      MockHttpServletResponse response = call(filter, "10.0.0.1");
+      assertEquals(200, response.getStatus());
+      assertEquals("3", response.getHeader(RateLimiterFilter.LIMIT_HEADER));
+      assertEquals(String.valueOf(remaining),
+          response.getHeader(RateLimiterFilter.REMAINING_HEADER));
+    }
+
+    MockHttpServletResponse rejected = call(filter, "10.0.0.1");
+    assertEquals(429, rejected.getStatus());
+    assertEquals("0", rejected.getHeader(RateLimiterFilter.REMAINING_HEADER));
+    assertEquals("1", rejected.getHeader(HttpHeaders.RETRY_AFTER));
+
+    assertEquals(200, call(filter, "10.0.0.2").getStatus());
+  }
+
+  @Test
+  void concurrent_requests_should_never_exceed_the_burst() throws Exception {
+    int threads = 64;
+    int burst = 100;
+    var filter = new RateLimiterFilter(
+        new LocalRateLimiter(0.001, burst, 100, Duration.ofMinutes(1)),
+        new SimpleMeterRegistry());
+    AtomicInteger granted = new AtomicInteger();
+    CountDownLatch start = new CountDownLatch(1);
+
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int i = 0; i < threads; i++) {
+      futures.add(executor.submit(() -> {
+        start.await();
+        for (int j = 0; j < 50; j++) {
+          if (call(filter, "10.0.0.1").getStatus() == 200) {
+            granted.incrementAndGet();
+          }
+        }
+        return null;
+      }));
+    }
+    start.countDown();
+    for (Future<?> future : futures) {
+      future.get();
+    }
+    executor.shutdown();
+
+    assertEquals(burst, granted.get());
+  }
+
+  @Test
+  void tracked_clients_should_be_capped() throws Exception {
+    var rateLimiter = new LocalRateLimiter(20, 20, 1000, Duration.ofMinutes(1));
+    var filter = new RateLimiterFilter(rateLimiter, new SimpleMeterRegistry());
+
+    for (int i = 0; i < 20_000; i++) {
+      call(filter, "10.%d.%d.%d".formatted(i >> 16, (i >> 8) & 0xff, i & 0xff));
+    }
+
+    assertTrue(rateLimiter.trackedClients() <= 1000,
+        "Tracking %d clients".formatted(rateLimiter.trackedClients()));
+  }
+
+  @Test
+  void requests_should_be_counted_by_result_and_rejection_reason() throws Exception {
+    var meterRegistry = new SimpleMeterRegistry();
+    var filter = new RateLimiterFilter(new LocalRateLimiter(1, 1, 100, Duration.ofMinutes(1)),
+        meterRegistry);
+
+    call(filter, "10.0.0.1");
+    call(filter, "10.0.0.1");
+    call(filter, "10.0.0.1");
+
+    assertEquals(1, meterRegistry.get("ratelimit.requests")
+        .tags("result", "granted").counter().count());
+    assertEquals(2, meterRegistry.get("ratelimit.requests")
+        .tags("result", "rejected", "reason", RateLimitDecision.LOCAL_LIMIT).counter().count());
+  }
+
+}
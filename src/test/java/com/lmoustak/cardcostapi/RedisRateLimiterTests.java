@@ -0,0 +1,81 @@
+package com.lmoustak.cardcostapi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.lmoustak.cardcostapi.ratelimiting.LocalRateLimiter;
+import com.lmoustak.cardcostapi.ratelimiting.RateLimitDecision;
+import com.lmoustak.cardcostapi.ratelimiting.RedisRateLimiter;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+
+public class RedisRateLimiterTests {
+
+  private StringRedisTemplate redisTemplate;
+
+  @BeforeEach
+  void setupRedis() {
+    redisTemplate = mock();
+  }
+
+  private RedisRateLimiter rateLimiter(int burst) {
+    return new RedisRateLimiter(redisTemplate,
+        new LocalRateLimiter(1, burst, 100, Duration.ofMinutes(1)), 100, 5,
+        Duration.ofMinutes(1), Duration.ofMinutes(1));
+  }
+
+  @SuppressWarnings("unchecked")
+  private void whenScriptIsCalled(List<Long> reply) {
+    when(redisTemplate.execute(any(RedisScript.class), anyList(), any(), any(), any()))
+        .thenReturn(reply);
+  }
+
+  @Test
+  void leased_permits_should_keep_most_requests_off_redis() {
+    whenScriptIsCalled(List.of(5L, 100L, 0L));
+    RedisRateLimiter rateLimiter = rateLimiter(1000);
+
+    for (int i = 0; i < 20; i++) {
+      assertTrue(rateLimiter.tryAcquire("10.0.0.1").granted());
+    }
+
+    assertEquals(4, rateLimiter.scriptCalls());
+  }
+
+  @Test
+  void exhausted_cluster_bucket_should_reject_with_the_redis_wait_time() {
+    whenScriptIsCalled(List.of(0L, 0L, 250_000L));
+
+    RateLimitDecision decision = rateLimiter(1000).tryAcquire("10.0.0.1");
+
+    assertFalse(decision.granted());
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(250), decision.nanosUntilAvailable());
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  void unavailable_redis_should_fall_back_to_local_buckets() {
+    when(redisTemplate.execute(any(RedisScript.class), anyList(), any(), any(), any()))
+        .thenThrow(new RedisConnectionFailureException("Connection refused"));
+    RedisRateLimiter rateLimiter = rateLimiter(3);
+
+    for (int i = 0; i < 3; i++) {
+      assertTrue(rateLimiter.tryAcquire("10.0.0.1").granted());
+    }
+    assertFalse(rateLimiter.tryAcquire("10.0.0.1").granted());
+
+    assertEquals(1, rateLimiter.scriptCalls());
+  }
+
+}
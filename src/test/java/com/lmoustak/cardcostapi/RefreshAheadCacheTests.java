@@ -0,0 +1,146 @@
+package com.lmoustak.cardcostapi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.lmoustak.cardcostapi.caching.RefreshAheadCache;
+import com.lmoustak.cardcostapi.utils.Bulkhead;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+
+public class RefreshAheadCacheTests {
+
+  private static final Duration TIME_TO_LIVE = Duration.ofSeconds(100);
+
+  private Cache remoteCache;
+  private Clock clock;
+  private Map<Object, CompletableFuture<String>> refreshedCountries;
+  private List<Object> refreshedKeys;
+
+  @BeforeEach
+  void setupCache() {
+    remoteCache = spy(new ConcurrentMapCache("bins"));
+    clock = mock();
+    when(clock.millis()).thenReturn(0L);
+    refreshedCountries = new HashMap<>();
+    refreshedKeys = new ArrayList<>();
+  }
+
+  private RefreshAheadCache cache(double jitter, int maxConcurrentRefreshes) {
+    return new RefreshAheadCache(remoteCache, TIME_TO_LIVE, 0.5, jitter,
+        new Bulkhead(maxConcurrentRefreshes, Duration.ZERO), key -> {
+          refreshedKeys.add(key);
+          return refreshedCountries.getOrDefault(key, CompletableFuture.completedFuture("cy"));
+        }, clock);
+  }
+
+  private void advanceTo(Duration elapsed) {
+    when(clock.millis()).thenReturn(elapsed.toMillis());
+  }
+
+  @Test
+  void entries_past_the_refresh_point_should_be_served_while_refreshed() {
+    RefreshAheadCache cache = cache(0, 8);
+    var loads = new AtomicInteger();
+
+    assertEquals("gr", cache.get("403244", () -> loads.incrementAndGet() == 1 ? "gr" : "us"));
+
+    advanceTo(Duration.ofSeconds(40));
+    assertEquals("gr", cache.get("403244", () -> loads.incrementAndGet() == 1 ? "gr" : "us"));
+    assertEquals(List.of(), refreshedKeys);
+
+    advanceTo(Duration.ofSeconds(60));
+    assertEquals("gr", cache.get("403244", () -> loads.incrementAndGet() == 1 ? "gr" : "us"));
+    assertEquals(1, loads.get());
+    assertEquals(List.of("403244"), refreshedKeys);
+    assertEquals(1, cache.refreshedCount());
+    assertEquals("cy", cache.get("403244", String.class));
+
+    var entry = assertInstanceOf(RefreshAheadCache.Entry.class,
+        remoteCache.get("403244").get());
+    assertEquals(Duration.ofSeconds(160).toMillis(), entry.expiresAt());
+  }
+
+  @Test
+  void expired_entries_should_be_loaded_synchronously() {
+    RefreshAheadCache cache = cache(0, 8);
+    cache.put("403244", "gr");
+
+    advanceTo(TIME_TO_LIVE);
+    assertEquals(null, cache.get("403244"));
+    assertEquals("cy", cache.retrieve("403244", () -> CompletableFuture.completedFuture("cy"))
+        .join());
+    assertEquals(0, cache.refreshedCount());
+  }
+
+  @Test
+  void refreshes_should_be_capped_by_the_concurrency_limit() {
+    RefreshAheadCache cache = cache(0, 1);
+    cache.put("403244", "gr");
+    cache.put("555555", "us");
+
+    advanceTo(Duration.ofSeconds(60));
+    var pendingRefresh = new CompletableFuture<String>();
+    refreshedCountries.put("403244", pendingRefresh);
+    refreshedCountries.put("555555", CompletableFuture.completedFuture("gb"));
+    assertEquals("gr", cache.retrieve("403244", CompletableFuture::new).join());
+    assertEquals("gr", cache.retrieve("403244", CompletableFuture::new).join());
+    assertEquals("us", cache.retrieve("555555", CompletableFuture::new).join());
+    assertEquals(1, cache.skippedRefreshCount());
+    assertEquals(List.of("403244"), refreshedKeys);
+
+    pendingRefresh.complete("cy");
+    assertEquals("cy", cache.get("403244", String.class));
+    assertEquals("us", cache.retrieve("555555", CompletableFuture::new).join());
+    assertEquals("gb", cache.get("555555", String.class));
+  }
+
+  @Test
+  void misses_should_be_loaded_through_the_wrapped_cache() {
+    RefreshAheadCache cache = cache(0, 8);
+
+    assertEquals("gr", cache.get("403244", () -> "gr"));
+    assertEquals("gr", cache.get("403244", () -> "us"));
+
+    verify(remoteCache, times(2)).get(eq("403244"), any(Callable.class));
+    var entry = assertInstanceOf(RefreshAheadCache.Entry.class,
+        remoteCache.get("403244").get());
+    assertEquals("gr", entry.value());
+  }
+
+  @Test
+  void expiry_should_be_jittered() {
+    RefreshAheadCache cache = cache(0.2, 8);
+    Set<Long> expiries = new HashSet<>();
+    for (int bin = 0; bin < 100; bin++) {
+      cache.put(bin, "gr");
+      var entry = (RefreshAheadCache.Entry) remoteCache.get(bin).get();
+      assertTrue(entry.expiresAt() > Duration.ofSeconds(80).toMillis());
+      assertTrue(entry.expiresAt() <= TIME_TO_LIVE.toMillis());
+      expiries.add(entry.expiresAt());
+    }
+    assertTrue(expiries.size() > 50);
+  }
+
+}
@@ -0,0 +1,145 @@
+package com.lmoustak.cardcostapi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import com.lmoustak.cardcostapi.exceptions.BinTableUnavailableException;
+import com.lmoustak.cardcostapi.services.BinRangeIndexLoader;
+import com.lmoustak.cardcostapi.services.BinTableService;
+import com.lmoustak.cardcostapi.services.BinTableServiceImpl;
+import com.lmoustak.cardcostapi.services.LocalFirstBinTableService;
+import com.lmoustak.cardcostapi.services.ResolvedBinStore;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.RestClient;
+
+public class ResolvedBinStoreTests {
+
+  private static final Instant NOW = Instant.parse("2026-01-01T00:00:00Z");
+
+  @TempDir
+  private Path directory;
+
+  private static ResolvedBinStore store(Instant now) {
+    return new ResolvedBinStore(null, Duration.ofDays(7), Clock.fixed(now, ZoneOffset.UTC));
+  }
+
+  private static Map<String, String> fresh(ResolvedBinStore store) {
+    Map<String, String> countries = new HashMap<>();
+    store.forEachFresh(countries::put);
+    return countries;
+  }
+
+  @Test
+  void snapshot_should_round_trip_through_a_file() throws IOException {
+    ResolvedBinStore store = store(NOW);
+    store.record(403244, "GR");
+    store.record(555555, "us");
+    store.record(999999, "not a country");
+    Path file = directory.resolve("bins.snapshot");
+
+    assertEquals(2, store.write(file));
+
+    ResolvedBinStore restarted = store(NOW.plusSeconds(60));
+    assertEquals(2, restarted.load(file));
+    assertEquals(Map.of("403244", "gr", "555555", "us"), fresh(restarted));
+  }
+
+  @Test
+  void corrupted_snapshot_should_be_ignored() throws IOException {
+    ResolvedBinStore store = store(NOW);
+    store.record(403244, "gr");
+    Path file = directory.resolve("bins.snapshot");
+    store.write(file);
+
+    byte[] bytes = Files.readAllBytes(file);
+    bytes[8] ^= 1;
+    Files.write(file, bytes);
+
+    ResolvedBinStore restarted = store(NOW);
+    assertEquals(0, restarted.load(file));
+    assertNull(restarted.findStale(403244));
+  }
+
+  @Test
+  void bins_older_than_the_max_age_should_not_be_served() throws IOException {
+    ResolvedBinStore store = store(NOW);
+    store.record(403244, "gr");
+    Path file = directory.resolve("bins.snapshot");
+    store.write(file);
+
+    ResolvedBinStore restarted = store(NOW.plus(Duration.ofDays(8)));
+    assertEquals(0, restarted.load(file));
+    assertEquals(Map.of(), fresh(restarted));
+  }
+
+  @Test
+  void resolved_bins_should_only_be_served_while_bintable_is_unavailable() {
+    ResolvedBinStore store = store(NOW);
+    store.record(403244, "gr");
+    AtomicReference<String> remoteCountry = new AtomicReference<>("us");
+    BinTableService remote = issuerIdentificationNumber -> {
+      if (remoteCountry.get() == null) {
+        throw new BinTableUnavailableException(HttpStatus.SERVICE_UNAVAILABLE, "Down");
+      }
+      return remoteCountry.get();
+    };
+    var binTableService = new LocalFirstBinTableService(new BinRangeIndexLoader(""), store,
+        remote, BinTableServiceImpl.SHORT_BIN_LENGTH);
+
+    assertEquals("us", binTableService.getCountryFromIssuerIdentificationNumber("4032440000"));
+
+    remoteCountry.set(null);
+    assertEquals("gr", binTableService.getCountryFromIssuerIdentificationNumber("4032440000"));
+    assertTrue(binTableService.findCountryAsync("4032440000").join().stale());
+  }
+
+  @Test
+  void restarted_nodes_should_warm_the_cache_from_the_snapshot() throws IOException {
+    ResolvedBinStore store = store(NOW);
+    store.record("403244", "gr");
+    store.record("411111", "de");
+    store.record("55555512", "us");
+    Path file = directory.resolve("bins.snapshot");
+    store.write(file);
+
+    ResolvedBinStore restarted = store(NOW.plusSeconds(60));
+    restarted.load(file);
+    var cacheManager = new ConcurrentMapCacheManager(BinTableServiceImpl.CACHE_NAME);
+    Cache cache = cacheManager.getCache(BinTableServiceImpl.CACHE_NAME);
+    cache.put("411111", "fr");
+    RestClient restClient = mock();
+    BinTableServiceImpl binTableService = BinTableServiceBuilder.binTableService()
+        .restClient(restClient)
+        .binLength(BinTableServiceImpl.LONG_BIN_LENGTH)
+        .cacheManager(cacheManager)
+        .resolvedBinStore(restarted)
+        .build();
+
+    binTableService.warmUpCache();
+
+    assertEquals("gr",
+        binTableService.getCountryFromIssuerIdentificationNumber("4032440012345678"));
+    verify(restClient, never()).get();
+    assertEquals("fr", cache.get("411111", String.class));
+    assertNull(cache.get("555555"));
+  }
+
+}
@@ -0,0 +1,151 @@
+package com.lmoustak.cardcostapi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.common.cache.CacheBuilder;
+import com.lmoustak.cardcostapi.caching.CacheMetrics;
+import com.lmoustak.cardcostapi.caching.RefreshAheadCache;
+import com.lmoustak.cardcostapi.caching.TwoTierCache;
+import com.lmoustak.cardcostapi.caching.TwoTierCacheManager;
+import com.lmoustak.cardcostapi.utils.Bulkhead;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+public class TwoTierCacheTests {
+
+  private Cache remoteCache;
+  private List<String> publishedKeys;
+  private TwoTierCache cache;
+
+  @BeforeEach
+  void setupCache() {
+    remoteCache = new ConcurrentMapCache("clearingCosts");
+    publishedKeys = new ArrayList<>();
+    cache = new TwoTierCache("clearingCosts",
+        CacheBuilder.newBuilder().maximumSize(100).build(),
+        remoteCache,
+        (cacheName, key) -> publishedKeys.add(key),
+        new CacheMetrics("clearingCosts", new SimpleMeterRegistry()));
+  }
+
+  @Test
+  void reads_should_be_served_from_the_local_tier_once_loaded() {
+    remoteCache.put("gr", "3");
+
+    assertEquals("3", cache.get("gr", String.class));
+
+    remoteCache.put("gr", "4");
+    assertEquals("3", cache.get("gr", String.class));
+    assertEquals(1, cache.getLocalCache().size());
+  }
+
+  @Test
+  void writes_should_go_to_both_tiers_and_be_published() {
+    cache.put(1L, "3");
+    cache.evict("uk");
+
+    assertEquals("3", remoteCache.get(1L, String.class));
+    assertEquals("3", cache.getLocalCache().getIfPresent("1").get());
+    assertEquals(List.of("1", "uk"), publishedKeys);
+  }
+
+  @Test
+  void remote_invalidation_should_only_evict_the_local_tier() {
+    cache.put("gr", "3");
+
+    cache.evictLocal("gr");
+
+    assertNull(cache.getLocalCache().getIfPresent("gr"));
+    assertEquals("3", cache.get("gr", String.class));
+  }
+
+  @Test
+  void invalidation_messages_from_other_nodes_should_evict_local_entries() {
+    StringRedisTemplate redisTemplate = mock();
+    var cacheManager = new TwoTierCacheManager(new ConcurrentMapCacheManager(), redisTemplate,
+        100, Duration.ofMinutes(1), new SimpleMeterRegistry());
+    var bins = (TwoTierCache) cacheManager.getCache("bins");
+    bins.put("403244", "eg");
+    verify(redisTemplate).convertAndSend(anyString(), anyString());
+
+    cacheManager.handleInvalidation("""
+        {"origin": "another-node", "cacheName": "bins", "key": "403244"}
+        """);
+
+    assertNull(bins.getLocalCache().getIfPresent("403244"));
+  }
+
+  @Test
+  void hot_keys_served_from_the_local_tier_should_be_refreshed_ahead() {
+    Clock clock = mock();
+    when(clock.millis()).thenReturn(0L);
+    List<Object> refreshedKeys = new ArrayList<>();
+    var refreshAheadCache = new RefreshAheadCache(new ConcurrentMapCache("bins"),
+        Duration.ofSeconds(100), 0.5, 0, new Bulkhead(8, Duration.ZERO), key -> {
+          refreshedKeys.add(key);
+          return CompletableFuture.completedFuture("cy");
+        }, clock);
+    var bins = new TwoTierCache("bins",
+        CacheBuilder.newBuilder().maximumSize(100).build(),
+        refreshAheadCache,
+        (cacheName, key) -> publishedKeys.add(key),
+        new CacheMetrics("bins", new SimpleMeterRegistry()));
+
+    assertEquals("gr", bins.get("403244", () -> "gr"));
+    assertEquals("gr", bins.get("403244", () -> "us"));
+    assertEquals(List.of(), refreshedKeys);
+
+    when(clock.millis()).thenReturn(Duration.ofSeconds(60).toMillis());
+    assertEquals("gr", bins.get("403244", () -> "us"));
+    assertEquals(List.of("403244"), refreshedKeys);
+    assertEquals(List.of("403244"), publishedKeys);
+    assertEquals("cy", bins.get("403244", () -> "us"));
+    assertEquals("cy", refreshAheadCache.get("403244", String.class));
+    assertEquals(List.of("403244"), refreshedKeys);
+  }
+
+  @Test
+  void lookups_and_loads_should_be_counted_per_tier() {
+    var meterRegistry = new SimpleMeterRegistry();
+    var metered = new TwoTierCache("clearingCosts",
+        CacheBuilder.newBuilder().maximumSize(100).build(),
+        remoteCache,
+        (cacheName, key) -> { },
+        new CacheMetrics("clearingCosts", meterRegistry));
+    remoteCache.put("gr", "3");
+
+    metered.get("gr");
+    metered.get("gr");
+    metered.get("de");
+    assertEquals("5", metered.get("us", () -> "5"));
+
+    assertEquals(1, lookups(meterRegistry, "hit", "local"));
+    assertEquals(1, lookups(meterRegistry, "hit", "remote"));
+    assertEquals(2, lookups(meterRegistry, "miss", "none"));
+    assertEquals(1, meterRegistry.get("cache.loads")
+        .tags("cache", "clearingCosts", "result", "success").timer().count());
+  }
+
+  private static double lookups(SimpleMeterRegistry meterRegistry, String result, String tier) {
+    return meterRegistry.get("cache.lookups")
+        .tags("cache", "clearingCosts", "result", result, "tier", tier)
+        .counter()
+        .count();
+  }
+
+}
@@ -0,0 +1,63 @@
+package com.lmoustak.cardcostapi.benchmarks;
+
+import com.lmoustak.cardcostapi.services.BinRangeIndex;
+import com.lmoustak.cardcostapi.utils.CountryCodes;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BinRangeIndexBenchmark {
+
+  private static final int LOOKUPS = 1024;
+
+  @Param({"1000", "100000"})
+  private int ranges;
+
+  private BinRangeIndex index;
+  private int[] bins;
+  private int next;
+
+  @Setup
+  public void setup() throws IOException {
+    SplittableRandom random = new SplittableRandom(42);
+    StringBuilder csv = new StringBuilder("start,end,country\n");
+    int width = 900_000 / ranges;
+    for (int i = 0; i < ranges; i++) {
+      int start = 100_000 + i * width;
+      csv.append(start).append(',')
+          .append(start + width / 2).append(',')
+          .append(CountryCodes.unpack((short) random.nextInt(CountryCodes.COUNT)))
+          .append('\n');
+    }
+    index = BinRangeIndex.parse(new StringReader(csv.toString()));
+
+    bins = new int[LOOKUPS];
+    for (int i = 0; i < LOOKUPS; i++) {
+      bins[i] = random.nextInt(100_000, 1_000_000);
+    }
+  }
+
+  @Benchmark
+  public String findCountry() {
+    next = (next + 1) & (LOOKUPS - 1);
+    return index.findCountry(bins[next]);
+  }
+}
@@ -0,0 +1,77 @@
+package com.lmoustak.cardcostapi.benchmarks;
+
+import com.lmoustak.cardcostapi.BinTableServiceBuilder;
+import com.lmoustak.cardcostapi.services.BinTableService;
+import com.lmoustak.cardcostapi.services.BinTableServiceImpl;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.annotation.AnnotationCacheOperationSource;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.cache.interceptor.CacheInterceptor;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CacheKeyBenchmark {
+
+  @Param({"6", "8"})
+  private int binLength;
+
+  private BinTableServiceImpl binTableService;
+  private BinTableService cachedBinTableService;
+  private String[] cardNumbers;
+  private int next;
+
+  @Setup
+  public void setup() {
+    var cacheManager = new ConcurrentMapCacheManager(BinTableServiceImpl.CACHE_NAME);
+    binTableService = BinTableServiceBuilder.binTableService()
+        .binLength(binLength)
+        .cacheManager(cacheManager)
+        .build();
+
+    var cacheInterceptor = new CacheInterceptor();
+    cacheInterceptor.setCacheOperationSource(new AnnotationCacheOperationSource());
+    cacheInterceptor.setCacheManager(cacheManager);
+    cacheInterceptor.afterSingletonsInstantiated();
+    var proxyFactory = new ProxyFactory(binTableService);
+    proxyFactory.addAdvice(cacheInterceptor);
+    cachedBinTableService = (BinTableService) proxyFactory.getProxy();
+
+    Cache cache = cacheManager.getCache(BinTableServiceImpl.CACHE_NAME);
+    cardNumbers = new String[1024];
+    for (int i = 0; i < cardNumbers.length; i++) {
+      cardNumbers[i] = "4%015d".formatted(i * 7_919_000_000L);
+      cache.put(binTableService.cacheKey(cardNumbers[i]), "gr");
+    }
+  }
+
+  private String nextCardNumber() {
+    return cardNumbers[next++ & (cardNumbers.length - 1)];
+  }
+
+  @Benchmark
+  public String cacheKey() {
+    return binTableService.cacheKey(nextCardNumber());
+  }
+
+  @Benchmark
+  public String cachedLookup() {
+    return cachedBinTableService.getCountryFromIssuerIdentificationNumber(nextCardNumber());
+  }
+}
@@ -0,0 +1,73 @@
+package com.lmoustak.cardcostapi.benchmarks;
+
+import com.lmoustak.cardcostapi.caching.CacheValueCodec;
+import com.lmoustak.cardcostapi.caching.RefreshAheadCache;
+import com.lmoustak.cardcostapi.entities.ClearingCosts;
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CacheValueCodecBenchmark {
+
+  @Param({"jdk", "binary"})
+  private String serializer;
+
+  @Param({"country", "refreshAheadEntry", "clearingCosts"})
+  private String value;
+
+  private RedisSerializer<Object> redisSerializer;
+  private Object cacheValue;
+  private byte[] serialized;
+
+  @Setup
+  public void setup() {
+    redisSerializer = switch (serializer) {
+      case "jdk" -> new JdkSerializationRedisSerializer();
+      case "binary" -> new CacheValueCodec();
+      default -> throw new IllegalArgumentException(serializer);
+    };
+
+    var clearingCosts = new ClearingCosts();
+    clearingCosts.setId(42L);
+    clearingCosts.setCountry("gr");
+    clearingCosts.setPrice(new BigDecimal("15.50"));
+    long now = System.currentTimeMillis();
+    cacheValue = switch (value) {
+      case "country" -> "GR";
+      case "refreshAheadEntry" -> new RefreshAheadCache.Entry("GR", now + 480_000, now + 600_000);
+      case "clearingCosts" -> clearingCosts;
+      default -> throw new IllegalArgumentException(value);
+    };
+
+    serialized = redisSerializer.serialize(cacheValue);
+    System.out.printf("%n%s %s: %d bytes per entry%n", serializer, value, serialized.length);
+  }
+
+  @Benchmark
+  public byte[] serialize() {
+    return redisSerializer.serialize(cacheValue);
+  }
+
+  @Benchmark
+  public Object deserialize() {
+    return redisSerializer.deserialize(serialized);
+  }
+}
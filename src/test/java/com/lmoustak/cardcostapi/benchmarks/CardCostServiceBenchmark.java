@@ -0,0 +1,82 @@
+package com.lmoustak.cardcostapi.benchmarks;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.lmoustak.cardcostapi.dtos.CardCostDto;
+import com.lmoustak.cardcostapi.entities.ClearingCosts;
+import com.lmoustak.cardcostapi.repositories.ClearingCostsRepository;
+import com.lmoustak.cardcostapi.services.CardCostServiceImpl;
+import com.lmoustak.cardcostapi.services.ClearingCostsMatrixHolder;
+import com.lmoustak.cardcostapi.services.ClearingCostsServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CardCostServiceBenchmark {
+
+  private static final String[] COUNTRIES = {"gr", "us", "gb", "de", "fr", "it", "es", "nl"};
+
+  private CardCostServiceImpl cardCostService;
+  private String[] cardNumbers;
+  private int next;
+
+  @Setup
+  public void setup() {
+    List<ClearingCosts> clearingCosts = new ArrayList<>();
+    for (int i = 0; i <= COUNTRIES.length; i++) {
+      var entity = new ClearingCosts();
+      entity.setId((long) i);
+      entity.setCountry(i < COUNTRIES.length ? COUNTRIES[i] : null);
+      entity.setPrice(new BigDecimal(i + ".50"));
+      clearingCosts.add(entity);
+    }
+    ClearingCostsRepository clearingCostsRepository = mock();
+    when(clearingCostsRepository.findAll()).thenReturn(clearingCosts);
+    var clearingCostsService = new ClearingCostsServiceImpl(clearingCostsRepository, null,
+        new ClearingCostsMatrixHolder(clearingCostsRepository), null, null, null, null,
+        new SimpleMeterRegistry(), 0, 0);
+
+    cardCostService = new CardCostServiceImpl(clearingCostsService,
+        issuerIdentificationNumber -> COUNTRIES[
+            Character.digit(issuerIdentificationNumber.charAt(5), 10) % COUNTRIES.length]);
+
+    cardNumbers = new String[1024];
+    for (int i = 0; i < cardNumbers.length; i++) {
+      cardNumbers[i] = "4%015d".formatted(i * 7_919_000_000L);
+    }
+  }
+
+  private String nextCardNumber() {
+    return cardNumbers[next++ & (cardNumbers.length - 1)];
+  }
+
+  @Benchmark
+  public CardCostDto findCardCost() {
+    return cardCostService.findCardCostFromIssuerIdentificationNumber(nextCardNumber());
+  }
+
+  @Benchmark
+  public CardCostDto findCardCostAsync() {
+    return cardCostService.findCardCostFromIssuerIdentificationNumberAsync(nextCardNumber())
+        .join();
+  }
+}
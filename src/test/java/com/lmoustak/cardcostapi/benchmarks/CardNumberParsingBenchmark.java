@@ -0,0 +1,46 @@
+package com.lmoustak.cardcostapi.benchmarks;
+
+import com.lmoustak.cardcostapi.utils.CardNumbers;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CardNumberParsingBenchmark {
+
+  private static final Pattern CARD_NUMBER_PATTERN = Pattern.compile("[0-9]{8,19}");
+  private static final int BIN_LENGTH = 6;
+
+  @Param({"4032448502837539", "4032-4485-0283"})
+  private String cardNumber;
+
+  @Benchmark
+  public String regexAndSubstring() {
+    if (!CARD_NUMBER_PATTERN.matcher(cardNumber).matches()) {
+      return null;
+    }
+    return cardNumber.substring(0, BIN_LENGTH);
+  }
+
+  @Benchmark
+  public int singlePass() {
+    if (!CardNumbers.isValid(cardNumber)) {
+      return CardNumbers.NOT_A_BIN;
+    }
+    return CardNumbers.packBin(cardNumber, BIN_LENGTH);
+  }
+}
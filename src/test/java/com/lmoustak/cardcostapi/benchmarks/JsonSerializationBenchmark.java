@@ -0,0 +1,57 @@
+package com.lmoustak.cardcostapi.benchmarks;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lmoustak.cardcostapi.dtos.CardCostDto;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ProblemDetail;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonSerializationBenchmark {
+
+  private ObjectMapper objectMapper;
+  private CardCostDto cardCost;
+  private ProblemDetail problemDetail;
+
+  @Setup
+  public void setup() {
+    objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    cardCost = new CardCostDto("gr", new BigDecimal("15.50"));
+    problemDetail = ProblemDetail.forStatusAndDetail(HttpStatus.BAD_REQUEST,
+        "One or more validation errors occurred. Please check the `errors` field.");
+    problemDetail.setTitle("Validation error");
+    problemDetail.setInstance(URI.create("/payment-cards-cost"));
+    problemDetail.setProperty("errors",
+        Map.of("card_number", "`card_number` should contain 8-19 numeric digits"));
+  }
+
+  @Benchmark
+  public byte[] cardCost() throws JsonProcessingException {
+    return objectMapper.writeValueAsBytes(cardCost);
+  }
+
+  @Benchmark
+  public byte[] problemDetail() throws JsonProcessingException {
+    return objectMapper.writeValueAsBytes(problemDetail);
+  }
+}
@@ -0,0 +1,114 @@
+package com.lmoustak.cardcostapi.benchmarks;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.google.common.cache.CacheBuilder;
+import com.lmoustak.cardcostapi.caching.CacheMetrics;
+import com.lmoustak.cardcostapi.caching.TwoTierCache;
+import com.lmoustak.cardcostapi.controllers.RateLimiterFilter;
+import com.lmoustak.cardcostapi.dtos.CardCostDto;
+import com.lmoustak.cardcostapi.entities.ClearingCosts;
+import com.lmoustak.cardcostapi.ratelimiting.LocalRateLimiter;
+import com.lmoustak.cardcostapi.repositories.ClearingCostsRepository;
+import com.lmoustak.cardcostapi.services.CardCostServiceImpl;
+import com.lmoustak.cardcostapi.services.ClearingCostsMatrixHolder;
+import com.lmoustak.cardcostapi.services.ClearingCostsServiceImpl;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.prometheusmetrics.PrometheusConfig;
+import io.micrometer.prometheusmetrics.PrometheusMeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.cache.Cache.ValueWrapper;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetricsOverheadBenchmark {
+
+  private static final FilterChain NO_OP_CHAIN = (request, response) -> {
+  };
+
+  @Param({"disabled", "prometheus"})
+  private String registry;
+
+  private CardCostServiceImpl cardCostService;
+  private RateLimiterFilter rateLimiterFilter;
+  private MockHttpServletRequest request;
+  private MockHttpServletResponse response;
+  private TwoTierCache cache;
+
+  @Setup
+  public void setup() {
+    MeterRegistry meterRegistry;
+    if (registry.equals("prometheus")) {
+      meterRegistry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+    } else {
+      meterRegistry = new SimpleMeterRegistry();
+      meterRegistry.config().meterFilter(MeterFilter.deny());
+    }
+
+    var clearingCosts = new ClearingCosts();
+    clearingCosts.setId(1L);
+    clearingCosts.setPrice(new BigDecimal("15.00"));
+    ClearingCostsRepository clearingCostsRepository = mock();
+    when(clearingCostsRepository.findAll()).thenReturn(List.of(clearingCosts));
+    var clearingCostsService = new ClearingCostsServiceImpl(clearingCostsRepository, null,
+        new ClearingCostsMatrixHolder(clearingCostsRepository), null, null, null, null,
+        meterRegistry, 0, 0);
+    cardCostService = new CardCostServiceImpl(clearingCostsService,
+        issuerIdentificationNumber -> "gr");
+
+    rateLimiterFilter = new RateLimiterFilter(
+        new LocalRateLimiter(1_000_000_000, 1_000_000_000, 100, Duration.ofMinutes(1)),
+        meterRegistry);
+    request = new MockHttpServletRequest("POST", "/payment-cards-cost");
+    request.setRemoteAddr("10.0.0.1");
+    response = new MockHttpServletResponse();
+
+    cache = new TwoTierCache("bins", CacheBuilder.newBuilder().maximumSize(100).build(),
+        new ConcurrentMapCache("bins"), (cacheName, key) -> {
+        }, new CacheMetrics("bins", meterRegistry));
+    cache.put("403244", "gr");
+  }
+
+  @Benchmark
+  public CardCostDto findCardCost() {
+    return cardCostService.findCardCostFromIssuerIdentificationNumber("4032448502837539");
+  }
+
+  @Benchmark
+  public MockHttpServletResponse rateLimiterFilter() throws ServletException, IOException {
+    rateLimiterFilter.doFilter(request, response, NO_OP_CHAIN);
+    return response;
+  }
+
+  @Benchmark
+  public ValueWrapper localCacheHit() {
+    return cache.get("403244");
+  }
+}
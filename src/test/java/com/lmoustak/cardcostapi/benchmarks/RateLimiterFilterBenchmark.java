@@ -0,0 +1,81 @@
+package com.lmoustak.cardcostapi.benchmarks;
+
+import com.lmoustak.cardcostapi.controllers.RateLimiterFilter;
+import com.lmoustak.cardcostapi.ratelimiting.LocalRateLimiter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(64)
+public class RateLimiterFilterBenchmark {
+
+  private static final FilterChain NO_OP_CHAIN = (request, response) -> {
+  };
+
+  @State(Scope.Benchmark)
+  public static class Limiter {
+
+    @Param({"1", "1024", "100000"})
+    private int clients;
+
+    private RateLimiterFilter filter;
+    private String[] ips;
+
+    @Setup
+    public void setup() {
+      filter = new RateLimiterFilter(
+          new LocalRateLimiter(1_000_000, 1_000_000, 100_000, Duration.ofMinutes(1)),
+          new SimpleMeterRegistry());
+      ips = new String[clients];
+      for (int i = 0; i < clients; i++) {
+        ips[i] = "10.%d.%d.%d".formatted(i >> 16, (i >> 8) & 0xff, i & 0xff);
+      }
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class Request {
+
+    private MockHttpServletRequest request;
+    private MockHttpServletResponse response;
+
+    @Setup
+    public void setup() {
+      request = new MockHttpServletRequest("POST", "/payment-cards-cost");
+      response = new MockHttpServletResponse();
+    }
+  }
+
+  @Benchmark
+  public MockHttpServletResponse doFilter(Limiter limiter, Request request)
+      throws ServletException, IOException {
+    request.request.setRemoteAddr(
+        limiter.ips[ThreadLocalRandom.current().nextInt(limiter.ips.length)]);
+    limiter.filter.doFilter(request.request, request.response, NO_OP_CHAIN);
+    return request.response;
+  }
+
+}
@@ -0,0 +1,73 @@
+package com.lmoustak.cardcostapi.benchmarks;
+
+import com.lmoustak.cardcostapi.ratelimiting.LocalRateLimiter;
+import com.lmoustak.cardcostapi.ratelimiting.RateLimitDecision;
+import com.lmoustak.cardcostapi.ratelimiting.RedisRateLimiter;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+// Needs a Redis server at ${redis.host:localhost}:${redis.port:6379}, e.g.
+// docker run --rm -p 6379:6379 redis. Without one, the limiter falls back to its local buckets
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(16)
+public class RedisRateLimiterBenchmark {
+
+  private static final int CLIENTS = 1024;
+
+  @Param({"1", "5"})
+  private int leaseSize;
+
+  private LettuceConnectionFactory connectionFactory;
+  private RedisRateLimiter rateLimiter;
+  private String[] clients;
+
+  @Setup
+  public void setup() {
+    connectionFactory = new LettuceConnectionFactory(new RedisStandaloneConfiguration(
+        System.getProperty("redis.host", "localhost"),
+        Integer.getInteger("redis.port", 6379)));
+    connectionFactory.afterPropertiesSet();
+    connectionFactory.start();
+
+    rateLimiter = new RedisRateLimiter(new StringRedisTemplate(connectionFactory),
+        new LocalRateLimiter(1_000_000, 1_000_000, CLIENTS, Duration.ofMinutes(1)), CLIENTS,
+        leaseSize, Duration.ofSeconds(1), Duration.ofSeconds(5));
+    clients = new String[CLIENTS];
+    for (int i = 0; i < CLIENTS; i++) {
+      clients[i] = "10.0.%d.%d".formatted(i >> 8, i & 0xff);
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    connectionFactory.destroy();
+  }
+
+  @Benchmark
+  public RateLimitDecision tryAcquire() {
+    return rateLimiter.tryAcquire(clients[ThreadLocalRandom.current().nextInt(CLIENTS)]);
+  }
+
+}
@@ -0,0 +1,144 @@
+package com.lmoustak.cardcostapi.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+public class BinTableStub implements AutoCloseable {
+
+  private static final String[] COUNTRIES = {"GR", "US", "GB", "DE", "FR", "IT", "ES", "NL"};
+
+  // Probit of 0.99, to derive the spread of a log-normal distribution from its p99
+  private static final double Z_99 = 2.3263;
+
+  public record Settings(Duration medianLatency, Duration p99Latency, double errorRate,
+      double quotaRate, double unknownRate) {
+  }
+
+  private final Settings settings;
+  private final double latencyMu;
+  private final double latencySigma;
+  private final HttpServer server;
+  private final ExecutorService executor;
+
+  private final LongAdder found = new LongAdder();
+  private final LongAdder notFound = new LongAdder();
+  private final LongAdder errors = new LongAdder();
+  private final LongAdder quotaExceeded = new LongAdder();
+
+  private BinTableStub(Settings settings) throws IOException {
+    this.settings = settings;
+    this.latencyMu = Math.log(settings.medianLatency().toNanos());
+    this.latencySigma = Math.max(0,
+        (Math.log(settings.p99Latency().toNanos()) - latencyMu) / Z_99);
+
+    executor = Executors.newCachedThreadPool(runnable -> {
+      var thread = new Thread(runnable, "bintable-stub");
+      thread.setDaemon(true);
+      return thread;
+    });
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 1024);
+    server.setExecutor(executor);
+    server.createContext("/", this::handle);
+  }
+
+  public static BinTableStub start(Settings settings) throws IOException {
+    var stub = new BinTableStub(settings);
+    stub.server.start();
+    return stub;
+  }
+
+  public String baseUrl() {
+    return "http://localhost:" + server.getAddress().getPort();
+  }
+
+  public long calls() {
+    return found.sum() + notFound.sum() + errors.sum() + quotaExceeded.sum();
+  }
+
+  public long found() {
+    return found.sum();
+  }
+
+  public long notFound() {
+    return notFound.sum();
+  }
+
+  public long errors() {
+    return errors.sum();
+  }
+
+  public long quotaExceeded() {
+    return quotaExceeded.sum();
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    try (exchange) {
+      String path = exchange.getRequestURI().getPath();
+      String bin = path.substring(path.lastIndexOf('/') + 1);
+      ThreadLocalRandom random = ThreadLocalRandom.current();
+
+      sleep(latencySigma == 0 ? settings.medianLatency().toNanos()
+          : (long) Math.exp(latencyMu + latencySigma * random.nextGaussian()));
+
+      double outcome = random.nextDouble();
+      if (outcome < settings.quotaRate()) {
+        quotaExceeded.increment();
+        respond(exchange, 401, "{\"result\":401,"
+            + "\"message\":\"Your balance is exhausted,or package expired\"}");
+      } else if (outcome < settings.quotaRate() + settings.errorRate()) {
+        errors.increment();
+        respond(exchange, 503, "{\"result\":503,\"message\":\"Service unavailable\"}");
+      } else if (isUnknown(bin)) {
+        notFound.increment();
+        respond(exchange, 404, "{\"result\":404,\"message\":\"BIN not found\"}");
+      } else {
+        found.increment();
+        respond(exchange, 200, "{\"result\":200,\"message\":\"SUCCESS\","
+            + "\"data\":{\"country\":{\"code\":\"%s\"}}}".formatted(countryOf(bin)));
+      }
+    }
+  }
+
+  // Whether a BIN is known, and its country, are fixed per BIN so that cached answers stay valid
+  private boolean isUnknown(String bin) {
+    return Math.floorMod(bin.hashCode() * 31 + 17, 10_000) < settings.unknownRate() * 10_000;
+  }
+
+  private static String countryOf(String bin) {
+    return COUNTRIES[Math.floorMod(bin.hashCode(), COUNTRIES.length)];
+  }
+
+  private static void sleep(long nanos) {
+    try {
+      TimeUnit.NANOSECONDS.sleep(nanos);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static void respond(HttpExchange exchange, int status, String body)
+      throws IOException {
+    byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().set("Content-Type", "application/json");
+    exchange.sendResponseHeaders(status, bytes.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(bytes);
+    }
+  }
+
+  @Override
+  public void close() {
+    server.stop(0);
+    executor.shutdownNow();
+  }
+}
@@ -0,0 +1,368 @@
+package com.lmoustak.cardcostapi.loadtest;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Pattern;
+
+// A Redis stand-in speaking RESP2, with just the commands the application sends: strings with
+// expiry, MGET, SCAN, DEL and pub/sub. Scripts are not supported, so rate-limit.mode=redis is not
+public class InProcessRedis implements AutoCloseable {
+
+  private record Value(byte[] bytes, long expiresAt) {
+
+    boolean isExpired(long now) {
+      return expiresAt > 0 && now >= expiresAt;
+    }
+  }
+
+  private final ServerSocket serverSocket;
+  private final ExecutorService executor;
+  private final Map<String, Value> values = new ConcurrentHashMap<>();
+  private final Map<String, Set<Connection>> subscribers = new ConcurrentHashMap<>();
+
+  private InProcessRedis() throws IOException {
+    serverSocket = new ServerSocket(0, 128, InetAddress.getLoopbackAddress());
+    executor = Executors.newCachedThreadPool(runnable -> {
+      var thread = new Thread(runnable, "in-process-redis");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  public static InProcessRedis start() throws IOException {
+    var redis = new InProcessRedis();
+    redis.executor.execute(redis::accept);
+    return redis;
+  }
+
+  public int port() {
+    return serverSocket.getLocalPort();
+  }
+
+  private void accept() {
+    while (!serverSocket.isClosed()) {
+      try {
+        Socket socket = serverSocket.accept();
+        socket.setTcpNoDelay(true);
+        executor.execute(new Connection(socket));
+      } catch (IOException e) {
+        if (!serverSocket.isClosed()) {
+          throw new IllegalStateException("Could not accept Redis connection", e);
+        }
+      }
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    serverSocket.close();
+    executor.shutdownNow();
+  }
+
+  private class Connection implements Runnable {
+
+    private final Socket socket;
+    private final InputStream in;
+    private final OutputStream out;
+    private final Set<String> channels = ConcurrentHashMap.newKeySet();
+
+    Connection(Socket socket) throws IOException {
+      this.socket = socket;
+      this.in = new BufferedInputStream(socket.getInputStream());
+      this.out = new BufferedOutputStream(socket.getOutputStream());
+    }
+
+    @Override
+    public void run() {
+      try (socket) {
+        while (true) {
+          List<byte[]> command = readCommand();
+          synchronized (this) {
+            execute(command);
+            // Replies to pipelined commands are sent together
+            if (in.available() == 0) {
+              out.flush();
+            }
+          }
+        }
+      } catch (IOException e) {
+        // The client disconnected
+      } finally {
+        channels.forEach(channel -> subscribers.getOrDefault(channel, Set.of()).remove(this));
+      }
+    }
+
+    private List<byte[]> readCommand() throws IOException {
+      String header = readLine();
+      if (!header.startsWith("*")) {
+        throw new IOException("Expected a RESP array but got '" + header + "'");
+      }
+      int count = Integer.parseInt(header.substring(1));
+      List<byte[]> arguments = new ArrayList<>(count);
+      for (int i = 0; i < count; i++) {
+        String length = readLine();
+        byte[] argument = in.readNBytes(Integer.parseInt(length.substring(1)));
+        readLine();
+        arguments.add(argument);
+      }
+      return arguments;
+    }
+
+    private String readLine() throws IOException {
+      var line = new StringBuilder();
+      int c;
+      while ((c = in.read()) != '\r') {
+        if (c == -1) {
+          throw new EOFException();
+        }
+        line.append((char) c);
+      }
+      in.read();
+      return line.toString();
+    }
+
+    private void execute(List<byte[]> command) throws IOException {
+      String name = string(command.get(0)).toUpperCase(Locale.ROOT);
+      long now = System.currentTimeMillis();
+      switch (name) {
+        case "GET" -> writeBulk(get(string(command.get(1)), now));
+        case "MGET" -> {
+          writeArrayHeader(command.size() - 1);
+          for (int i = 1; i < command.size(); i++) {
+            writeBulk(get(string(command.get(i)), now));
+          }
+        }
+        case "SET" -> set(command, now);
+        case "DEL" -> {
+          int deleted = 0;
+          for (int i = 1; i < command.size(); i++) {
+            Value removed = values.remove(string(command.get(i)));
+            if (removed != null && !removed.isExpired(now)) {
+              deleted++;
+            }
+          }
+          writeInteger(deleted);
+        }
+        case "EXISTS" -> {
+          int existing = 0;
+          for (int i = 1; i < command.size(); i++) {
+            if (get(string(command.get(i)), now) != null) {
+              existing++;
+            }
+          }
+          writeInteger(existing);
+        }
+        case "SCAN" -> scan(command, now);
+        case "DBSIZE" -> writeInteger(values.size());
+        case "FLUSHDB", "FLUSHALL" -> {
+          values.clear();
+          writeSimple("OK");
+        }
+        case "PUBLISH" -> writeInteger(publish(string(command.get(1)), command.get(2)));
+        case "SUBSCRIBE" -> {
+          for (int i = 1; i < command.size(); i++) {
+            String channel = string(command.get(i));
+            channels.add(channel);
+            subscribers.computeIfAbsent(channel, key -> ConcurrentHashMap.newKeySet()).add(this);
+            writeSubscription("subscribe", channel);
+          }
+        }
+        case "UNSUBSCRIBE" -> {
+          List<String> unsubscribed = new ArrayList<>();
+          for (int i = 1; i < command.size(); i++) {
+            unsubscribed.add(string(command.get(i)));
+          }
+          if (unsubscribed.isEmpty()) {
+            unsubscribed.addAll(channels);
+          }
+          if (unsubscribed.isEmpty()) {
+            writeSubscription("unsubscribe", null);
+          }
+          for (String channel : unsubscribed) {
+            channels.remove(channel);
+            subscribers.getOrDefault(channel, Set.of()).remove(this);
+            writeSubscription("unsubscribe", channel);
+          }
+        }
+        case "TIME" -> {
+          long micros = System.nanoTime() / 1000 % 1_000_000;
+          writeArrayHeader(2);
+          writeBulk(bytes(String.valueOf(now / 1000)));
+          writeBulk(bytes(String.valueOf(micros)));
+        }
+        case "PING" -> writeSimple("PONG");
+        case "CLIENT", "SELECT", "READONLY" -> writeSimple("OK");
+        default -> writeError("ERR unknown command '" + name + "'");
+      }
+    }
+
+    private byte[] get(String key, long now) {
+      Value value = values.get(key);
+      if (value == null) {
+        return null;
+      }
+      if (value.isExpired(now)) {
+        values.remove(key, value);
+        return null;
+      }
+      return value.bytes();
+    }
+
+    private void set(List<byte[]> command, long now) throws IOException {
+      String key = string(command.get(1));
+      long expiresAt = 0;
+      boolean ifAbsent = false;
+      boolean ifPresent = false;
+      for (int i = 3; i < command.size(); i++) {
+        switch (string(command.get(i)).toUpperCase(Locale.ROOT)) {
+          case "EX" -> expiresAt = now + 1000 * Long.parseLong(string(command.get(++i)));
+          case "PX" -> expiresAt = now + Long.parseLong(string(command.get(++i)));
+          case "NX" -> ifAbsent = true;
+          case "XX" -> ifPresent = true;
+          default -> {
+            writeError("ERR syntax error");
+            return;
+          }
+        }
+      }
+
+      var value = new Value(command.get(2), expiresAt);
+      boolean written;
+      if (ifAbsent || ifPresent) {
+        // Compute keeps the check and the write atomic with other connections
+        boolean[] applied = new boolean[1];
+        boolean absent = ifAbsent;
+        values.compute(key, (k, existing) -> {
+          boolean exists = existing != null && !existing.isExpired(now);
+          applied[0] = absent != exists;
+          return applied[0] ? value : existing;
+        });
+        written = applied[0];
+      } else {
+        values.put(key, value);
+        written = true;
+      }
+
+      if (written) {
+        writeSimple("OK");
+      } else {
+        writeBulk(null);
+      }
+    }
+
+    private void scan(List<byte[]> command, long now) throws IOException {
+      Pattern pattern = null;
+      for (int i = 2; i < command.size(); i += 2) {
+        if (string(command.get(i)).equalsIgnoreCase("MATCH")) {
+          pattern = glob(string(command.get(i + 1)));
+        }
+      }
+
+      // Every key is returned at once, with a cursor that ends the scan
+      List<String> keys = new ArrayList<>();
+      for (Map.Entry<String, Value> entry : values.entrySet()) {
+        if (!entry.getValue().isExpired(now)
+            && (pattern == null || pattern.matcher(entry.getKey()).matches())) {
+          keys.add(entry.getKey());
+        }
+      }
+      writeArrayHeader(2);
+      writeBulk(bytes("0"));
+      writeArrayHeader(keys.size());
+      for (String key : keys) {
+        writeBulk(bytes(key));
+      }
+    }
+
+    private int publish(String channel, byte[] message) {
+      Set<Connection> receivers = subscribers.getOrDefault(channel, Set.of());
+      for (Connection receiver : receivers) {
+        receiver.deliver(channel, message);
+      }
+      return receivers.size();
+    }
+
+    private synchronized void deliver(String channel, byte[] message) {
+      try {
+        writeArrayHeader(3);
+        writeBulk(bytes("message"));
+        writeBulk(bytes(channel));
+        writeBulk(message);
+        out.flush();
+      } catch (IOException e) {
+        // The subscriber disconnected and is removed once its own thread notices
+      }
+    }
+
+    private void writeSubscription(String kind, String channel) throws IOException {
+      writeArrayHeader(3);
+      writeBulk(bytes(kind));
+      writeBulk(channel == null ? null : bytes(channel));
+      writeInteger(channels.size());
+    }
+
+    private void writeSimple(String value) throws IOException {
+      out.write(bytes("+" + value + "\r\n"));
+    }
+
+    private void writeError(String message) throws IOException {
+      out.write(bytes("-" + message + "\r\n"));
+    }
+
+    private void writeInteger(long value) throws IOException {
+      out.write(bytes(":" + value + "\r\n"));
+    }
+
+    private void writeArrayHeader(int size) throws IOException {
+      out.write(bytes("*" + size + "\r\n"));
+    }
+
+    private void writeBulk(byte[] value) throws IOException {
+      if (value == null) {
+        out.write(bytes("$-1\r\n"));
+        return;
+      }
+      out.write(bytes("$" + value.length + "\r\n"));
+      out.write(value);
+      out.write('\r');
+      out.write('\n');
+    }
+  }
+
+  // Keys are kept as ISO-8859-1 strings, which map every byte to a char and back unchanged
+  private static String string(byte[] bytes) {
+    return new String(bytes, StandardCharsets.ISO_8859_1);
+  }
+
+  private static byte[] bytes(String string) {
+    return string.getBytes(StandardCharsets.ISO_8859_1);
+  }
+
+  private static Pattern glob(String glob) {
+    var regex = new StringBuilder();
+    for (char c : glob.toCharArray()) {
+      switch (c) {
+        case '*' -> regex.append(".*");
+        case '?' -> regex.append('.');
+        default -> regex.append(Pattern.quote(String.valueOf(c)));
+      }
+    }
+    return Pattern.compile(regex.toString(), Pattern.DOTALL);
+  }
+}
@@ -0,0 +1,97 @@
+package com.lmoustak.cardcostapi.loadtest;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+public class LoadGenerator {
+
+  // Status reported for requests that got no response at all
+  public static final int NO_RESPONSE = -1;
+
+  private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+  public record Result(Histogram latencyMicros, Map<Integer, Long> statuses, Duration elapsed) {
+
+    public long requests() {
+      return latencyMicros.getTotalCount();
+    }
+
+    public double throughput() {
+      return requests() / (elapsed.toNanos() / 1e9);
+    }
+  }
+
+  private final HttpClient httpClient;
+  private final URI uri;
+  private final Supplier<String> cardNumbers;
+  private final double requestsPerSecond;
+
+  public LoadGenerator(HttpClient httpClient, URI uri, Supplier<String> cardNumbers,
+      double requestsPerSecond) {
+    this.httpClient = httpClient;
+    this.uri = uri;
+    this.cardNumbers = cardNumbers;
+    this.requestsPerSecond = requestsPerSecond;
+  }
+
+  // Requests are sent on a fixed schedule, whether or not earlier ones have completed. Latency
+  // is measured from the time a request was due to be sent, so a stalled server shows up in the
+  // percentiles instead of silently lowering the request rate (coordinated omission)
+  public Result run(Duration duration) {
+    var recorder = new Recorder(3);
+    Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+    List<CompletableFuture<?>> requests = new ArrayList<>();
+
+    long intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / requestsPerSecond);
+    long start = System.nanoTime();
+    long end = start + duration.toNanos();
+    for (long due = start; due < end; due += intervalNanos) {
+      long now;
+      while ((now = System.nanoTime()) < due) {
+        LockSupport.parkNanos(due - now);
+      }
+
+      long scheduled = due;
+      requests.add(httpClient.sendAsync(request(cardNumbers.get()),
+              HttpResponse.BodyHandlers.discarding())
+          .handle((response, error) -> {
+            recorder.recordValue(
+                TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - scheduled));
+            statuses.computeIfAbsent(error == null ? response.statusCode() : NO_RESPONSE,
+                status -> new LongAdder()).increment();
+            return null;
+          }));
+    }
+    CompletableFuture.allOf(requests.toArray(CompletableFuture[]::new)).join();
+    Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+    Map<Integer, Long> statusCounts = new TreeMap<>();
+    statuses.forEach((status, count) -> statusCounts.put(status, count.sum()));
+    return new Result(recorder.getIntervalHistogram(), statusCounts, elapsed);
+  }
+
+  private HttpRequest request(String cardNumber) {
+    return HttpRequest.newBuilder(uri)
+        .timeout(REQUEST_TIMEOUT)
+        .header("Content-Type", "application/json")
+        .POST(HttpRequest.BodyPublishers.ofString(
+            "{\"card_number\":\"" + cardNumber + "\"}", StandardCharsets.UTF_8))
+        .build();
+  }
+}
@@ -0,0 +1,160 @@
+package com.lmoustak.cardcostapi.loadtest;
+
+import com.lmoustak.cardcostapi.CardCostApiApplication;
+import com.lmoustak.cardcostapi.services.ClearingCostsService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+// Runs the application against a BINTable stub and an in-process Redis, and drives
+// POST /payment-cards-cost at a fixed rate. Run with: mvn verify -Ploadtest -DskipTests
+public class LoadTest {
+
+  private static final String[] COUNTRIES = {"gr", "us", "gb", "de", "fr", "it", "es", "nl"};
+  private static final int FIRST_BIN = 100_000;
+
+  private record CacheLookups(long hits, long misses) {
+
+    CacheLookups minus(CacheLookups other) {
+      return new CacheLookups(hits - other.hits, misses - other.misses);
+    }
+
+    double hitRatio() {
+      return hits + misses == 0 ? Double.NaN : (double) hits / (hits + misses);
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    LoadTestSettings settings = LoadTestSettings.parse(args);
+    if (settings.bins() > 1_000_000 - FIRST_BIN) {
+      throw new IllegalArgumentException("At most 900000 distinct BINs are supported");
+    }
+
+    try (InProcessRedis redis = InProcessRedis.start();
+        BinTableStub binTable = BinTableStub.start(settings.binTable());
+        ConfigurableApplicationContext application = startApplication(redis, binTable)) {
+      seedClearingCosts(application.getBean(ClearingCostsService.class));
+      int port = ((WebServerApplicationContext) application).getWebServer().getPort();
+
+      var loadGenerator = new LoadGenerator(HttpClient.newHttpClient(),
+          URI.create("http://localhost:" + port + "/payment-cards-cost"),
+          cardNumbers(settings), settings.requestsPerSecond());
+      MeterRegistry meterRegistry = application.getBean(MeterRegistry.class);
+
+      System.out.printf("Warming up for %s%n", settings.warmup());
+      loadGenerator.run(settings.warmup());
+
+      Map<String, CacheLookups> lookupsBefore = cacheLookups(meterRegistry);
+      long binTableCallsBefore = binTable.calls();
+      System.out.printf("Sending %.0f requests/s for %s%n", settings.requestsPerSecond(),
+          settings.duration());
+      LoadGenerator.Result result = loadGenerator.run(settings.duration());
+
+      Map<String, CacheLookups> lookups = new TreeMap<>();
+      cacheLookups(meterRegistry).forEach((cache, after) -> lookups.put(cache,
+          after.minus(lookupsBefore.getOrDefault(cache, new CacheLookups(0, 0)))));
+      report(settings, result, lookups, binTable.calls() - binTableCallsBefore, binTable);
+    }
+  }
+
+  private static ConfigurableApplicationContext startApplication(InProcessRedis redis,
+      BinTableStub binTable) {
+    Map<String, Object> properties = new HashMap<>();
+    properties.put("server.port", 0);
+    properties.put("spring.main.banner-mode", "off");
+    properties.put("spring.datasource.url", "jdbc:h2:mem:loadtest;DB_CLOSE_DELAY=-1");
+    properties.put("spring.datasource.username", "sa");
+    properties.put("spring.datasource.password", "");
+    properties.put("spring.data.redis.host", "localhost");
+    properties.put("spring.data.redis.port", redis.port());
+    properties.put("bintable.base-url", binTable.baseUrl());
+    properties.put("bintable.api-key", "load-test");
+    // Every request comes from the same address, so only the generator limits the rate
+    properties.put("rate-limit.permits-per-second", 1_000_000);
+    properties.put("rate-limit.burst", 1_000_000);
+    properties.put("logging.level.root", "WARN");
+    // Injected BINTable faults are reported at the end instead of logged one by one
+    properties.put("logging.level.com.lmoustak.cardcostapi.services", "OFF");
+    // Passed as arguments, as these take precedence over application.yml
+    return new SpringApplicationBuilder(CardCostApiApplication.class)
+        .run(properties.entrySet().stream()
+            .map(property -> "--" + property.getKey() + "=" + property.getValue())
+            .toArray(String[]::new));
+  }
+
+  private static void seedClearingCosts(ClearingCostsService clearingCostsService) {
+    clearingCostsService.createClearingCosts(null, new BigDecimal("10"));
+    for (int i = 0; i < COUNTRIES.length; i++) {
+      clearingCostsService.createClearingCosts(COUNTRIES[i], new BigDecimal(5 + i));
+    }
+  }
+
+  private static Supplier<String> cardNumbers(LoadTestSettings settings) {
+    var zipf = new ZipfianGenerator(settings.bins(), settings.zipfExponent());
+    var random = new SplittableRandom(42);
+    // Spread popular BINs over the whole range instead of having them all next to each other
+    int stride = 7_919;
+    return () -> {
+      int bin = FIRST_BIN + (int) ((long) zipf.next(random) * stride % zipf.items());
+      return "%d%010d".formatted(bin, random.nextLong(10_000_000_000L));
+    };
+  }
+
+  // Two-tier caches publish cache.lookups, Guava ones (such as binsNegative) cache.gets
+  private static Map<String, CacheLookups> cacheLookups(MeterRegistry meterRegistry) {
+    Map<String, CacheLookups> lookups = new HashMap<>();
+    for (Counter counter : meterRegistry.find("cache.lookups").counters()) {
+      addLookups(lookups, counter.getId(), counter.count());
+    }
+    for (FunctionCounter counter : meterRegistry.find("cache.gets").functionCounters()) {
+      addLookups(lookups, counter.getId(), counter.count());
+    }
+    return lookups;
+  }
+
+  private static void addLookups(Map<String, CacheLookups> lookups, Meter.Id id, double count) {
+    boolean hit = "hit".equals(id.getTag("result"));
+    lookups.merge(id.getTag("cache"),
+        new CacheLookups(hit ? (long) count : 0, hit ? 0 : (long) count),
+        (a, b) -> new CacheLookups(a.hits + b.hits, a.misses + b.misses));
+  }
+
+  private static void report(LoadTestSettings settings, LoadGenerator.Result result,
+      Map<String, CacheLookups> cacheLookups, long binTableCalls, BinTableStub binTable) {
+    Histogram latency = result.latencyMicros();
+    System.out.println();
+    System.out.printf("Requests:    %d in %s (%.1f/s, target %.1f/s)%n", result.requests(),
+        result.elapsed(), result.throughput(), settings.requestsPerSecond());
+    System.out.printf("Statuses:    %s (%d = no response)%n", result.statuses(),
+        LoadGenerator.NO_RESPONSE);
+    System.out.println("Latency (ms):");
+    for (double percentile : new double[] {50, 90, 99, 99.9, 99.99}) {
+      System.out.printf("  p%-6s %10.2f%n", percentile,
+          latency.getValueAtPercentile(percentile) / 1000.0);
+    }
+    System.out.printf("  max     %10.2f%n", latency.getMaxValue() / 1000.0);
+    // BINs resolved before are answered from memory, so only the rest reach the bins cache
+    System.out.println("Cache hit ratios:");
+    cacheLookups.forEach((cache, lookups) -> System.out.printf("  %-14s %6.2f%% of %d%n",
+        cache, lookups.hitRatio() * 100, lookups.hits() + lookups.misses()));
+    System.out.printf("BINTable:    %d calls, %.1f%% of requests answered without one; "
+            + "overall %d found, %d not found, %d errors, %d over quota%n",
+        binTableCalls,
+        100 - 100.0 * binTableCalls / Math.max(1, result.requests()),
+        binTable.found(), binTable.notFound(), binTable.errors(), binTable.quotaExceeded());
+  }
+}
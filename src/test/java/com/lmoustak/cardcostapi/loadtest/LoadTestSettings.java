@@ -0,0 +1,44 @@
+package com.lmoustak.cardcostapi.loadtest;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import org.springframework.boot.convert.DurationStyle;
+
+public record LoadTestSettings(double requestsPerSecond, Duration duration, Duration warmup,
+    int bins, double zipfExponent, BinTableStub.Settings binTable) {
+
+  // Arguments are given as key=value pairs, e.g. rate=500 duration=2m bintable-error-rate=0.05
+  public static LoadTestSettings parse(String... args) {
+    Map<String, String> values = new HashMap<>();
+    for (String arg : args) {
+      int separator = arg.indexOf('=');
+      if (separator < 1) {
+        throw new IllegalArgumentException("Expected key=value but got '" + arg + "'");
+      }
+      values.put(arg.substring(0, separator), arg.substring(separator + 1));
+    }
+
+    var binTable = new BinTableStub.Settings(
+        duration(values, "bintable-median-latency", "80ms"),
+        duration(values, "bintable-p99-latency", "400ms"),
+        number(values, "bintable-error-rate", "0.01"),
+        number(values, "bintable-quota-rate", "0"),
+        number(values, "bintable-unknown-rate", "0.02"));
+    return new LoadTestSettings(
+        number(values, "rate", "200"),
+        duration(values, "duration", "30s"),
+        duration(values, "warmup", "10s"),
+        (int) number(values, "bins", "100000"),
+        number(values, "zipf-exponent", "0.99"),
+        binTable);
+  }
+
+  private static Duration duration(Map<String, String> values, String key, String fallback) {
+    return DurationStyle.detectAndParse(values.getOrDefault(key, fallback));
+  }
+
+  private static double number(Map<String, String> values, String key, String fallback) {
+    return Double.parseDouble(values.getOrDefault(key, fallback));
+  }
+}
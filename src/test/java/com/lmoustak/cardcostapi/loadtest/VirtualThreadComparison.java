@@ -0,0 +1,105 @@
+package com.lmoustak.cardcostapi.loadtest;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import com.lmoustak.cardcostapi.entities.ClearingCosts;
+import com.lmoustak.cardcostapi.services.BinTableService;
+import com.lmoustak.cardcostapi.services.CardCostService;
+import com.lmoustak.cardcostapi.services.CardCostServiceImpl;
+import com.lmoustak.cardcostapi.services.ClearingCostsService;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.springframework.boot.system.JavaVersion;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+
+// Prices cards against a BINTable stub that blocks for a fixed latency, on a pool the size of
+// Tomcat's and on virtual threads, and reports throughput and p99 latency of both.
+// Run with: mvn verify -Ploadtest -DskipTests, on Java 21 or newer
+public class VirtualThreadComparison {
+
+  private static final int REQUESTS = 2000;
+  private static final int TOMCAT_MAX_THREADS = 200;
+  private static final long BIN_TABLE_LATENCY_MILLIS = 300;
+
+  private record LoadResult(double throughput, double p99Millis) {
+  }
+
+  public static void main(String[] args) throws InterruptedException {
+    if (!JavaVersion.getJavaVersion().isEqualOrNewerThan(JavaVersion.TWENTY_ONE)) {
+      System.out.printf("Skipping the virtual thread comparison: Java %s has no virtual "
+          + "threads%n", JavaVersion.getJavaVersion());
+      return;
+    }
+
+    CardCostService cardCostService = cardCostService();
+
+    ExecutorService platformPool = Executors.newFixedThreadPool(TOMCAT_MAX_THREADS);
+    LoadResult platform = run(cardCostService, platformPool);
+    platformPool.shutdown();
+    platformPool.awaitTermination(10, TimeUnit.SECONDS);
+
+    var virtualThreads = new SimpleAsyncTaskExecutor("load-test-");
+    virtualThreads.setVirtualThreads(true);
+    LoadResult virtual = run(cardCostService, virtualThreads);
+
+    System.out.println();
+    System.out.printf("%d requests, BINTable latency %d ms%n", REQUESTS,
+        BIN_TABLE_LATENCY_MILLIS);
+    System.out.printf("Platform (%d threads): %8.0f req/s, p99 %6.0f ms%n", TOMCAT_MAX_THREADS,
+        platform.throughput(), platform.p99Millis());
+    System.out.printf("Virtual threads:       %8.0f req/s, p99 %6.0f ms%n",
+        virtual.throughput(), virtual.p99Millis());
+  }
+
+  private static CardCostService cardCostService() {
+    BinTableService slowBinTableService = issuerIdentificationNumber -> {
+      try {
+        Thread.sleep(BIN_TABLE_LATENCY_MILLIS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return "gr";
+    };
+
+    var clearingCosts = new ClearingCosts();
+    clearingCosts.setCountry("gr");
+    clearingCosts.setPrice(new BigDecimal("3"));
+    ClearingCostsService clearingCostsService = mock(withSettings().stubOnly());
+    when(clearingCostsService.readClearingCostsByCountry(any()))
+        .thenReturn(Optional.of(clearingCosts));
+
+    return new CardCostServiceImpl(clearingCostsService, slowBinTableService);
+  }
+
+  private static LoadResult run(CardCostService cardCostService, Executor requestExecutor) {
+    long[] latencies = new long[REQUESTS];
+    List<CompletableFuture<Void>> requests = new ArrayList<>(REQUESTS);
+
+    long start = System.nanoTime();
+    for (int i = 0; i < REQUESTS; i++) {
+      int request = i;
+      long submitted = System.nanoTime();
+      requests.add(CompletableFuture.runAsync(() -> {
+        cardCostService.findCardCostFromIssuerIdentificationNumber("4032448502837539");
+        latencies[request] = System.nanoTime() - submitted;
+      }, requestExecutor));
+    }
+    CompletableFuture.allOf(requests.toArray(CompletableFuture[]::new)).join();
+    long elapsed = System.nanoTime() - start;
+
+    Arrays.sort(latencies);
+    return new LoadResult(REQUESTS / (elapsed / 1e9),
+        latencies[(int) (REQUESTS * 0.99) - 1] / 1e6);
+  }
+}
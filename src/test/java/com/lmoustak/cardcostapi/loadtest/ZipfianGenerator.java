@@ -0,0 +1,35 @@
+package com.lmoustak.cardcostapi.loadtest;
+
+import java.util.Arrays;
+import java.util.random.RandomGenerator;
+
+public class ZipfianGenerator {
+
+  private final double[] cumulativeProbabilities;
+
+  public ZipfianGenerator(int items, double exponent) {
+    if (items < 1) {
+      throw new IllegalArgumentException("At least one item is needed, got " + items);
+    }
+
+    cumulativeProbabilities = new double[items];
+    double sum = 0;
+    for (int rank = 0; rank < items; rank++) {
+      sum += 1 / Math.pow(rank + 1, exponent);
+      cumulativeProbabilities[rank] = sum;
+    }
+    for (int rank = 0; rank < items; rank++) {
+      cumulativeProbabilities[rank] /= sum;
+    }
+  }
+
+  public int items() {
+    return cumulativeProbabilities.length;
+  }
+
+  // Returns the 0-based rank of the next item, rank 0 being the most frequent one
+  public int next(RandomGenerator random) {
+    int index = Arrays.binarySearch(cumulativeProbabilities, random.nextDouble());
+    return Math.min(index >= 0 ? index : -index - 1, cumulativeProbabilities.length - 1);
+  }
+}